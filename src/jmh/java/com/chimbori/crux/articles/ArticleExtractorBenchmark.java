@@ -0,0 +1,186 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.articles.model.PreprocessorOptions;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the full article extraction, as well as each individual stage of it, against every
+ * page of the golden file corpus. Throughput mode reports ops/s, SampleTime mode reports
+ * percentiles (including p99), and running with {@code -prof gc} (as the {@code jmh} Gradle task
+ * does) reports {@code gc.alloc.rate.norm}, i.e. bytes allocated per operation.
+ *
+ * Stages that mutate the DOM get a freshly prepared tree before every invocation, so their
+ * timings are best read in SampleTime mode. The setup itself is not timed, but its allocations
+ * are included in their {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArticleExtractorBenchmark {
+  /**
+   * The {@code jmh} Gradle task overrides this with every page in {@code test_data/golden-pages.txt}
+   * unless {@code -PjmhArgs} picks pages itself.
+   */
+  @Param("npr.html")
+  public String testFile;
+
+  String url;
+  String html;
+
+  @Setup(Level.Trial)
+  public void loadPage() throws IOException {
+    url = GoldenCorpus.urlFor(testFile);
+    html = GoldenCorpus.readHtml(testFile);
+  }
+
+  @Benchmark
+  public Article extractArticle() {
+    return ArticleExtractor.with(url, html).extractMetadata().extractContent().article();
+  }
+
+  @Benchmark
+  public Article extractArticleInSinglePass() {
+    return ArticleExtractor.with(url, html).singlePass().extractMetadata().extractContent().article();
+  }
+
+  @Benchmark
+  public Document parse() {
+    return Jsoup.parse(html, url);
+  }
+
+  @Benchmark
+  public Element preprocess(UnprocessedBody state) {
+    state.preprocessor.preprocess(state.body, new PreprocessorOptions(true, true, true));
+    return state.body;
+  }
+
+  @Benchmark
+  public Element getBestMatchElement(PreprocessedBody state) {
+    return state.extractor.getBestMatchElement(state.body, new GravityScores());
+  }
+
+  @Benchmark
+  public List<Image> extractImages(BestMatch state) {
+    return ImageHelpers.extractImages(state.bestMatchElement);
+  }
+
+  @Benchmark
+  public Document postprocess(FreshBestMatch state) {
+    return state.postprocessor.postprocess(state.bestMatchElement, state.scores, state.fingerprinter);
+  }
+
+  /**
+   * A copy of the page’s body that has not been touched by any stage yet.
+   */
+  @State(Scope.Thread)
+  public static class UnprocessedBody {
+    final Preprocessor preprocessor = new Preprocessor();
+    Element body;
+
+    @Setup(Level.Invocation)
+    public void setUp(ArticleExtractorBenchmark page) {
+      body = Jsoup.parse(page.html, page.url).body();
+    }
+  }
+
+  /**
+   * A body that has been preprocessed the same way {@link ArticleExtractor#extractContent()} does
+   * it before picking the best match.
+   */
+  @State(Scope.Thread)
+  public static class PreprocessedBody {
+    ArticleExtractor extractor;
+    Element body;
+
+    @Setup(Level.Invocation)
+    public void setUp(ArticleExtractorBenchmark page) {
+      Document document = Jsoup.parse(page.html, page.url);
+      extractor = new ArticleExtractor(page.url, document);
+      body = document.body();
+      new Preprocessor().preprocess(body, new PreprocessorOptions(true, true, true));
+    }
+  }
+
+  /**
+   * The best match Element of a page, computed once per trial, for stages that do not modify it.
+   */
+  @State(Scope.Thread)
+  public static class BestMatch {
+    Element bestMatchElement;
+
+    @Setup(Level.Trial)
+    public void setUp(ArticleExtractorBenchmark page) {
+      bestMatchElement = new ScoredBestMatch(page.url, page.html).bestMatchElement;
+    }
+  }
+
+  /**
+   * The best match Element of a page, recomputed before every invocation of a stage that
+   * modifies it.
+   */
+  @State(Scope.Thread)
+  public static class FreshBestMatch {
+    final Postprocessor postprocessor = new Postprocessor();
+    final TextFingerprinter fingerprinter = new TextFingerprinter();
+    Element bestMatchElement;
+    GravityScores scores;
+
+    @Setup(Level.Invocation)
+    public void setUp(ArticleExtractorBenchmark page) {
+      ScoredBestMatch scoredBestMatch = new ScoredBestMatch(page.url, page.html);
+      bestMatchElement = scoredBestMatch.bestMatchElement;
+      scores = scoredBestMatch.scores;
+    }
+  }
+
+  /**
+   * Mirrors the steps {@link ArticleExtractor#extractContent()} takes before extracting images.
+   */
+  static class ScoredBestMatch {
+    Element bestMatchElement;
+    /**
+     * Scores of the tree that the best match was picked from.
+     */
+    GravityScores scores;
+
+    ScoredBestMatch(String url, String html) {
+      Document document = Jsoup.parse(html, url);
+      ArticleExtractor extractor = new ArticleExtractor(url, document);
+      Preprocessor preprocessor = new Preprocessor();
+
+      Element bodyElement = document.body().clone();
+      preprocessor.preprocess(bodyElement, new PreprocessorOptions(true, true, true));
+      scores = new GravityScores();
+      bestMatchElement = extractor.getBestMatchElement(bodyElement, scores);
+
+      if (bestMatchElement == null || bestMatchElement.text().length() < 500) {
+        bodyElement = document.body();
+        preprocessor.preprocess(bodyElement, new PreprocessorOptions(false, true, true));
+        scores = new GravityScores();
+        bestMatchElement = extractor.getBestMatchElement(bodyElement, scores);
+      }
+    }
+  }
+}
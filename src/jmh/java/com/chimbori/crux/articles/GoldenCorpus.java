@@ -0,0 +1,74 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.CharsetConverter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The URL/HTML pairs listed in {@code test_data/golden-pages.txt}, which {@code GoldenFilesTest}
+ * checks its pages against, so that benchmarks run against the same workload that the golden file
+ * tests verify. Benchmarks must be run from the project root, so that the {@code test_data}
+ * directory can be found.
+ */
+final class GoldenCorpus {
+  private GoldenCorpus() {
+    // Prevent instantiation.
+  }
+
+  private static final String TEST_DATA_DIR = "test_data";
+
+  /** One {@code <file> <url>} pair per line, shared with {@code GoldenFilesTest}. */
+  private static final String MANIFEST = "golden-pages.txt";
+
+  private static final Map<String, String> URLS = readManifest();
+
+  private static Map<String, String> readManifest() {
+    Map<String, String> urls = new LinkedHashMap<>();
+    try {
+      for (String line : Files.readAllLines(Paths.get(TEST_DATA_DIR, MANIFEST), StandardCharsets.UTF_8)) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] page = line.split("\\s+");
+        urls.put(page[0], page[1]);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not read " + MANIFEST + "; run the benchmarks from the project root", e);
+    }
+    return urls;
+  }
+
+  static Set<String> testFiles() {
+    return Collections.unmodifiableSet(URLS.keySet());
+  }
+
+  static String urlFor(String testFile) {
+    String url = URLS.get(testFile);
+    if (url == null) {
+      throw new IllegalArgumentException("Not part of the golden corpus: " + testFile);
+    }
+    return url;
+  }
+
+  /**
+   * Reads a test file the same way {@code GoldenFilesTest} does, i.e. via {@link CharsetConverter}.
+   */
+  static String readHtml(String testFile) throws IOException {
+    FileInputStream inputStream = new FileInputStream(new File(TEST_DATA_DIR, testFile));
+    CharsetConverter.StringWithEncoding parsed = CharsetConverter.readStream(inputStream);
+    if (parsed == null) {
+      throw new IOException("Could not read " + testFile);
+    }
+    return parsed.content;
+  }
+}
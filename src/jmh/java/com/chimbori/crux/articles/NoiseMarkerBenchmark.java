@@ -0,0 +1,162 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.StringUtils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the noise markers that {@code ExtractionHelpers} looks for in every paragraph of the
+ * golden corpus, i.e. the texts of all {@code <p>} and the own texts of all {@code <div>} elements,
+ * comparing the original recursive count against the index-based one, which scans each paragraph
+ * once per marker, and against a single character-by-character scan for all markers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoiseMarkerBenchmark {
+  private String[] paragraphs;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<String> texts = new ArrayList<>();
+    for (String testFile : GoldenCorpus.testFiles()) {
+      for (Element element : Jsoup.parse(GoldenCorpus.readHtml(testFile), GoldenCorpus.urlFor(testFile)).select("p, div")) {
+        String text = element.tagName().equals("p") ? element.text() : element.ownText();
+        if (text.length() >= 20) {
+          texts.add(text);
+        }
+      }
+    }
+    paragraphs = texts.toArray(new String[texts.size()]);
+  }
+
+  @Benchmark
+  public int recursive() {
+    int total = 0;
+    for (String paragraph : paragraphs) {
+      for (String marker : ExtractionHelpers.NOISE_MARKERS) {
+        total += recursiveCountMatches(paragraph, marker);
+      }
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int indexed() {
+    int total = 0;
+    for (String paragraph : paragraphs) {
+      for (String marker : ExtractionHelpers.NOISE_MARKERS) {
+        total += StringUtils.countMatches(paragraph, marker);
+      }
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int indexedSeveral() {
+    int total = 0;
+    for (String paragraph : paragraphs) {
+      total += StringUtils.countMatches(paragraph, ExtractionHelpers.NOISE_MARKERS);
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int singleScan() {
+    int total = 0;
+    for (String paragraph : paragraphs) {
+      total += singleScanCountMatches(paragraph, ExtractionHelpers.NOISE_MARKERS);
+    }
+    return total;
+  }
+
+  /**
+   * The original implementation of {@link StringUtils#countMatches(String, String)}, which copies
+   * the rest of the string after every match.
+   */
+  private static int recursiveCountMatches(String str, String substring) {
+    int count = 0;
+    int indexOf = str.indexOf(substring);
+    if (indexOf >= 0) {
+      count++;
+      count += recursiveCountMatches(str.substring(indexOf + substring.length()), substring);
+    }
+    return count;
+  }
+
+  /**
+   * Counts all substrings in a single character-by-character scan of {@code str}, testing each
+   * substring at every position that starts with one of their first characters.
+   */
+  private static int singleScanCountMatches(String str, String[] substrings) {
+    // A bit for each ASCII character that starts one of the substrings, so that most characters of
+    // the text can be skipped with a single test.
+    long lowFirstChars = 0, highFirstChars = 0;
+    boolean nonAsciiFirstChars = false;
+    for (String substring : substrings) {
+      if (!substring.isEmpty()) {
+        char first = substring.charAt(0);
+        if (first < 64) {
+          lowFirstChars |= 1L << first;
+        } else if (first < 128) {
+          highFirstChars |= 1L << first;
+        } else {
+          nonAsciiFirstChars = true;
+        }
+      }
+    }
+    int count = 0;
+    int length = str.length();
+    // Occurrences of each substring may only start at or after the end of its previous one; the
+    // array is not allocated for the common case of up to four substrings.
+    int next0 = 0, next1 = 0, next2 = 0, next3 = 0;
+    int[] next = substrings.length > 4 ? new int[substrings.length] : null;
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      boolean mayStartSubstring = c < 64 ? (lowFirstChars & (1L << c)) != 0
+          : c < 128 ? (highFirstChars & (1L << c)) != 0 : nonAsciiFirstChars;
+      if (!mayStartSubstring) {
+        continue;
+      }
+      for (int k = 0; k < substrings.length; k++) {
+        String substring = substrings[k];
+        if (substring.isEmpty() || substring.charAt(0) != c) {
+          continue;
+        }
+        int nextStart = k == 0 ? next0 : k == 1 ? next1 : k == 2 ? next2 : k == 3 ? next3 : next[k];
+        if (i < nextStart || !str.startsWith(substring, i)) {
+          continue;
+        }
+        count++;
+        nextStart = i + substring.length();
+        switch (k) {
+          case 0: next0 = nextStart; break;
+          case 1: next1 = nextStart; break;
+          case 2: next2 = nextStart; break;
+          case 3: next3 = nextStart; break;
+          default: next[k] = nextStart;
+        }
+      }
+    }
+    return count;
+  }
+}
@@ -53,6 +53,17 @@ public class Article {
   public Collection<String> keywords;
   public List<Image> images = new ArrayList<>();
 
+  /**
+   * A 64-bit SimHash of the words of the extracted text, or 0 if there is none. Near-duplicate
+   * articles have SimHashes that differ in only a few bits; see {@link SimHashIndex}.
+   */
+  public long simHash;
+
+  /**
+   * A SimHash of each paragraph of the extracted text that has any words, in document order.
+   */
+  public long[] paragraphSimHashes = new long[0];
+
   Article(String url) {
     // Package private constructor to disallow outside the library.
     this.url = url;
@@ -77,6 +88,7 @@ public class Article {
         ", document=" + document +
         ", keywords=" + keywords +
         ", images=" + images +
+        ", simHash=" + Long.toHexString(simHash) +
         '}';
   }
 
@@ -0,0 +1,734 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Tag;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, versioned binary format for {@link Article}s, much smaller and faster to read and
+ * write than the HTML of {@link Article#document} plus JSON for everything else.
+ *
+ * A record starts with the format version, then lists the id and byte length of each field it
+ * contains, followed by the fields themselves. Strings are UTF-8, prefixed by their length where
+ * they are not a whole field; all counts and lengths are unsigned LEB128 varints. Since the header
+ * locates every field, a single field can be read straight out of a record, e.g. a memory-mapped
+ * one, without decoding any of the others: see {@link #field(ByteBuffer, Field)}. Fields with ids
+ * that a reader does not know, e.g. ones added by a later version, are skipped.
+ *
+ * The document is written as a tree of nodes in document order, each Element followed by its
+ * attributes, its children, and an end marker. The postprocessor only lets {@code RETAIN_TAGS}
+ * and {@code ATTRIBUTES_TO_RETAIN_IN_HTML} through, so those are written as one-byte ids; any other
+ * tag or attribute name is written out in full. Fields that are null are left out, and are null
+ * once read back. The {@link Image#element} of each image is not written, and is null too.
+ *
+ * {@link Writer} and {@link Reader} stream records, each prefixed by its length, to and from a
+ * stream.
+ */
+public final class ArticleCodec {
+  public static final int VERSION = 1;
+
+  /**
+   * The fields of a record, with their ids, which never change once assigned.
+   */
+  public enum Field {
+    URL(1),
+    TITLE(2),
+    DESCRIPTION(3),
+    SITE_NAME(4),
+    THEME_COLOR(5),
+    AMP_URL(6),
+    CANONICAL_URL(7),
+    IMAGE_URL(8),
+    VIDEO_URL(9),
+    FEED_URL(10),
+    FAVICON_URL(11),
+    KEYWORDS(12),
+    IMAGES(13),
+    DOCUMENT(14),
+    SIM_HASH(15),
+    PARAGRAPH_SIM_HASHES(16);
+
+    final int id;
+
+    Field(int id) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * Tags and attributes that are written as one-byte ids, i.e. their index here. New names may
+   * only ever be appended.
+   */
+  static final String[] TAGS = {
+      "p", "b", "i", "u", "strong", "em", "a", "pre", "h1", "h2", "h3", "h4", "h5", "h6", "blockquote", "img",
+      "br", "li"
+  };
+  static final String[] ATTRIBUTES = {
+      "href", "title", "src", "srcset", "sizes", "alt", "width", "height", "cellspacing", "cellpadding"
+  };
+
+  private static final Map<String, Integer> TAG_IDS = indexOf(TAGS);
+  private static final Map<String, Integer> ATTRIBUTE_IDS = indexOf(ATTRIBUTES);
+
+  private static final int NODE_END = 0;
+  private static final int NODE_TEXT = 1;
+  private static final int NODE_DATA = 2;
+  private static final int NODE_COMMENT = 3;
+  private static final int NODE_NAMED_ELEMENT = 4;
+  private static final int NODE_ELEMENT = 16;  // Plus the id of its tag.
+  private static final int NAMED_ATTRIBUTE = 0xff;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private ArticleCodec() {
+  }
+
+  /**
+   * @return a record holding all fields of {@code article}
+   */
+  public static byte[] encode(Article article) {
+    Output output = new Output();
+    output.writeRecord(article);
+    return Arrays.copyOf(output.bytes, output.size);
+  }
+
+  /**
+   * Decodes the remaining bytes of {@code record}, without changing its position.
+   *
+   * @throws IllegalArgumentException if it is not a valid record, or has a newer version
+   */
+  public static Article decode(ByteBuffer record) {
+    ByteBuffer in = record.duplicate();
+    try {
+      int[] offsets = readHeader(in);
+      String url = fieldString(in, offsets, Field.URL);
+      Article article = new Article(url != null ? url : "");
+      // Null fields are left out of the record, so they are null unless it has them.
+      article.title = article.description = article.siteName = article.themeColor = null;
+      article.ampUrl = article.canonicalUrl = article.imageUrl = article.videoUrl = null;
+      article.feedUrl = article.faviconUrl = null;
+      article.images = null;
+      article.paragraphSimHashes = null;
+      for (int i = 0; i < offsets.length; i += 3) {
+        ByteBuffer value = slice(in, offsets[i + 1], offsets[i + 2]);
+        decodeField(article, offsets[i], value);
+      }
+      return article;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated Article record", e);
+    }
+  }
+
+  /**
+   * @return the bytes of one field of {@code record}, as a slice that shares its content, or null
+   * if the record does not have that field
+   * @throws IllegalArgumentException if it is not a valid record, or has a newer version
+   */
+  public static ByteBuffer field(ByteBuffer record, Field field) {
+    ByteBuffer in = record.duplicate();
+    try {
+      int[] offsets = readHeader(in);
+      for (int i = 0; i < offsets.length; i += 3) {
+        if (offsets[i] == field.id) {
+          return slice(in, offsets[i + 1], offsets[i + 2]);
+        }
+      }
+      return null;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated Article record", e);
+    }
+  }
+
+  /**
+   * @return the value of a String field of {@code record}, such as {@link Field#TITLE}, decoded
+   * without decoding any other field, or null if the record does not have it
+   */
+  public static String string(ByteBuffer record, Field field) {
+    ByteBuffer value = field(record, field);
+    return value != null ? readUtf8(value, value.remaining()) : null;
+  }
+
+  /**
+   * Writes length-prefixed records to a stream. The stream is not buffered here; wrap it in a
+   * {@link java.io.BufferedOutputStream} if needed. Not thread safe.
+   */
+  public static final class Writer implements Closeable, Flushable {
+    private final OutputStream out;
+    private final Output record = new Output();
+    private final Output prefix = new Output();
+
+    public Writer(OutputStream out) {
+      this.out = out;
+    }
+
+    public void write(Article article) throws IOException {
+      record.size = 0;
+      record.writeRecord(article);
+      prefix.size = 0;
+      prefix.writeVarint(record.size);
+      out.write(prefix.bytes, 0, prefix.size);
+      out.write(record.bytes, 0, record.size);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads the records written by a {@link Writer}. Not thread safe.
+   */
+  public static final class Reader implements Closeable {
+    private final InputStream in;
+
+    public Reader(InputStream in) {
+      this.in = in;
+    }
+
+    /**
+     * @return the next Article, or null at the end of the stream
+     */
+    public Article read() throws IOException {
+      ByteBuffer record = readRecord();
+      if (record == null) {
+        return null;
+      }
+      try {
+        return decode(record);
+      } catch (IllegalArgumentException e) {
+        throw new IOException(e);
+      }
+    }
+
+    /**
+     * @return the next record, to read only some of its fields with
+     * {@link ArticleCodec#field(ByteBuffer, Field)}, or null at the end of the stream
+     */
+    public ByteBuffer readRecord() throws IOException {
+      int first = in.read();
+      if (first < 0) {
+        return null;
+      }
+      long length = first & 0x7f;
+      for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+        first = in.read();
+        if (first < 0 || shift > 28) {
+          throw new IOException("Invalid Article record length");
+        }
+        length |= (long) (first & 0x7f) << shift;
+      }
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Invalid Article record length: " + length);
+      }
+
+      byte[] bytes = new byte[(int) length];
+      int offset = 0;
+      while (offset < bytes.length) {
+        int n = in.read(bytes, offset, bytes.length - offset);
+        if (n < 0) {
+          throw new EOFException("Truncated Article record");
+        }
+        offset += n;
+      }
+      return ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the header at the position of {@code in}, which is left at the first field.
+   *
+   * @return for each field, its id, and the offset of its first and last byte within {@code in}
+   */
+  private static int[] readHeader(ByteBuffer in) {
+    int version = in.get() & 0xff;
+    if (version == 0 || version > VERSION) {
+      throw new IllegalArgumentException("Unsupported Article record version: " + version);
+    }
+    int fieldCount = readLength(in);
+    int[] offsets = new int[fieldCount * 3];
+    for (int i = 0; i < offsets.length; i += 3) {
+      offsets[i] = readLength(in);
+      offsets[i + 2] = readLength(in);  // The length, for now.
+    }
+    int offset = in.position();
+    for (int i = 0; i < offsets.length; i += 3) {
+      offsets[i + 1] = offset;
+      offset += offsets[i + 2];
+      offsets[i + 2] = offset;
+    }
+    if (offset > in.limit()) {
+      throw new IllegalArgumentException("Truncated Article record");
+    }
+    return offsets;
+  }
+
+  private static String fieldString(ByteBuffer in, int[] offsets, Field field) {
+    for (int i = 0; i < offsets.length; i += 3) {
+      if (offsets[i] == field.id) {
+        ByteBuffer value = slice(in, offsets[i + 1], offsets[i + 2]);
+        return readUtf8(value, value.remaining());
+      }
+    }
+    return null;
+  }
+
+  private static void decodeField(Article article, int id, ByteBuffer in) {
+    switch (id) {
+      case 2:
+        article.title = readUtf8(in, in.remaining());
+        break;
+      case 3:
+        article.description = readUtf8(in, in.remaining());
+        break;
+      case 4:
+        article.siteName = readUtf8(in, in.remaining());
+        break;
+      case 5:
+        article.themeColor = readUtf8(in, in.remaining());
+        break;
+      case 6:
+        article.ampUrl = readUtf8(in, in.remaining());
+        break;
+      case 7:
+        article.canonicalUrl = readUtf8(in, in.remaining());
+        break;
+      case 8:
+        article.imageUrl = readUtf8(in, in.remaining());
+        break;
+      case 9:
+        article.videoUrl = readUtf8(in, in.remaining());
+        break;
+      case 10:
+        article.feedUrl = readUtf8(in, in.remaining());
+        break;
+      case 11:
+        article.faviconUrl = readUtf8(in, in.remaining());
+        break;
+      case 12:
+        int keywordCount = readLength(in);
+        List<String> keywords = new ArrayList<>(keywordCount);
+        for (int i = 0; i < keywordCount; i++) {
+          keywords.add(readString(in));
+        }
+        article.keywords = keywords;
+        break;
+      case 13:
+        int imageCount = readLength(in);
+        List<Image> images = new ArrayList<>(imageCount);
+        for (int i = 0; i < imageCount; i++) {
+          images.add(readImage(in));
+        }
+        article.images = images;
+        break;
+      case 14:
+        Document document = new Document("");
+        readChildNodes(in, document);
+        article.document = document;
+        break;
+      case 15:
+        article.simHash = in.getLong();
+        break;
+      case 16:
+        long[] simHashes = new long[readLength(in)];
+        for (int i = 0; i < simHashes.length; i++) {
+          simHashes[i] = in.getLong();
+        }
+        article.paragraphSimHashes = simHashes;
+        break;
+      default:
+        break;  // The URL has been read already, and unknown fields are skipped.
+    }
+  }
+
+  private static Image readImage(ByteBuffer in) {
+    Image image = new Image();
+    image.src = readString(in);
+    image.title = readString(in);
+    image.alt = readString(in);
+    image.weight = readSignedVarint(in);
+    image.width = readSignedVarint(in);
+    image.height = readSignedVarint(in);
+    image.noFollow = in.get() != 0;
+    return image;
+  }
+
+  private static void readChildNodes(ByteBuffer in, Element parent) {
+    while (true) {
+      int code = in.get() & 0xff;
+      Node node;
+      if (code == NODE_END) {
+        return;
+      } else if (code == NODE_TEXT) {
+        node = new TextNode(readString(in), "");
+      } else if (code == NODE_DATA) {
+        node = new DataNode(readString(in), "");
+      } else if (code == NODE_COMMENT) {
+        node = new Comment(readString(in), "");
+      } else {
+        String tagName;
+        if (code == NODE_NAMED_ELEMENT) {
+          tagName = readString(in);
+        } else if (code >= NODE_ELEMENT && code - NODE_ELEMENT < TAGS.length) {
+          tagName = TAGS[code - NODE_ELEMENT];
+        } else {
+          throw new IllegalArgumentException("Unknown node type: " + code);
+        }
+        Element element = new Element(Tag.valueOf(tagName), "");
+        int attributeCount = readLength(in);
+        for (int i = 0; i < attributeCount; i++) {
+          int attributeId = in.get() & 0xff;
+          String key;
+          if (attributeId == NAMED_ATTRIBUTE) {
+            key = readString(in);
+          } else if (attributeId < ATTRIBUTES.length) {
+            key = ATTRIBUTES[attributeId];
+          } else {
+            throw new IllegalArgumentException("Unknown attribute: " + attributeId);
+          }
+          element.attr(key, readString(in));
+        }
+        readChildNodes(in, element);
+        node = element;
+      }
+      parent.appendChild(node);
+    }
+  }
+
+  private static String readString(ByteBuffer in) {
+    return readUtf8(in, readLength(in));
+  }
+
+  private static String readUtf8(ByteBuffer in, int length) {
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String str;
+    if (in.hasArray()) {
+      str = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+    } else {
+      byte[] bytes = new byte[length];
+      in.duplicate().get(bytes);
+      str = new String(bytes, UTF8);
+    }
+    in.position(in.position() + length);
+    return str;
+  }
+
+  private static int readLength(ByteBuffer in) {
+    long value = readVarint(in);
+    if (value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid length: " + value);
+    }
+    return (int) value;
+  }
+
+  private static int readSignedVarint(ByteBuffer in) {
+    long value = readVarint(in);
+    return (int) (value >>> 1) ^ -(int) (value & 1);
+  }
+
+  private static long readVarint(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Invalid varint");
+  }
+
+  private static ByteBuffer slice(ByteBuffer in, int start, int end) {
+    ByteBuffer slice = in.duplicate();
+    slice.limit(end);
+    slice.position(start);
+    return slice.slice();
+  }
+
+  private static Map<String, Integer> indexOf(String[] names) {
+    Map<String, Integer> ids = new HashMap<>();
+    for (int i = 0; i < names.length; i++) {
+      ids.put(names[i], i);
+    }
+    return ids;
+  }
+
+  /**
+   * A growable byte array that records are encoded into, and that is reused for every record.
+   */
+  private static final class Output {
+    byte[] bytes = new byte[4096];
+    int size = 0;
+
+    /**
+     * For each field of the record being written: its id, and its start and end in {@link #bytes}.
+     */
+    private int[] fields = new int[3 * Field.values().length];
+    private int fieldCount = 0;
+
+    void writeRecord(Article article) {
+      // The fields are written first, then the header, and then the two are swapped, since the
+      // header needs the length of each field.
+      int start = size;
+      fieldCount = 0;
+      writeStringField(Field.URL, article.url);
+      writeStringField(Field.TITLE, article.title);
+      writeStringField(Field.DESCRIPTION, article.description);
+      writeStringField(Field.SITE_NAME, article.siteName);
+      writeStringField(Field.THEME_COLOR, article.themeColor);
+      writeStringField(Field.AMP_URL, article.ampUrl);
+      writeStringField(Field.CANONICAL_URL, article.canonicalUrl);
+      writeStringField(Field.IMAGE_URL, article.imageUrl);
+      writeStringField(Field.VIDEO_URL, article.videoUrl);
+      writeStringField(Field.FEED_URL, article.feedUrl);
+      writeStringField(Field.FAVICON_URL, article.faviconUrl);
+
+      if (article.keywords != null) {
+        startField(Field.KEYWORDS);
+        writeVarint(article.keywords.size());
+        for (String keyword : article.keywords) {
+          writeString(keyword);
+        }
+        endField();
+      }
+      if (article.images != null) {
+        startField(Field.IMAGES);
+        writeVarint(article.images.size());
+        for (Image image : article.images) {
+          writeString(image.src);
+          writeString(image.title);
+          writeString(image.alt);
+          writeSignedVarint(image.weight);
+          writeSignedVarint(image.width);
+          writeSignedVarint(image.height);
+          writeByte(image.noFollow ? 1 : 0);
+        }
+        endField();
+      }
+      if (article.document != null) {
+        startField(Field.DOCUMENT);
+        writeChildNodes(article.document);
+        endField();
+      }
+      startField(Field.SIM_HASH);
+      writeLong(article.simHash);
+      endField();
+      if (article.paragraphSimHashes != null) {
+        startField(Field.PARAGRAPH_SIM_HASHES);
+        writeVarint(article.paragraphSimHashes.length);
+        for (long simHash : article.paragraphSimHashes) {
+          writeLong(simHash);
+        }
+        endField();
+      }
+
+      int headerStart = size;
+      writeByte(VERSION);
+      writeVarint(fieldCount);
+      for (int i = 0; i < fieldCount * 3; i += 3) {
+        writeVarint(fields[i]);
+        writeVarint(fields[i + 2] - fields[i + 1]);
+      }
+      rotate(start, headerStart, size);
+    }
+
+    private void writeStringField(Field field, String value) {
+      if (value != null) {
+        startField(field);
+        writeUtf8(value);
+        endField();
+      }
+    }
+
+    private void startField(Field field) {
+      fields[fieldCount * 3] = field.id;
+      fields[fieldCount * 3 + 1] = size;
+    }
+
+    private void endField() {
+      fields[fieldCount * 3 + 2] = size;
+      fieldCount++;
+    }
+
+    private void writeChildNodes(Node parent) {
+      for (int i = 0; i < parent.childNodeSize(); i++) {
+        Node node = parent.childNode(i);
+        if (node instanceof TextNode) {
+          writeByte(NODE_TEXT);
+          writeString(((TextNode) node).getWholeText());
+        } else if (node instanceof DataNode) {
+          writeByte(NODE_DATA);
+          writeString(((DataNode) node).getWholeData());
+        } else if (node instanceof Comment) {
+          writeByte(NODE_COMMENT);
+          writeString(((Comment) node).getData());
+        } else if (node instanceof Element) {
+          writeElement((Element) node);
+        }
+      }
+      writeByte(NODE_END);
+    }
+
+    private void writeElement(Element element) {
+      Integer tagId = TAG_IDS.get(element.tagName());
+      if (tagId != null) {
+        writeByte(NODE_ELEMENT + tagId);
+      } else {
+        writeByte(NODE_NAMED_ELEMENT);
+        writeString(element.tagName());
+      }
+      writeVarint(element.attributes().size());
+      for (Attribute attribute : element.attributes()) {
+        Integer attributeId = ATTRIBUTE_IDS.get(attribute.getKey());
+        if (attributeId != null) {
+          writeByte(attributeId);
+        } else {
+          writeByte(NAMED_ATTRIBUTE);
+          writeString(attribute.getKey());
+        }
+        writeString(attribute.getValue());
+      }
+      writeChildNodes(element);
+    }
+
+    void writeByte(int b) {
+      ensureCapacity(1);
+      bytes[size++] = (byte) b;
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7fL) != 0) {
+        bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    private void writeSignedVarint(int value) {
+      writeVarint(((value << 1) ^ (value >> 31)) & 0xffffffffL);
+    }
+
+    private void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void writeString(String str) {
+      if (str == null) {
+        str = "";
+      }
+      writeVarint(utf8Length(str));
+      writeUtf8(str);
+    }
+
+    /**
+     * Encodes {@code str} as UTF-8 straight into {@link #bytes}, without an intermediate array.
+     * Unpaired surrogates are written as {@code ?}, as {@link String#getBytes(Charset)} does.
+     */
+    private void writeUtf8(String str) {
+      ensureCapacity(str.length() * 3);
+      for (int i = 0; i < str.length(); i++) {
+        char c = str.charAt(i);
+        if (c < 0x80) {
+          bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+          bytes[size++] = (byte) (0xc0 | c >> 6);
+          bytes[size++] = (byte) (0x80 | c & 0x3f);
+        } else if (Character.isSurrogate(c)) {
+          int codePoint = Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))
+              ? Character.toCodePoint(c, str.charAt(++i)) : -1;
+          if (codePoint < 0) {
+            bytes[size++] = '?';
+          } else {
+            bytes[size++] = (byte) (0xf0 | codePoint >> 18);
+            bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+            bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            bytes[size++] = (byte) (0x80 | codePoint & 0x3f);
+          }
+        } else {
+          bytes[size++] = (byte) (0xe0 | c >> 12);
+          bytes[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+          bytes[size++] = (byte) (0x80 | c & 0x3f);
+        }
+      }
+    }
+
+    private static int utf8Length(String str) {
+      int length = 0;
+      for (int i = 0; i < str.length(); i++) {
+        char c = str.charAt(i);
+        if (c < 0x80) {
+          length++;
+        } else if (c < 0x800) {
+          length += 2;
+        } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+          length += 4;
+          i++;
+        } else if (Character.isSurrogate(c)) {
+          length++;
+        } else {
+          length += 3;
+        }
+      }
+      return length;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+      }
+    }
+
+    /**
+     * Swaps {@code bytes[start, middle)} and {@code bytes[middle, end)} in place.
+     */
+    private void rotate(int start, int middle, int end) {
+      reverse(start, middle);
+      reverse(middle, end);
+      reverse(start, end);
+    }
+
+    private void reverse(int from, int to) {
+      for (int i = from, j = to - 1; i < j; i++, j--) {
+        byte b = bytes[i];
+        bytes[i] = bytes[j];
+        bytes[j] = b;
+      }
+    }
+  }
+}
@@ -1,91 +1,392 @@
 package com.chimbori.crux.articles;
 
 import com.chimbori.crux.articles.model.PreprocessorOptions;
+import com.chimbori.crux.common.CharsetConverter;
+import com.chimbori.crux.common.Log;
 import com.chimbori.crux.common.StringUtils;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 public class ArticleExtractor {
+  /**
+   * If the best match found after stripping unlikely candidates has less text than this, the
+   * candidates are scored again without stripping anything.
+   */
+  private static final int MIN_LENGTH_FOR_BEST_MATCH = 500;
+
   private final String url;
   private final Document document;
   private final Article article;
 
-  private Preprocessor preprocessor = new Preprocessor();
+  private final ExtractionScratch scratch;
+  private final ClassNameClassifier classifier;
+  private final Preprocessor preprocessor;
+  private final Postprocessor postprocessor;
+
+  private boolean singlePass = false;
+  private ContentPathLearner contentPaths = null;
+
+  /**
+   * Built by whichever of {@link #extractMetadata(Set)} and {@link #extractContent()} needs it
+   * first, and shared with the other, since building it walks the whole document.
+   */
+  private HeadIndex headIndex;
+
+  /**
+   * Scores of the candidates in the tree that the best match was picked from.
+   */
+  private GravityScores scores;
 
-  private Postprocessor postprocessor = new Postprocessor();
+  /**
+   * Text lengths within the tree that the best match was last picked from.
+   */
+  private TextStats textStats;
 
 
   public ArticleExtractor(String url, String html) {
-    this.url = url;
-    if (html.isEmpty()) {
-      throw new IllegalArgumentException();
-    }
-    this.document = Jsoup.parse(html, url);
-    this.article = new Article(this.url);
+    this(url, html, new ExtractionScratch());
   }
 
   public ArticleExtractor(String url, Document document) {
+    this(url, document, new ExtractionScratch());
+  }
+
+  ArticleExtractor(String url, String html, ExtractionScratch scratch) {
+    this(url, parse(url, html), scratch);
+  }
+
+  /**
+   * @param scratch buffers to use for this run, which must not be shared with a concurrent run
+   */
+  ArticleExtractor(String url, Document document, ExtractionScratch scratch) {
     this.url = url;
     this.document = document;
     this.article = new Article(this.url);
+    this.scratch = scratch;
+    this.classifier = scratch.classifier;
+    this.preprocessor = scratch.preprocessor;
+    this.postprocessor = scratch.postprocessor;
+    this.scores = scratch.scores;
+  }
+
+  private static Document parse(String url, CharSequence html) {
+    if (html.length() == 0) {
+      throw new IllegalArgumentException();
+    }
+    // jsoup’s parser only accepts a String, which it reads through a char[] copy of its own.
+    return Jsoup.parse(html.toString(), url);
   }
 
   public static ArticleExtractor with(String url, String html) {
     return new ArticleExtractor(url, html);
   }
 
+  /**
+   * Reads a page from a stream, detecting its charset from its first few bytes, and decoding it
+   * straight into the buffer that is parsed, without first reading all of its bytes into memory.
+   * The stream is not closed.
+   */
+  public static ArticleExtractor from(String url, InputStream inputStream) throws IOException {
+    return new ArticleExtractor(url, parse(url, new CharsetConverter().decode(inputStream)));
+  }
+
+  /**
+   * Like {@link #from(String, InputStream)}, but reads from a blocking channel, which is not closed.
+   */
+  public static ArticleExtractor from(String url, ReadableByteChannel channel) throws IOException {
+    return new ArticleExtractor(url, parse(url, new CharsetConverter().decode(channel)));
+  }
+
+  /**
+   * Like {@link #from(String, InputStream)}, but decodes the remaining bytes of a buffer in place,
+   * e.g. a slice of a memory-mapped file, without copying them. The buffer’s position is not
+   * changed.
+   */
+  public static ArticleExtractor from(String url, ByteBuffer buffer) {
+    return new ArticleExtractor(url, parse(url, new CharsetConverter().decode(buffer)));
+  }
+
   public ArticleExtractor extractMetadata() {
-    article.title = MetadataHelpers.extractTitle(document);
-    article.description = MetadataHelpers.extractDescription(document);
-    article.siteName = MetadataHelpers.extractSiteName(document);
-    article.themeColor = MetadataHelpers.extractThemeColor(document);
-    article.canonicalUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractCanonicalUrl(document));
-    article.ampUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractAmpUrl(document));
-    article.feedUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractFeedUrl(document));
-    article.videoUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractVideoUrl(document));
-    article.faviconUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractFaviconUrl(document));
-    article.keywords = MetadataHelpers.extractKeywords(document);
+    return extractMetadata(EnumSet.allOf(MetadataField.class));
+  }
+
+  /**
+   * Extracts only the requested metadata fields; all others keep their default values, and cost
+   * nothing to skip.
+   */
+  public ArticleExtractor extractMetadata(Set<MetadataField> fields) {
+    if (fields.isEmpty()) {
+      return this;
+    }
+    HeadIndex index = headIndex();
+    if (fields.contains(MetadataField.TITLE)) {
+      article.title = MetadataHelpers.extractTitle(index);
+    }
+    if (fields.contains(MetadataField.DESCRIPTION)) {
+      article.description = MetadataHelpers.extractDescription(index);
+    }
+    if (fields.contains(MetadataField.SITE_NAME)) {
+      article.siteName = MetadataHelpers.extractSiteName(index);
+    }
+    if (fields.contains(MetadataField.THEME_COLOR)) {
+      article.themeColor = MetadataHelpers.extractThemeColor(index);
+    }
+    if (fields.contains(MetadataField.CANONICAL_URL)) {
+      article.canonicalUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractCanonicalUrl(index));
+    }
+    if (fields.contains(MetadataField.AMP_URL)) {
+      article.ampUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractAmpUrl(index));
+    }
+    if (fields.contains(MetadataField.FEED_URL)) {
+      article.feedUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractFeedUrl(index));
+    }
+    if (fields.contains(MetadataField.VIDEO_URL)) {
+      article.videoUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractVideoUrl(index));
+    }
+    if (fields.contains(MetadataField.FAVICON_URL)) {
+      article.faviconUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractFaviconUrl(index));
+    }
+    if (fields.contains(MetadataField.KEYWORDS)) {
+      article.keywords = MetadataHelpers.extractKeywords(index);
+    }
+    return this;
+  }
+
+  /**
+   * Scores the page in a single pass when {@link #extractContent()} is called, instead of scoring a
+   * copy of it with unlikely candidates stripped, and then falling back to scoring the original if
+   * that copy did not yield enough text. Both alternatives are scored during the same traversal,
+   * and only the winner’s tree is ever modified, so the body is neither cloned nor scored twice.
+   */
+  public ArticleExtractor singlePass() {
+    this.singlePass = true;
+    return this;
+  }
+
+  /**
+   * Looks for the content at the path that {@code learner} remembers for the host of this page,
+   * before scoring the whole page, and teaches it the path to the best match otherwise; see
+   * {@link ContentPathLearner}.
+   */
+  public ArticleExtractor contentPaths(ContentPathLearner learner) {
+    this.contentPaths = learner;
     return this;
   }
 
   public ArticleExtractor extractContent() {
+    Element bestMatchElement = findBestMatchElement(singlePass);
+
+    // Extract images before post-processing, because that step may remove images.
+    if(bestMatchElement != null) {
+      article.images = ImageHelpers.extractImages(bestMatchElement);
+      article.document = postprocessor.postprocess(bestMatchElement, scores, scratch.fingerprinter);
+      article.simHash = scratch.fingerprinter.articleSimHash();
+      article.paragraphSimHashes = scratch.fingerprinter.paragraphSimHashes();
+    }
+
+    article.imageUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractImageUrl(headIndex(), article.images));
+
+    return this;
+  }
+
+  /**
+   * Like {@link #extractContent()}, but writes the text of the content to {@code out} in the given
+   * format, instead of building {@link Article#document}, which is left null. The text is written
+   * while the postprocessor walks the paragraphs it keeps, so neither an output Document nor a copy
+   * of any node is ever created; for the same reason, the page is always scored as described in
+   * {@link #singlePass()}. All other fields of the Article are set as usual.
+   */
+  public ArticleExtractor extractText(Appendable out, TextFormat format) throws IOException {
+    Element bestMatchElement = findBestMatchElement(true);
+
+    if (bestMatchElement != null) {
+      article.images = ImageHelpers.extractImages(bestMatchElement);
+      postprocessor.postprocess(bestMatchElement, scores, scratch.fingerprinter, new TextWriter(out, format));
+      article.simHash = scratch.fingerprinter.articleSimHash();
+      article.paragraphSimHashes = scratch.fingerprinter.paragraphSimHashes();
+    }
+
+    article.imageUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractImageUrl(headIndex(), article.images));
+
+    return this;
+  }
+
+  private HeadIndex headIndex() {
+    if (headIndex == null) {
+      headIndex = new HeadIndex(document);
+    }
+    return headIndex;
+  }
+
+  private Element findBestMatchElement(boolean singlePass) {
+    Element bestMatchElement = contentPaths != null ? getLearnedBestMatchElement() : null;
+    if (bestMatchElement == null) {
+      bestMatchElement = singlePass ? getBestMatchElementInSinglePass() : getBestMatchElement();
+      if (contentPaths != null && bestMatchElement != null) {
+        contentPaths.learn(url, bestMatchElement, scores == scratch.strippedScores);
+      }
+    }
+    return bestMatchElement;
+  }
+
+  private Element getBestMatchElement() {
     Element bodyElement = document.body().clone();
     preprocessor.preprocess(bodyElement, new PreprocessorOptions(true, true, true));
 
-    Element bestMatchElement = getBestMatchElement(bodyElement);
+    scores = scratch.strippedScores;
+    Element bestMatchElement = getBestMatchElement(bodyElement, scores);
 
-    if(bestMatchElement == null || bestMatchElement.text().length() < 500) {
+    if(bestMatchElement == null || textStats.textLength(bestMatchElement) < MIN_LENGTH_FOR_BEST_MATCH) {
       bodyElement = document.body();
       preprocessor.preprocess(bodyElement, new PreprocessorOptions(false, true, true));
 
-      bestMatchElement = getBestMatchElement(bodyElement);
+      scores = scratch.scores;
+      bestMatchElement = getBestMatchElement(bodyElement, scores);
     }
+    return bestMatchElement;
+  }
 
-    // Extract images before post-processing, because that step may remove images.
-    if(bestMatchElement != null) {
-      article.images = ImageHelpers.extractImages(bestMatchElement);
-      article.document = postprocessor.postprocess(bestMatchElement);
+  Element getBestMatchElement(Element bodyElement, GravityScores scores) {
+    scores.clear();
+    Candidates candidates = scratch.candidates;
+    candidates.collect(bodyElement);
+    candidates.setPositionalScores(scores);
+    textStats = new TextStats(bodyElement);
+    BestMatch bestMatch = new BestMatch();
+
+    for (int i = 0; i < candidates.size(); i++) {
+      Element element = candidates.get(i);
+      bestMatch.consider(element, ExtractionHelpers.getWeight(element, classifier, null, textStats, scores, null));
     }
 
-    article.imageUrl = StringUtils.makeAbsoluteUrl(article.url, MetadataHelpers.extractImageUrl(document, article.images));
+    return bestMatch.bestMatchElement();
+  }
 
-    return this;
+  /**
+   * Finds the Element at the path remembered for this host, preprocesses just its subtree the same
+   * way as the tree the path was learned from, and scores only the candidates within it, which the
+   * postprocessor needs. If there is no such Element, or it would have too little text once
+   * preprocessed, the path is forgotten, and null is returned; the tree is left untouched then, so
+   * that scoring the whole page instead gives the same result as without a learned path.
+   */
+  private Element getLearnedBestMatchElement() {
+    ContentPathLearner.ContentPath path = contentPaths.get(url);
+    if (path == null) {
+      return null;
+    }
+
+    Element element = path.find(document.body(), preprocessor);
+    if (element != null) {
+      Set<Element> unlikelyCandidates = path.stripped
+          ? preprocessor.findUnlikelyCandidates(element) : Collections.<Element>emptySet();
+      if (hasEnoughText(element, unlikelyCandidates)) {
+        for (Element unlikelyCandidate : unlikelyCandidates) {
+          Log.printAndRemove(unlikelyCandidate, "stripUnlikelyCandidates");
+        }
+        preprocessor.preprocess(element, new PreprocessorOptions(false, true, true));
+
+        textStats = new TextStats(element);
+        scores = scratch.scores;
+        scores.clear();
+        Candidates candidates = scratch.candidates;
+        candidates.collect(element);
+        candidates.setPositionalScores(scores);
+        for (int i = 0; i < candidates.size(); i++) {
+          ExtractionHelpers.getWeight(candidates.get(i), classifier, null, textStats, scores, null);
+        }
+        contentPaths.hit();
+        return element;
+      }
+    }
+    contentPaths.fail(url);
+    return null;
   }
 
-  protected Element getBestMatchElement(Element bodyElement) {
-    Collection<Element> nodes = ExtractionHelpers.getNodes(bodyElement);
-    int maxWeight = 0;
-    Element bestMatchElement = null;
-    List<Element> highRankedElements = new ArrayList<>();
+  /**
+   * Measures the text of {@code element} as if {@code unlikelyCandidates}, and the scripts, styles
+   * and forms that preprocessing removes, were gone, without removing anything.
+   */
+  private boolean hasEnoughText(Element element, Set<Element> unlikelyCandidates) {
+    Set<Element> removed = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+    removed.addAll(unlikelyCandidates);
+    removed.addAll(preprocessor.findScriptsStylesForms(element));
+    if (removed.contains(element)) {
+      return false;
+    }
+    StrippedView view = new StrippedView(removed, scratch.text);
+    return new TextStats(element, view).textLength(element) >= MIN_LENGTH_FOR_BEST_MATCH;
+  }
+
+  /**
+   * Equivalent to {@link #getBestMatchElement()}, but scores each candidate both with and without
+   * unlikely candidates in the same pass, on the original body.
+   */
+  private Element getBestMatchElementInSinglePass() {
+    Element bodyElement = document.body();
+    StrippedView strippedView = new StrippedView(preprocessor.findUnlikelyCandidates(bodyElement), scratch.text);
+    preprocessor.preprocess(bodyElement, new PreprocessorOptions(false, true, true));
+
+    GravityScores fullScores = scratch.scores;
+    GravityScores strippedScores = scratch.strippedScores;
+    fullScores.clear();
+    strippedScores.clear();
+    Candidates candidates = scratch.candidates;
+    candidates.collect(bodyElement);
+    candidates.setPositionalScores(fullScores);
+    candidates.setPositionalScores(strippedView, strippedScores);
+    TextStats fullTextStats = new TextStats(bodyElement);
+    TextStats strippedTextStats = new TextStats(bodyElement, strippedView);
+    BestMatch bestMatch = new BestMatch();
+    BestMatch strippedBestMatch = new BestMatch();
+
+    for (int i = 0; i < candidates.size(); i++) {
+      Element element = candidates.get(i);
+      if (!strippedView.contains(element)) {
+        bestMatch.consider(element, ExtractionHelpers.getWeight(element, classifier, null, fullTextStats, fullScores, null));
+      } else if (strippedView.hasStrippedDescendants(element)) {
+        bestMatch.consider(element, ExtractionHelpers.getWeight(element, classifier, null, fullTextStats, fullScores, null));
+        strippedBestMatch.consider(element, ExtractionHelpers.getWeight(element, classifier, strippedView, strippedTextStats, strippedScores, null));
+      } else {
+        int weight = ExtractionHelpers.getWeight(element, classifier, null, fullTextStats, fullScores, strippedScores);
+        bestMatch.consider(element, weight);
+        strippedBestMatch.consider(element, weight);
+      }
+    }
 
-    for (Element element : nodes) {
-      int currentWeight = ExtractionHelpers.getWeight(element);
+    Element strippedBestMatchElement = strippedBestMatch.bestMatchElement();
+    if (strippedBestMatchElement != null &&
+        strippedTextStats.textLength(strippedBestMatchElement) >= MIN_LENGTH_FOR_BEST_MATCH) {
+      strippedView.strip();
+      scores = strippedScores;
+      return strippedBestMatchElement;
+    }
+
+    scores = fullScores;
+    return bestMatch.bestMatchElement();
+  }
+
+  /**
+   * Picks the best match out of a sequence of weighted candidates, visited in document order.
+   */
+  private static class BestMatch {
+    private int maxWeight = 0;
+    private Element bestMatchElement = null;
+    private final List<Element> highRankedElements = new ArrayList<>();
+
+    void consider(Element element, int currentWeight) {
       if(currentWeight >= 50) {
         highRankedElements.add(element);
       }
@@ -104,29 +405,29 @@ public class ArticleExtractor {
       }
     }
 
-    // if a lot of high ranked elements have the same parent, then the parent is the node to use as it comprises that high ranked ones
-    bestMatchElement = checkIfHighRankedElementsHaveSameParent(bestMatchElement, highRankedElements);
+    Element bestMatchElement() {
+      // if a lot of high ranked elements have the same parent, then the parent is the node to use as it comprises that high ranked ones
+      return checkIfHighRankedElementsHaveSameParent(bestMatchElement, highRankedElements);
+    }
 
-    return bestMatchElement;
-  }
+    private static Element checkIfHighRankedElementsHaveSameParent(Element bestMatchElement, List<Element> highRankedElements) {
+      if(bestMatchElement != null && highRankedElements.size() > 2) {
+        Element parent = bestMatchElement.parent();
+        List<Element> elementsWithSameParent = new ArrayList<>();
 
-  private Element checkIfHighRankedElementsHaveSameParent(Element bestMatchElement, List<Element> highRankedElements) {
-    if(bestMatchElement != null && highRankedElements.size() > 2) {
-      Element parent = bestMatchElement.parent();
-      List<Element> elementsWithSameParent = new ArrayList<>();
+        for(Element element : highRankedElements) {
+          if(element.parent() == parent && element != bestMatchElement) {
+            elementsWithSameParent.add(element);
+          }
+        }
 
-      for(Element element : highRankedElements) {
-        if(element.parent() == parent && element != bestMatchElement) {
-          elementsWithSameParent.add(element);
+        if(elementsWithSameParent.size() > 1) {
+          return parent;
         }
       }
 
-      if(elementsWithSameParent.size() > 1) {
-        return parent;
-      }
+      return bestMatchElement;
     }
-
-    return bestMatchElement;
   }
 
   public Article article() {
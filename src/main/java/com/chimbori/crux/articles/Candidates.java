@@ -0,0 +1,117 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.Arrays;
+
+/**
+ * The Elements that may contain the main content of a page, in document order, along with their
+ * positional scores: the first candidate starts with 100 points, and each one after it with half as
+ * many as the one before, so that content appearing earlier in the document gets a head start.
+ *
+ * Candidates are kept in flat arrays that grow as needed and are reused across runs, and are
+ * picked by a switch on the tag name, so collecting them allocates nothing once the arrays are
+ * large enough.
+ */
+class Candidates {
+  private static final int INITIAL_POSITIONAL_SCORE = 100;
+
+  private Element[] elements = new Element[256];
+  private int[] positionalScores = new int[256];
+  private int size = 0;
+
+  private final NodeTraversor traversor = new NodeTraversor(new NodeVisitor() {
+    @Override
+    public void head(Node node, int depth) {
+      if (node instanceof Element && isCandidate(((Element) node).tagName())) {
+        add((Element) node);
+      }
+    }
+
+    @Override
+    public void tail(Node node, int depth) {
+    }
+  });
+
+  /**
+   * Replaces all candidates with those within {@code root}, including {@code root} itself.
+   */
+  void collect(Element root) {
+    clear();
+    traversor.traverse(root);
+    int score = INITIAL_POSITIONAL_SCORE;
+    for (int i = 0; i < size; i++) {
+      positionalScores[i] = score;
+      score = score / 2;
+    }
+  }
+
+  static boolean isCandidate(String tagName) {
+    switch (tagName) {
+      case "p":
+      case "div":
+      case "td":
+      case "h1":
+      case "h2":
+      case "article":
+      case "section":
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  Element get(int index) {
+    return elements[index];
+  }
+
+  int positionalScore(int index) {
+    return positionalScores[index];
+  }
+
+  /**
+   * Assigns each candidate its positional score in {@code scores}.
+   */
+  void setPositionalScores(GravityScores scores) {
+    for (int i = 0; i < size; i++) {
+      scores.set(elements[i], positionalScores[i]);
+    }
+  }
+
+  /**
+   * Assigns positional scores as if unlikely candidates had been stripped, i.e. counting only the
+   * candidates that the view contains.
+   */
+  void setPositionalScores(StrippedView view, GravityScores scores) {
+    int score = INITIAL_POSITIONAL_SCORE;
+    for (int i = 0; i < size; i++) {
+      if (view.contains(elements[i])) {
+        scores.set(elements[i], score);
+        score = score / 2;
+      }
+    }
+  }
+
+  /**
+   * Drops all references to candidates, keeping the arrays for the next run.
+   */
+  void clear() {
+    Arrays.fill(elements, 0, size, null);
+    size = 0;
+  }
+
+  private void add(Element element) {
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, size * 2);
+      positionalScores = Arrays.copyOf(positionalScores, size * 2);
+    }
+    elements[size++] = element;
+  }
+}
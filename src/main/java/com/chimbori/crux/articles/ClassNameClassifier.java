@@ -0,0 +1,229 @@
+package com.chimbori.crux.articles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Matches CSS class names, ids and inline styles against the positive, unlikely and negative
+ * vocabularies of the extraction heuristics. All vocabularies are compiled into a single
+ * Aho–Corasick automaton, so that one pass over a string reports every vocabulary that occurs
+ * anywhere in it, as a bitmask of {@link #POSITIVE}, {@link #UNLIKELY}, {@link #NEGATIVE} and
+ * {@link #NEGATIVE_STYLE}.
+ *
+ * Matching is equivalent to calling {@code find()} with the corresponding regular expressions:
+ * it is case-sensitive, {@code ^} only matches at the start of the string, and {@code $} matches
+ * at the end of the string or before a line terminator at its very end.
+ *
+ * The automaton is shared and immutable; each instance adds a cache of results, since pages with
+ * thousands of elements tend to repeat the same few dozen class names, and pages from the same
+ * site share most of theirs. Instances are not thread-safe.
+ */
+class ClassNameClassifier {
+  static final int POSITIVE = 1;
+  static final int UNLIKELY = 1 << 1;
+  static final int NEGATIVE = 1 << 2;
+  static final int NEGATIVE_STYLE = 1 << 3;
+
+  /**
+   * Stands for {@code ^} at the start of a vocabulary word.
+   */
+  private static final char START = '\u0002';
+
+  /**
+   * Stands for {@code $} at the end of a vocabulary word.
+   */
+  private static final char END = '\u0003';
+
+  private static final char NEXT_LINE = 0x85;
+  private static final char LINE_SEPARATOR = 0x2028;
+  private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+  private static final String[] POSITIVE_WORDS = {
+      "body", "content", "entry", "h-entry", "main", "page", "post", "text", "blog", "story", "haupt",
+      "article", "artikel", "instapaper_body", "pagination"
+  };
+
+  private static final String[] UNLIKELY_WORDS = {
+      "banner", "breadcrumbs", "combx", "comment", "community", "cover-wrap", "disqus", "discuss",
+      "email", "e-mail", "extra", "foot", "header", "legends", "menu", "modal", "related", "remark",
+      "reply", "replies", "rss", "share", "sharing", "shoutbox", "sidebar", "skyscraper", "social",
+      "sponsor", "supplemental", "ad", "ad-break", "all", "agegate", "archive", "attachment",
+      "pagination", "pager", "popup", "print", "sign", "single", "facebook", "twitter", "yom-remote"
+  };
+
+  private static final String[] NEGATIVE_WORDS = {
+      "nav" + END, "navigation", "user", START + "com-", "hidden", START + "hid" + END, " hid" + END,
+      " hid ", START + "hid ", "banner", "combx", "comment", "com-", "contact", "foot", "footer",
+      "footnote", "masthead", "media", "meta", "modal", "outbrain", "promo", "related", "scroll",
+      "share", "sharing", "shoutbox", "sidebar", "skyscraper", "sponsor", "shopping", "tags", "tool",
+      "widget", "player", "disclaimer", "post-ratings"
+  };
+
+  private static final String[] NEGATIVE_STYLE_WORDS = {
+      "hidden", "display:none", "display: none", "font-size:small", "font-size: small"
+  };
+
+  private static final Automaton AUTOMATON = new Automaton();
+
+  /**
+   * The cache is emptied whenever it grows beyond this many entries, so that an instance that is
+   * reused for many documents does not grow without bounds.
+   */
+  private static final int MAX_CACHE_SIZE = 4096;
+
+  private final Map<String, Integer> cache = new HashMap<>();
+
+  /**
+   * @return the bitmask of vocabularies found in {@code text}, cached for the lifetime of this
+   * instance
+   */
+  int classify(String text) {
+    Integer result = cache.get(text);
+    if (result == null) {
+      result = AUTOMATON.match(text);
+      if (cache.size() >= MAX_CACHE_SIZE) {
+        cache.clear();
+      }
+      cache.put(text, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return the bitmask of vocabularies found in {@code text}, without caching it
+   */
+  static int match(String text) {
+    return AUTOMATON.match(text);
+  }
+
+  private static class Automaton {
+    /**
+     * Maps each ASCII character to its column in {@link #transitions}; column 0 stands for every
+     * character that does not occur in any vocabulary word.
+     */
+    private final int[] columns = new int[128];
+    private int[][] transitions;
+    private int[] outputs;
+    private final int startColumn;
+    private final int endColumn;
+
+    Automaton() {
+      List<String> words = new ArrayList<>();
+      List<Integer> wordBits = new ArrayList<>();
+      addWords(words, wordBits, POSITIVE_WORDS, POSITIVE);
+      addWords(words, wordBits, UNLIKELY_WORDS, UNLIKELY);
+      addWords(words, wordBits, NEGATIVE_WORDS, NEGATIVE);
+      addWords(words, wordBits, NEGATIVE_STYLE_WORDS, NEGATIVE_STYLE);
+
+      int columnCount = 1;
+      for (String word : words) {
+        for (int i = 0; i < word.length(); i++) {
+          if (columns[word.charAt(i)] == 0) {
+            columns[word.charAt(i)] = columnCount++;
+          }
+        }
+      }
+      startColumn = columns[START];
+      endColumn = columns[END];
+
+      // Build the trie, where state 0 is the root.
+      List<int[]> trie = new ArrayList<>();
+      List<Integer> trieOutputs = new ArrayList<>();
+      trie.add(new int[columnCount]);
+      trieOutputs.add(0);
+      for (int w = 0; w < words.size(); w++) {
+        String word = words.get(w);
+        int state = 0;
+        for (int i = 0; i < word.length(); i++) {
+          int column = columns[word.charAt(i)];
+          if (trie.get(state)[column] == 0) {
+            trie.get(state)[column] = trie.size();
+            trie.add(new int[columnCount]);
+            trieOutputs.add(0);
+          }
+          state = trie.get(state)[column];
+        }
+        trieOutputs.set(state, trieOutputs.get(state) | wordBits.get(w));
+      }
+
+      // Turn the trie into a complete transition table by following failure links breadth-first.
+      transitions = trie.toArray(new int[trie.size()][]);
+      outputs = new int[transitions.length];
+      for (int i = 0; i < outputs.length; i++) {
+        outputs[i] = trieOutputs.get(i);
+      }
+      int[] failure = new int[transitions.length];
+      Queue<Integer> queue = new LinkedList<>();
+      for (int column = 0; column < columnCount; column++) {
+        if (transitions[0][column] != 0) {
+          queue.add(transitions[0][column]);
+        }
+      }
+      while (!queue.isEmpty()) {
+        int state = queue.remove();
+        outputs[state] |= outputs[failure[state]];
+        for (int column = 0; column < columnCount; column++) {
+          int next = transitions[state][column];
+          if (next != 0) {
+            failure[next] = transitions[failure[state]][column];
+            queue.add(next);
+          } else {
+            transitions[state][column] = transitions[failure[state]][column];
+          }
+        }
+      }
+    }
+
+    private static void addWords(List<String> words, List<Integer> wordBits, String[] vocabulary, int bit) {
+      words.addAll(Arrays.asList(vocabulary));
+      for (int i = 0; i < vocabulary.length; i++) {
+        wordBits.add(bit);
+      }
+    }
+
+    int match(String text) {
+      int length = text.length();
+      int endOfLastLine = length - lineTerminatorLengthAtEnd(text);
+      int state = transitions[0][startColumn];
+      int bits = outputs[state];
+      for (int i = 0; i < length; i++) {
+        if (i == endOfLastLine) {
+          bits |= outputs[transitions[state][endColumn]];
+        }
+        state = transitions[state][columnOf(text.charAt(i))];
+        bits |= outputs[state];
+      }
+      bits |= outputs[transitions[state][endColumn]];
+      return bits;
+    }
+
+    /**
+     * @return the column for a character of the string being matched, in which the sentinels
+     * standing for anchors are just ordinary characters
+     */
+    private int columnOf(char c) {
+      return c < 128 && c != START && c != END ? columns[c] : 0;
+    }
+
+    /**
+     * Line terminators, as recognized by {@code $} in a {@link java.util.regex.Pattern} compiled
+     * without flags.
+     */
+    private static int lineTerminatorLengthAtEnd(String text) {
+      int length = text.length();
+      if (length == 0) {
+        return 0;
+      }
+      char last = text.charAt(length - 1);
+      if (last == '\n') {
+        return length > 1 && text.charAt(length - 2) == '\r' ? 2 : 1;
+      }
+      return last == '\r' || last == NEXT_LINE || last == LINE_SEPARATOR || last == PARAGRAPH_SEPARATOR ? 1 : 0;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers, for each host, where in the page the main content was found last time, so that later
+ * pages from the same host can skip scoring every candidate in the page. Most sites render every
+ * article with the same template, e.g. inside a {@code div.article-body}, so the same path usually
+ * leads to the content on all of their pages.
+ *
+ * A path is the list of Elements from {@code <body>} down to the best match, each described by its
+ * tag name, its class names, and how many earlier siblings share both, all within the preprocessed
+ * tree the best match was picked from. When a later page has an Element at the same path, with the
+ * same class names all the way down, once preprocessed the same way, and it still holds enough
+ * text, it is used as the best match right away, and only the candidates within it are scored. If
+ * not, the page is extracted as usual, and the path it yields replaces the one remembered.
+ *
+ * Use it by passing it to {@link CruxEngine#contentPaths(ContentPathLearner)} or
+ * {@link ArticleExtractor#contentPaths(ContentPathLearner)}. It is thread-safe, and holds paths for
+ * at most {@code maxHosts} hosts, forgetting the least recently used ones first.
+ */
+public final class ContentPathLearner {
+  private final int maxHosts;
+  private final LinkedHashMap<String, ContentPath> paths;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long failures = 0;
+
+  public ContentPathLearner(int maxHosts) {
+    if (maxHosts <= 0) {
+      throw new IllegalArgumentException("maxHosts must be positive: " + maxHosts);
+    }
+    this.maxHosts = maxHosts;
+    this.paths = new LinkedHashMap<String, ContentPath>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ContentPath> eldest) {
+        return size() > ContentPathLearner.this.maxHosts;
+      }
+    };
+  }
+
+  /**
+   * @return the number of pages whose content was found at the remembered path
+   */
+  public synchronized long hitCount() {
+    return hits;
+  }
+
+  /**
+   * @return the number of pages from hosts without a remembered path
+   */
+  public synchronized long missCount() {
+    return misses;
+  }
+
+  /**
+   * @return the number of pages where the remembered path did not lead to enough content, and
+   * which were therefore scored in full
+   */
+  public synchronized long failureCount() {
+    return failures;
+  }
+
+  /**
+   * @return the fraction of all pages whose content was found at the remembered path, or 0 if no
+   * pages have been extracted yet
+   */
+  public synchronized double hitRate() {
+    long total = hits + misses + failures;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * @return the number of hosts with a remembered path
+   */
+  public synchronized int size() {
+    return paths.size();
+  }
+
+  public synchronized void clear() {
+    paths.clear();
+  }
+
+  /**
+   * @return the path remembered for the host of {@code url}, or null
+   */
+  synchronized ContentPath get(String url) {
+    ContentPath path = paths.get(hostOf(url));
+    if (path == null) {
+      misses++;
+    }
+    return path;
+  }
+
+  synchronized void hit() {
+    hits++;
+  }
+
+  /**
+   * Forgets the path remembered for the host of {@code url}, since it no longer leads to content.
+   */
+  synchronized void fail(String url) {
+    failures++;
+    paths.remove(hostOf(url));
+  }
+
+  void learn(String url, Element bestMatchElement, boolean stripped) {
+    ContentPath path = ContentPath.of(bestMatchElement, stripped);
+    if (path == null) {
+      return;
+    }
+    synchronized (this) {
+      paths.put(hostOf(url), path);
+    }
+  }
+
+  /**
+   * @return the lower-case host and port of {@code url}, or the whole URL if it has no host
+   */
+  static String hostOf(String url) {
+    int start = url.indexOf("://");
+    if (start < 0) {
+      return url.toLowerCase(Locale.ROOT);
+    }
+    start += 3;
+    int end = start;
+    while (end < url.length() && "/?#".indexOf(url.charAt(end)) < 0) {
+      end++;
+    }
+    int userInfo = url.lastIndexOf('@', end - 1);
+    if (userInfo >= start) {
+      start = userInfo + 1;
+    }
+    return url.substring(start, end).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * The path from {@code <body>} to an Element, and whether unlikely candidates had been stripped
+   * from the tree it was found in, so that the same is done again when it is reused.
+   */
+  static final class ContentPath {
+    private final String[] tagNames;
+    private final String[] classNames;
+    private final int[] ordinals;
+    final boolean stripped;
+
+    private ContentPath(String[] tagNames, String[] classNames, int[] ordinals, boolean stripped) {
+      this.tagNames = tagNames;
+      this.classNames = classNames;
+      this.ordinals = ordinals;
+      this.stripped = stripped;
+    }
+
+    /**
+     * @param element  the best match, within a tree that has already been preprocessed
+     * @param stripped whether unlikely candidates have been stripped from that tree
+     * @return the path to {@code element}, or null if it is not within a {@code <body>}
+     */
+    static ContentPath of(Element element, boolean stripped) {
+      List<Element> steps = new ArrayList<>();
+      Element current = element;
+      while (current != null && !current.tagName().equals("body")) {
+        steps.add(current);
+        current = current.parent();
+      }
+      if (current == null || steps.isEmpty()) {
+        return null;
+      }
+
+      int depth = steps.size();
+      String[] tagNames = new String[depth];
+      String[] classNames = new String[depth];
+      int[] ordinals = new int[depth];
+      for (int i = 0; i < depth; i++) {
+        Element step = steps.get(depth - 1 - i);
+        tagNames[i] = step.tagName();
+        classNames[i] = classSignature(step);
+        int ordinal = 0;
+        for (Element sibling = step.previousElementSibling(); sibling != null; sibling = sibling.previousElementSibling()) {
+          if (sibling.tagName().equals(tagNames[i]) && classSignature(sibling).equals(classNames[i])) {
+            ordinal++;
+          }
+        }
+        ordinals[i] = ordinal;
+      }
+      return new ContentPath(tagNames, classNames, ordinals, stripped);
+    }
+
+    /**
+     * Walks {@code body} without modifying it, but only through the Elements that preprocessing it
+     * the same way as the tree this path was learned from would keep, so that siblings are counted
+     * the same way, and the path never leads into, e.g., an unlikely candidate.
+     *
+     * @return the Element at this path within {@code body}, if every Element along the way has the
+     * same tag and class names as when the path was learned, or else null
+     */
+    Element find(Element body, Preprocessor preprocessor) {
+      List<Element> children = new ArrayList<>();
+      Element current = body;
+      for (int i = 0; i < tagNames.length && current != null; i++) {
+        children.clear();
+        addPreprocessedChildren(current, preprocessor, children);
+        Element next = null;
+        int ordinal = 0;
+        for (Element child : children) {
+          if (child.tagName().equals(tagNames[i]) && classSignature(child).equals(classNames[i])) {
+            if (ordinal == ordinals[i]) {
+              next = child;
+              break;
+            }
+            ordinal++;
+          }
+        }
+        current = next;
+      }
+      return current;
+    }
+
+    /**
+     * Adds the child Elements that {@code parent} would have once preprocessed: those that would be
+     * removed are skipped, and the children of {@code <noscript>}s that would be unwrapped are added
+     * in their place.
+     */
+    private void addPreprocessedChildren(Element parent, Preprocessor preprocessor, List<Element> children) {
+      for (Element child : parent.children()) {
+        if ((stripped && preprocessor.isUnlikelyCandidate(child)) || preprocessor.isScriptStyleForm(child)) {
+          continue;
+        }
+        if (child.tagName().equals("noscript")) {
+          addPreprocessedChildren(child, preprocessor, children);
+        } else {
+          children.add(child);
+        }
+      }
+    }
+
+    /**
+     * @return the class names of {@code element}, sorted, so that their order does not matter
+     */
+    private static String classSignature(Element element) {
+      String className = element.className().trim();
+      if (className.indexOf(' ') < 0 && className.indexOf('\t') < 0) {
+        return className;
+      }
+      String[] names = className.split("\\s+");
+      Arrays.sort(names);
+      StringBuilder signature = new StringBuilder();
+      for (String name : names) {
+        if (signature.length() > 0) {
+          signature.append(' ');
+        }
+        signature.append(name);
+      }
+      return signature.toString();
+    }
+  }
+}
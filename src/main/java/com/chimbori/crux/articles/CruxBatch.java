@@ -0,0 +1,272 @@
+package com.chimbori.crux.articles;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Extracts many pages in parallel on a caller-supplied {@link Executor}, sharing one
+ * {@link CruxEngine} among all worker threads.
+ *
+ * <pre>
+ * CruxBatch batch = new CruxBatch().maxInFlight(64).timeout(10, TimeUnit.SECONDS).ordered();
+ * batch.extractAll(pages, executor, new CruxBatch.Listener() {
+ *   public void onResult(PageResult result) { ... }
+ * });
+ * </pre>
+ *
+ * Input is pulled lazily from the {@link Iterable}, and no more than {@link #maxInFlight(int)}
+ * pages are submitted but not yet delivered at any time, so a crawl queue of any length can be
+ * fed through without buffering it in memory. A page that throws, or that fails to decode, is
+ * reported as a failed {@link PageResult} without affecting the rest of the batch.
+ *
+ * All results are delivered on the thread that calls {@code extractAll}, which blocks until the
+ * whole batch is done, so listeners do not need to be thread-safe.
+ */
+public class CruxBatch {
+  private final CruxEngine engine;
+  private int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+  private long timeoutNanos = 0;
+  private boolean ordered = false;
+
+  /**
+   * Receives results of a batch, on the thread that called
+   * {@link #extractAll(Iterable, Executor, Listener)}.
+   */
+  public interface Listener {
+    void onResult(PageResult result);
+  }
+
+  public CruxBatch() {
+    this(new CruxEngine());
+  }
+
+  public CruxBatch(CruxEngine engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * Limits the number of pages that have been submitted to the executor, but whose results have
+   * not been delivered yet. Defaults to twice the number of available processors.
+   */
+  public CruxBatch maxInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException();
+    }
+    this.maxInFlight = maxInFlight;
+    return this;
+  }
+
+  /**
+   * Reports a page as timed out if its extraction has been running for longer than this, counting
+   * from when a worker thread picked it up. Extraction cannot be interrupted, so the worker keeps
+   * running until the page is done, but its late result is dropped. Until then, it still counts
+   * towards {@link #maxInFlight(int)}, so that slow pages cannot pile up abandoned workers. By
+   * default, there is no timeout.
+   */
+  public CruxBatch timeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException();
+    }
+    this.timeoutNanos = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * Delivers results in the same order as the input, instead of as soon as each is ready. Results
+   * that are ready early wait for the ones before them, and count towards
+   * {@link #maxInFlight(int)} meanwhile.
+   */
+  public CruxBatch ordered() {
+    this.ordered = true;
+    return this;
+  }
+
+  /**
+   * Extracts all pages, and returns their results in input order.
+   */
+  public List<PageResult> extractAll(Iterable<PageInput> pages, Executor executor) throws InterruptedException {
+    final List<PageResult> results = new ArrayList<>();
+    extractAll(pages, executor, new Listener() {
+      @Override
+      public void onResult(PageResult result) {
+        while (results.size() <= result.index) {
+          results.add(null);
+        }
+        results.set(result.index, result);
+      }
+    });
+    return results;
+  }
+
+  /**
+   * Extracts all pages, passing each result to the listener as described in {@link CruxBatch}.
+   * Returns when all results have been delivered.
+   *
+   * @throws InterruptedException if the calling thread is interrupted, in which case pages that
+   * have been submitted may still be extracted, but their results are not delivered.
+   */
+  public void extractAll(Iterable<PageInput> pages, Executor executor, Listener listener) throws InterruptedException {
+    BlockingQueue<Task> completed = new LinkedBlockingQueue<>();
+    Map<Integer, Task> inFlight = new LinkedHashMap<>();
+    Map<Integer, PageResult> pendingDelivery = new HashMap<>();
+    int abandoned = 0;  // Tasks that timed out, but whose workers are still running.
+    int nextIndex = 0;
+    int nextToDeliver = 0;
+
+    Iterator<PageInput> input = pages.iterator();
+    while (true) {
+      while (input.hasNext() && inFlight.size() + abandoned + pendingDelivery.size() < maxInFlight) {
+        Task task = new Task(nextIndex++, input.next(), completed);
+        inFlight.put(task.index, task);
+        try {
+          executor.execute(task);
+        } catch (RejectedExecutionException e) {
+          closeQuietly(task.page);
+          task.finish(PageResult.failure(task.index, task.page.url, e));
+        }
+      }
+      if (inFlight.isEmpty() && !input.hasNext()) {
+        break;  // Abandoned workers only need to be waited for while they hold up more input.
+      }
+
+      Task task = timeoutNanos > 0
+          ? completed.poll(nanosUntilNextTimeout(inFlight), TimeUnit.NANOSECONDS)
+          : completed.take();
+      List<PageResult> results = new ArrayList<>();
+      if (task != null) {
+        if (inFlight.remove(task.index) != null) {
+          results.add(task.result);
+        } else {
+          abandoned--;  // Its worker is done, and no longer counts towards maxInFlight.
+        }
+      }
+      if (timeoutNanos > 0) {
+        abandoned += collectTimedOut(inFlight, results);
+      }
+
+      for (PageResult result : results) {
+        if (!ordered) {
+          listener.onResult(result);
+          continue;
+        }
+        pendingDelivery.put(result.index, result);
+        PageResult next;
+        while ((next = pendingDelivery.remove(nextToDeliver)) != null) {
+          listener.onResult(next);
+          nextToDeliver++;
+        }
+      }
+    }
+  }
+
+  private long nanosUntilNextTimeout(Map<Integer, Task> inFlight) {
+    long now = System.nanoTime();
+    long wait = timeoutNanos;
+    for (Task task : inFlight.values()) {
+      if (task.started) {
+        wait = Math.min(wait, task.startNanos + timeoutNanos - now);
+      }
+    }
+    return Math.max(wait, 0);
+  }
+
+  /**
+   * @return the number of tasks that were abandoned
+   */
+  private int collectTimedOut(Map<Integer, Task> inFlight, List<PageResult> results) {
+    long now = System.nanoTime();
+    int abandoned = 0;
+    Iterator<Task> tasks = inFlight.values().iterator();
+    while (tasks.hasNext()) {
+      Task task = tasks.next();
+      if (task.started && now - task.startNanos >= timeoutNanos && task.abandon()) {
+        tasks.remove();
+        abandoned++;
+        results.add(PageResult.timeout(task.index, task.page.url, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+      }
+    }
+    return abandoned;
+  }
+
+  private class Task implements Runnable {
+    final int index;
+    final PageInput page;
+    private final BlockingQueue<Task> completed;
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    volatile boolean started;
+    volatile long startNanos;
+    PageResult result;
+
+    Task(int index, PageInput page, BlockingQueue<Task> completed) {
+      this.index = index;
+      this.page = page;
+      this.completed = completed;
+    }
+
+    @Override
+    public void run() {
+      startNanos = System.nanoTime();
+      started = true;
+      PageResult result;
+      try {
+        Article article = page.buffer != null
+            ? engine.extract(page.url, page.buffer, page.contentType)
+            : engine.extract(page.url, readHtml(page));
+        result = PageResult.success(index, page.url, article);
+      } catch (Throwable t) {  // Isolates the rest of the batch from anything that goes wrong.
+        result = PageResult.failure(index, page.url, t);
+      }
+      finish(result);
+    }
+
+    /**
+     * Records the result, unless the task has been abandoned, and hands the task back to the batch
+     * either way, so that it knows the worker is done.
+     */
+    void finish(PageResult result) {
+      if (done.compareAndSet(false, true)) {
+        this.result = result;
+      }
+      completed.add(this);
+    }
+
+    /**
+     * @return whether the task was abandoned, i.e. it had not completed before.
+     */
+    boolean abandon() {
+      return done.compareAndSet(false, true);
+    }
+  }
+
+  private static void closeQuietly(PageInput page) {
+    if (page.stream != null) {
+      try {
+        page.stream.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private String readHtml(PageInput page) throws IOException {
+    if (page.html != null) {
+      return page.html;
+    }
+    try {
+      return engine.decode(page.stream, page.contentType);
+    } finally {
+      page.stream.close();
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.ContentHash;
+
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A reusable, thread-safe alternative to creating a new {@link ArticleExtractor} for every page.
+ * An engine holds only immutable configuration; all mutable state needed while extracting a page
+ * lives in scratch buffers that are kept per thread and reused for every page that thread
+ * extracts. A single engine can therefore be shared by any number of worker threads.
+ *
+ * <pre>
+ * CruxEngine engine = new CruxEngine().singlePass();
+ * Article article = engine.extract(url, rawHTML);  // From any thread.
+ * </pre>
+ */
+public final class CruxEngine {
+  private final boolean singlePass;
+  private final Set<MetadataField> metadataFields;
+  private final ExtractionCache cache;
+  private final ContentPathLearner contentPaths;
+
+  private final ThreadLocal<ExtractionScratch> scratch = new ThreadLocal<ExtractionScratch>() {
+    @Override
+    protected ExtractionScratch initialValue() {
+      return new ExtractionScratch();
+    }
+  };
+
+  public CruxEngine() {
+    this(false, Collections.unmodifiableSet(EnumSet.allOf(MetadataField.class)), null, null);
+  }
+
+  private CruxEngine(boolean singlePass, Set<MetadataField> metadataFields, ExtractionCache cache,
+                     ContentPathLearner contentPaths) {
+    this.singlePass = singlePass;
+    this.metadataFields = metadataFields;
+    this.cache = cache;
+    this.contentPaths = contentPaths;
+  }
+
+  /**
+   * @return an engine that extracts content as described in {@link ArticleExtractor#singlePass()}
+   */
+  public CruxEngine singlePass() {
+    return new CruxEngine(true, metadataFields, cache, contentPaths);
+  }
+
+  /**
+   * @return an engine that extracts only these metadata fields, as described in
+   * {@link ArticleExtractor#extractMetadata(Set)}
+   */
+  public CruxEngine metadataFields(Set<MetadataField> metadataFields) {
+    Set<MetadataField> copy = EnumSet.noneOf(MetadataField.class);
+    copy.addAll(metadataFields);
+    return new CruxEngine(singlePass, Collections.unmodifiableSet(copy), cache, contentPaths);
+  }
+
+  /**
+   * @return an engine that looks up every page in {@code cache} before extracting it, and returns
+   * the cached Article without even parsing the page if its URL and contents are unchanged. Cached
+   * Articles are shared by all callers that extract the same page, so they must not be modified.
+   * Pages passed in as an already-parsed {@link Document} are not cached.
+   */
+  public CruxEngine cache(ExtractionCache cache) {
+    return new CruxEngine(singlePass, metadataFields, cache, contentPaths);
+  }
+
+  /**
+   * @return an engine that learns where the content of each host’s pages is, as described in
+   * {@link ArticleExtractor#contentPaths(ContentPathLearner)}
+   */
+  public CruxEngine contentPaths(ContentPathLearner contentPaths) {
+    return new CruxEngine(singlePass, metadataFields, cache, contentPaths);
+  }
+
+  /**
+   * Extracts both metadata and content of a page.
+   */
+  public Article extract(String url, String html) {
+    ExtractionCache.Key key = null;
+    if (cache != null) {
+      key = ExtractionCache.key(url, ContentHash.of(html), html.length());
+      Article cached = cache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    Article article = extractUncached(url, html);
+    if (cache != null) {
+      cache.put(key, article);
+    }
+    return article;
+  }
+
+  /**
+   * Extracts both metadata and content of a page from its raw bytes, e.g. a slice of a
+   * memory-mapped file, which are decoded as described in
+   * {@link com.chimbori.crux.common.CharsetConverter#decode(ByteBuffer, String)}. If the page is
+   * cached, it is not even decoded.
+   *
+   * @param contentType the HTTP {@code Content-Type} header the page was served with, or null
+   */
+  public Article extract(String url, ByteBuffer buffer, String contentType) {
+    ExtractionCache.Key key = null;
+    if (cache != null) {
+      key = ExtractionCache.key(url, ContentHash.of(buffer), buffer.remaining());
+      Article cached = cache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    Article article = extractUncached(url, scratch.get().converter.decode(buffer, contentType).toString());
+    if (cache != null) {
+      cache.put(key, article);
+    }
+    return article;
+  }
+
+  /**
+   * Decodes a page as described in
+   * {@link com.chimbori.crux.common.CharsetConverter#decode(InputStream, String)}, with the
+   * converter of the calling thread’s scratch buffers.
+   */
+  String decode(InputStream inputStream, String contentType) throws IOException {
+    return scratch.get().converter.decode(inputStream, contentType).toString();
+  }
+
+  private Article extractUncached(String url, String html) {
+    ExtractionScratch scratch = this.scratch.get();
+    try {
+      return configure(new ArticleExtractor(url, html, scratch)).extractMetadata(metadataFields).extractContent().article();
+    } finally {
+      scratch.reset();
+    }
+  }
+
+  /**
+   * Extracts both metadata and content of a page that has already been parsed. Note that the
+   * document is modified in the process.
+   */
+  public Article extract(String url, Document document) {
+    ExtractionScratch scratch = this.scratch.get();
+    try {
+      return configure(new ArticleExtractor(url, document, scratch)).extractMetadata(metadataFields).extractContent().article();
+    } finally {
+      scratch.reset();
+    }
+  }
+
+  /**
+   * Extracts both metadata and content of a page, writing the text of the content to {@code out}
+   * as described in {@link ArticleExtractor#extractText(Appendable, TextFormat)}, instead of
+   * building {@link Article#document}. Pages extracted this way are neither looked up in, nor
+   * added to, the cache.
+   */
+  public Article extractText(String url, String html, Appendable out, TextFormat format) throws IOException {
+    ExtractionScratch scratch = this.scratch.get();
+    try {
+      return configure(new ArticleExtractor(url, html, scratch)).extractMetadata(metadataFields).extractText(out, format).article();
+    } finally {
+      scratch.reset();
+    }
+  }
+
+  private ArticleExtractor configure(ArticleExtractor extractor) {
+    if (contentPaths != null) {
+      extractor.contentPaths(contentPaths);
+    }
+    return singlePass ? extractor.singlePass() : extractor;
+  }
+}
@@ -0,0 +1,90 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Element;
+
+import java.util.Arrays;
+
+/**
+ * Maps Elements to primitive ints, as a side table instead of on the DOM. Keys are compared by
+ * identity, so neither lookups nor updates allocate, or touch the Element’s attributes.
+ *
+ * This is an open-addressing hash table with linear probing. Individual entries are never removed,
+ * since a table is only filled during a single extraction run, and cleared as a whole afterwards.
+ */
+class ElementIntMap {
+  private static final int INITIAL_CAPACITY = 64;  // Must be a power of two.
+
+  private Element[] keys = new Element[INITIAL_CAPACITY];
+  private int[] values = new int[INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * @return whether a value has ever been assigned to this Element, even if that value is zero.
+   */
+  boolean contains(Element el) {
+    return keys[slotOf(el, keys)] != null;
+  }
+
+  int get(Element el) {
+    return values[slotOf(el, keys)];  // Empty slots have a value of 0.
+  }
+
+  void set(Element el, int value) {
+    int slot = slotOf(el, keys);
+    if (keys[slot] == null) {
+      if ((size + 1) * 2 > keys.length) {
+        grow();
+        slot = slotOf(el, keys);
+      }
+      keys[slot] = el;
+      size++;
+    }
+    values[slot] = value;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Removes all entries, keeping the table’s capacity for the next extraction run.
+   */
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(keys, null);
+      Arrays.fill(values, 0);
+      size = 0;
+    }
+  }
+
+  /**
+   * @return the slot that holds this Element, or the empty slot where it would be inserted.
+   */
+  private static int slotOf(Element el, Element[] keys) {
+    int mask = keys.length - 1;
+    int slot = hash(el) & mask;
+    while (keys[slot] != null && keys[slot] != el) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(Element el) {
+    int h = System.identityHashCode(el) * 0x9E3779B9;  // Spread bits, since the table is indexed by the low ones.
+    return h ^ (h >>> 16);
+  }
+
+  private void grow() {
+    Element[] oldKeys = keys;
+    int[] oldValues = values;
+    keys = new Element[oldKeys.length * 2];
+    values = new int[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        int slot = slotOf(oldKeys[i], keys);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package com.chimbori.crux.articles;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers extracted {@link Article}s, so that a page whose contents have not changed since it was
+ * last extracted is not parsed again. Entries are keyed by the page’s URL, without its fragment and
+ * with its scheme and host in lower case, and by a {@link com.chimbori.crux.common.ContentHash} of
+ * its raw bytes or HTML.
+ *
+ * The cache is bounded both by its number of entries and by their total weight, i.e. the size of
+ * the pages they were extracted from. Which entry is evicted is decided as in TinyLFU: the least
+ * recently used entry is the candidate victim, but a new page only displaces it if the new page has
+ * been requested at least as often recently, as estimated by a {@link FrequencySketch}. A burst of
+ * pages that are seen only once therefore cannot flush out the pages that keep coming back.
+ *
+ * Use it by passing it to {@link CruxEngine#cache(ExtractionCache)}. It is thread-safe, and can be
+ * shared by several engines with the same configuration.
+ */
+public final class ExtractionCache {
+  private final int maxEntries;
+  private final long maxWeight;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final FrequencySketch sketch;
+  private long weight = 0;
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long rejections = 0;
+
+  /**
+   * @param maxEntries the maximum number of Articles kept
+   * @param maxWeight  the maximum total size of the pages they were extracted from, in bytes for
+   *                   raw pages, or in chars for decoded HTML
+   */
+  public ExtractionCache(int maxEntries, long maxWeight) {
+    if (maxEntries <= 0 || maxWeight <= 0) {
+      throw new IllegalArgumentException("maxEntries and maxWeight must be positive");
+    }
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.sketch = new FrequencySketch(maxEntries);
+  }
+
+  /**
+   * @return the number of lookups that found an Article
+   */
+  public synchronized long hitCount() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that did not find an Article
+   */
+  public synchronized long missCount() {
+    return misses;
+  }
+
+  /**
+   * @return the number of Articles that were removed to make room for others
+   */
+  public synchronized long evictionCount() {
+    return evictions;
+  }
+
+  /**
+   * @return the number of Articles that were not stored, because they were requested less often
+   * than the ones they would have displaced, or were heavier than the whole cache
+   */
+  public synchronized long rejectionCount() {
+    return rejections;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long weight() {
+    return weight;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  static Key key(String url, long contentHash, int length) {
+    return new Key(canonicalize(url), contentHash, length);
+  }
+
+  synchronized Article get(Key key) {
+    sketch.increment(key.hashCode64());
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.article;
+  }
+
+  /**
+   * Stores an Article for {@code key}, unless the entries it would displace are more popular. An
+   * Article that is already stored for {@code key} is replaced in place, since the new one weighs
+   * the same and displaces nothing.
+   */
+  synchronized void put(Key key, Article article) {
+    int entryWeight = key.length;
+    if (entries.containsKey(key)) {
+      entries.put(key, new Entry(article, entryWeight));
+      return;
+    }
+    if (entryWeight > maxWeight) {
+      rejections++;
+      return;
+    }
+
+    // Picks victims first, so that nothing is evicted if the new entry is rejected after all.
+    List<Key> victims = new ArrayList<>();
+    int frequency = sketch.frequency(key.hashCode64());
+    int remainingEntries = entries.size();
+    long remainingWeight = weight;
+    Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+    while (remainingEntries + 1 > maxEntries || remainingWeight + entryWeight > maxWeight) {
+      Map.Entry<Key, Entry> victim = eldest.next();
+      if (frequency < sketch.frequency(victim.getKey().hashCode64())) {
+        rejections++;
+        return;
+      }
+      victims.add(victim.getKey());
+      remainingEntries--;
+      remainingWeight -= victim.getValue().weight;
+    }
+
+    for (Key victim : victims) {
+      weight -= entries.remove(victim).weight;
+      evictions++;
+    }
+    entries.put(key, new Entry(article, entryWeight));
+    weight += entryWeight;
+  }
+
+  /**
+   * Drops the fragment, which is never sent to the server, and lower-cases the scheme and host,
+   * which are case-insensitive.
+   */
+  static String canonicalize(String url) {
+    int hash = url.indexOf('#');
+    if (hash >= 0) {
+      url = url.substring(0, hash);
+    }
+    int schemeEnd = url.indexOf("://");
+    if (schemeEnd < 0) {
+      return url;
+    }
+    int hostEnd = schemeEnd + 3;
+    while (hostEnd < url.length() && url.charAt(hostEnd) != '/' && url.charAt(hostEnd) != '?') {
+      hostEnd++;
+    }
+    return url.substring(0, hostEnd).toLowerCase(Locale.ROOT) + url.substring(hostEnd);
+  }
+
+  static final class Key {
+    final String url;
+    final long contentHash;
+    final int length;
+
+    Key(String url, long contentHash, int length) {
+      this.url = url;
+      this.contentHash = contentHash;
+      this.length = length;
+    }
+
+    long hashCode64() {
+      return contentHash * 31 + url.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      long h = hashCode64();
+      return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return contentHash == other.contentHash && length == other.length && url.equals(other.url);
+    }
+  }
+
+  private static final class Entry {
+    final Article article;
+    final int weight;
+
+    Entry(Article article, int weight) {
+      this.article = article;
+      this.weight = weight;
+    }
+  }
+}
@@ -5,40 +5,16 @@ import com.chimbori.crux.common.StringUtils;
 import org.jsoup.nodes.Element;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 class ExtractionHelpers {
   private ExtractionHelpers() {
   }
 
-  public static final String GRAVITY_SCORE_ATTRIBUTE = "gravityScore";
-  public static final String GRAVITY_SCORE_SELECTOR = String.format("*[%s]", GRAVITY_SCORE_ATTRIBUTE);
-
-  private static final Pattern IMPORTANT_NODES =
-      Pattern.compile("p|div|td|h1|h2|article|section");
-
-  public static final Pattern UNLIKELY_CSS_CLASSES_AND_IDS =
-      Pattern.compile("banner|breadcrumbs|combx|comment|community|cover-wrap|disqus|discuss|e[-]?mail|extra|"
-          + "foot|header|legends|menu|modal|related|remark|reply|replies|rss|share|sharing|shoutbox|sidebar|skyscraper|"
-          + "social|sponsor|supplemental|ad|ad-break|all|agegate|archive|attachment|pagination|pager|popup|print|"
-          + "sign|single|facebook|twitter|yom-remote");
-
-  public static final Pattern POSITIVE_CSS_CLASSES_AND_IDS =
-      Pattern.compile("body|content|h?entry|h-entry|main|page|post|text|blog|story|haupt"
-          + "|arti(cle|kel)|instapaper_body|pagination");
-
-  public static final Pattern NEGATIVE_CSS_CLASSES_AND_IDS =
-      Pattern.compile("nav($|igation)|user|(^com-)|"
-          + "hidden|^hid$| hid$| hid |^hid |banner|combx|comment|com-|contact|foot|footer|footnote|"
-          + "masthead|media|meta|modal|outbrain|promo|related|scroll|share|sharing|shoutbox|sidebar|skyscraper|"
-          + "sponsor|shopping|tags|tool|widget|player|disclaimer|post-ratings");
-
-  private static final Pattern NEGATIVE_CSS_STYLES =
-      Pattern.compile("hidden|display: ?none|font-size: ?small");
+  /**
+   * Escaped markup and CSS lengths, which suggest that text is code or styling rather than prose.
+   */
+  static final String[] NOISE_MARKERS = {"&quot;", "&lt;", "&gt;", "px"};
 
   /**
    * Weights current element. By matching it with positive candidates and
@@ -47,11 +23,18 @@ class ExtractionHelpers {
    * child nodes
    *
    * @param e Element to weight, along with child nodes
+   * @param classifier classifies the Element’s class name, id and style
+   * @param view if not null, the Element is weighted as if unlikely candidates had been stripped
+   * @param textStats text lengths within the tree, computed with the same view
+   * @param scores where scores given to child nodes are added
+   * @param strippedScores if not null, child node scores are added here as well; used when the
+   *                       Element weighs the same with or without unlikely candidates
    */
-  static int getWeight(Element e) {
-    int weight = calcWeight(e);
-    weight += (int) Math.round(e.ownText().length() / 100.0 * 10);
-    weight += weightChildNodes(e);
+  static int getWeight(Element e, ClassNameClassifier classifier, StrippedView view, TextStats textStats,
+                       GravityScores scores, GravityScores strippedScores) {
+    int weight = calcWeight(e, classifier);
+    weight += (int) Math.round(textStats.ownTextLength(e) / 100.0 * 10);
+    weight += weightChildNodes(e, view, textStats, scores, strippedScores);
     return weight;
   }
 
@@ -67,18 +50,19 @@ class ExtractionHelpers {
    *
    * @param rootEl Element, who's child nodes will be weighted
    */
-  private static int weightChildNodes(Element rootEl) {
+  private static int weightChildNodes(Element rootEl, StrippedView view, TextStats textStats,
+                                      GravityScores scores, GravityScores strippedScores) {
     int weight = 0;
     Element caption = null;
     List<Element> pEls = new ArrayList<>(5);
     for (Element child : rootEl.children()) {
-      String ownText = child.ownText();
+      if (view != null && view.isStripped(child)) {
+        continue;
+      }
 
       // if you are on a paragraph, grab all the text including that surrounded by additional formatting.
-      if (child.tagName().equals("p"))
-        ownText = child.text();
-
-      int ownTextLength = ownText.length();
+      boolean isParagraph = child.tagName().equals("p");
+      int ownTextLength = isParagraph ? textStats.textLength(child) : textStats.ownTextLength(child);
       if (ownTextLength < 20)
         continue;
 
@@ -87,9 +71,16 @@ class ExtractionHelpers {
 
       if (child.tagName().equals("h1") || child.tagName().equals("h2")) {
         weight += 30;
-      } else if (child.tagName().equals("div") || child.tagName().equals("p")) {
-        weight += calcWeightForChild(child, ownText);
-        if (child.tagName().equals("p") && ownTextLength > 50)
+      } else if (child.tagName().equals("div") || isParagraph) {
+        String ownText;
+        if (isParagraph)
+          ownText = view != null ? view.text(child) : child.text();
+        else
+          ownText = view != null ? view.ownText(child) : child.ownText();
+        int childWeight = calcWeightForChild(ownText);
+        addScore(child, childWeight, scores, strippedScores);
+        weight += childWeight;
+        if (isParagraph && ownTextLength > 50)
           pEls.add(child);
 
         if (child.className().toLowerCase().equals("caption"))
@@ -103,94 +94,68 @@ class ExtractionHelpers {
 
     if (pEls.size() >= 2) {
       for (Element subEl : rootEl.children()) {
+        if (view != null && view.isStripped(subEl)) {
+          continue;
+        }
+
         if ("h1;h2;h3;h4;h5;h6".contains(subEl.tagName())) {
           weight += 20;
           // headerEls.add(subEl);
         }
 
         if ("p".contains(subEl.tagName())) {
-          addScore(subEl, 30);
+          addScore(subEl, 30, scores, strippedScores);
         }
       }
     }
     return weight;
   }
 
-  private static void addScore(Element el, int score) {
-    setScore(el, getScore(el) + score);
-  }
-
-  private static int getScore(Element el) {
-    try {
-      return Integer.parseInt(el.attr(GRAVITY_SCORE_ATTRIBUTE));
-    } catch (NumberFormatException ex) {
-      return 0;
+  private static void addScore(Element el, int score, GravityScores scores, GravityScores strippedScores) {
+    scores.add(el, score);
+    if (strippedScores != null) {
+      strippedScores.add(el, score);
     }
   }
 
-  private static void setScore(Element el, int score) {
-    el.attr(GRAVITY_SCORE_ATTRIBUTE, Integer.toString(score));
-  }
-
-  private static int calcWeightForChild(Element child, String ownText) {
-    int c = StringUtils.countMatches(ownText, "&quot;");
-    c += StringUtils.countMatches(ownText, "&lt;");
-    c += StringUtils.countMatches(ownText, "&gt;");
-    c += StringUtils.countMatches(ownText, "px");
+  private static int calcWeightForChild(String ownText) {
+    int c = StringUtils.countMatches(ownText, NOISE_MARKERS);
     int val;
     if (c > 5) {
       val = -30;
     } else {
       val = (int) Math.round(ownText.length() / 25.0);
     }
-
-    addScore(child, val);
     return val;
   }
 
-  private static int calcWeight(Element element) {
-    String className = element.className();
-    String id = element.id();
+  private static int calcWeight(Element element, ClassNameClassifier classifier) {
+    int classNameMatches = classifier.classify(element.className());
+    int idMatches = classifier.classify(element.id());
     String style = element.attr("style");
 
     int weight = 0;
-    if (POSITIVE_CSS_CLASSES_AND_IDS.matcher(className).find()) {
+    if ((classNameMatches & ClassNameClassifier.POSITIVE) != 0) {
       weight += 35;
     }
-    if (POSITIVE_CSS_CLASSES_AND_IDS.matcher(id).find()) {
+    if ((idMatches & ClassNameClassifier.POSITIVE) != 0) {
       weight += 40;
     }
-    if (UNLIKELY_CSS_CLASSES_AND_IDS.matcher(className).find()) {
+    if ((classNameMatches & ClassNameClassifier.UNLIKELY) != 0) {
       weight -= 20;
     }
-    if (UNLIKELY_CSS_CLASSES_AND_IDS.matcher(id).find()) {
+    if ((idMatches & ClassNameClassifier.UNLIKELY) != 0) {
       weight -= 20;
     }
-    if (NEGATIVE_CSS_CLASSES_AND_IDS.matcher(className).find()) {
+    if ((classNameMatches & ClassNameClassifier.NEGATIVE) != 0) {
       weight -= 50;
     }
-    if (NEGATIVE_CSS_CLASSES_AND_IDS.matcher(id).find()) {
+    if ((idMatches & ClassNameClassifier.NEGATIVE) != 0) {
       weight -= 50;
     }
-    if (style != null && !style.isEmpty() && NEGATIVE_CSS_STYLES.matcher(style).find()) {
+    if (style != null && !style.isEmpty() && (classifier.classify(style) & ClassNameClassifier.NEGATIVE_STYLE) != 0) {
       weight -= 50;
     }
     return weight;
   }
-
-  /**
-   * @return a set of all important nodes
-   */
-  static Collection<Element> getNodes(Element element) {
-    Map<Element, Object> nodes = new LinkedHashMap<>(64);
-    int score = 100;
-    for (Element el : element.select("*")) {
-      if (IMPORTANT_NODES.matcher(el.tagName()).matches()) {
-        nodes.put(el, null);
-        setScore(el, score);
-        score = score / 2;
-      }
-    }
-    return nodes.keySet();
-  }
 }
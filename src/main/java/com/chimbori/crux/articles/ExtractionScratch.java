@@ -0,0 +1,34 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.CharsetConverter;
+
+/**
+ * Everything an extraction run needs besides the page itself: processors, score tables, and
+ * buffers. None of it outlives a run in a meaningful way, so a thread can reuse one instance for
+ * every page it extracts, instead of allocating all of it again for each page.
+ *
+ * Not thread safe; see {@link CruxEngine} for how instances are kept per thread.
+ */
+class ExtractionScratch {
+  final ClassNameClassifier classifier = new ClassNameClassifier();
+  final Preprocessor preprocessor = new Preprocessor(classifier);
+  final Postprocessor postprocessor = new Postprocessor(classifier);
+
+  final GravityScores scores = new GravityScores();
+  final GravityScores strippedScores = new GravityScores();
+  final Candidates candidates = new Candidates();
+  final StringBuilder text = new StringBuilder();
+  final CharsetConverter converter = new CharsetConverter();
+  final TextFingerprinter fingerprinter = new TextFingerprinter();
+
+  /**
+   * Drops all references to the last page, so that its DOM can be garbage-collected, while
+   * keeping the buffers themselves for the next page.
+   */
+  void reset() {
+    scores.clear();
+    strippedScores.clear();
+    candidates.clear();
+    text.setLength(0);
+  }
+}
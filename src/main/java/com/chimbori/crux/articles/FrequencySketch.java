@@ -0,0 +1,64 @@
+package com.chimbori.crux.articles;
+
+/**
+ * Estimates how often each key has been seen recently, in a fixed amount of memory: a count-min
+ * sketch of four rows of 4-bit counters, which may overestimate a count but never underestimate
+ * it. Once there have been ten times as many increments as the cache holds entries, all counters
+ * are halved, so that keys that were popular a long time ago gradually lose their advantage.
+ *
+ * This class is not thread safe.
+ */
+class FrequencySketch {
+  private static final int DEPTH = 4;
+  private static final int MAX_COUNT = 15;
+  private static final long[] SEEDS = {
+      0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+
+  private final byte[][] counters;
+  private final int mask;
+  private final int sampleSize;
+  private int increments = 0;
+
+  FrequencySketch(int maxEntries) {
+    int width = Integer.highestOneBit(Math.max(16, maxEntries) * 2 - 1) << 1;
+    counters = new byte[DEPTH][width];
+    mask = width - 1;
+    sampleSize = 10 * Math.max(16, maxEntries);
+  }
+
+  void increment(long key) {
+    for (int i = 0; i < DEPTH; i++) {
+      int index = index(key, i);
+      if (counters[i][index] < MAX_COUNT) {
+        counters[i][index]++;
+      }
+    }
+    if (++increments == sampleSize) {
+      age();
+    }
+  }
+
+  int frequency(long key) {
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < DEPTH; i++) {
+      frequency = Math.min(frequency, counters[i][index(key, i)]);
+    }
+    return frequency;
+  }
+
+  private void age() {
+    for (byte[] row : counters) {
+      for (int j = 0; j < row.length; j++) {
+        row[j] >>= 1;
+      }
+    }
+    increments /= 2;
+  }
+
+  private int index(long key, int row) {
+    long h = (key ^ SEEDS[row]) * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 29;
+    h *= 0xBF58476D1CE4E5B9L;
+    return (int) (h >>> 32) & mask;
+  }
+}
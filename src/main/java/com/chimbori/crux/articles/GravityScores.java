@@ -0,0 +1,14 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * Gravity scores assigned to candidate Elements during one extraction run. Scores are kept in this
+ * side table instead of on the DOM, so updating a score neither allocates nor touches the
+ * Element’s attributes.
+ */
+class GravityScores extends ElementIntMap {
+  void add(Element el, int score) {
+    set(el, get(el) + score);
+  }
+}
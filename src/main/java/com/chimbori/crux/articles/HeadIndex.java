@@ -0,0 +1,262 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.helper.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the {@code <title>}, {@code <meta>}, and {@code <link>} elements of a document,
+ * built in a single traversal, so that looking up metadata does not need to walk the document
+ * again for every selector.
+ *
+ * Lookups return exactly what the equivalent jsoup selectors would: attribute values are compared
+ * after trimming and ignoring case, {@code head} lookups only consider elements that have a
+ * {@code <head>} ancestor, all others consider the whole document, and candidates are considered
+ * in document order.
+ *
+ * The index is a snapshot; it does not reflect changes made to the document after it was built.
+ */
+class HeadIndex {
+  private Element firstTitle;
+  private final List<Element> headTitles = new ArrayList<>(1);
+
+  private final Map<String, List<Element>> headMetasByName = new HashMap<>();
+  private final Map<String, List<Element>> headMetasByProperty = new HashMap<>();
+  private final Map<String, List<Element>> metasByName = new HashMap<>();
+
+  private final List<Element> links = new ArrayList<>();
+  /** Whether the link at the same index in {@link #links} is within {@code <head>}. */
+  private final BitSet linksInHead = new BitSet();
+  private final Map<String, List<Element>> linksByRel = new HashMap<>();
+  private final Map<String, List<Element>> headLinksByRel = new HashMap<>();
+
+  HeadIndex(Document doc) {
+    new NodeTraversor(new NodeVisitor() {
+      private int headDepth = 0;
+
+      @Override
+      public void head(Node node, int depth) {
+        if (node instanceof Element) {
+          index((Element) node, headDepth > 0);
+          if (((Element) node).tagName().equals("head")) {
+            headDepth++;
+          }
+        }
+      }
+
+      @Override
+      public void tail(Node node, int depth) {
+        if (node instanceof Element && ((Element) node).tagName().equals("head")) {
+          headDepth--;
+        }
+      }
+    }).traverse(doc);
+  }
+
+  private void index(Element element, boolean inHead) {
+    switch (element.tagName()) {
+      case "title":
+        if (firstTitle == null) {
+          firstTitle = element;
+        }
+        if (inHead) {
+          headTitles.add(element);
+        }
+        break;
+
+      case "meta":
+        if (element.hasAttr("name")) {
+          String name = foldCase(element.attr("name").trim());
+          add(metasByName, name, element);
+          if (inHead) {
+            add(headMetasByName, name, element);
+          }
+        }
+        if (inHead && element.hasAttr("property")) {
+          add(headMetasByProperty, foldCase(element.attr("property").trim()), element);
+        }
+        break;
+
+      case "link":
+        if (inHead) {
+          linksInHead.set(links.size());
+        }
+        links.add(element);
+        if (element.hasAttr("rel")) {
+          String rel = foldCase(element.attr("rel").trim());
+          add(linksByRel, rel, element);
+          if (inHead) {
+            add(headLinksByRel, rel, element);
+          }
+        }
+        break;
+    }
+  }
+
+  /**
+   * @return the same as {@link Document#title()}
+   */
+  String title() {
+    return firstTitle != null ? StringUtil.normaliseWhitespace(firstTitle.text()).trim() : "";
+  }
+
+  /**
+   * @return the same as {@code doc.select("head title").text()}
+   */
+  String headTitleText() {
+    if (headTitles.size() == 1) {
+      return headTitles.get(0).text();
+    }
+    StringBuilder sb = new StringBuilder();
+    for (Element title : headTitles) {
+      if (sb.length() != 0) {
+        sb.append(" ");
+      }
+      sb.append(title.text());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the same as {@code doc.select("head meta[name=…]").attr("content")}
+   */
+  String headMetaWithName(String name) {
+    return firstAttr(headMetasByName.get(name), "content");
+  }
+
+  /**
+   * @return the same as {@code doc.select("head meta[property=…]").attr("content")}
+   */
+  String headMetaWithProperty(String property) {
+    return firstAttr(headMetasByProperty.get(property), "content");
+  }
+
+  /**
+   * @return the same as {@code doc.select("meta[name=…]").attr("content")}
+   */
+  String metaWithName(String name) {
+    return firstAttr(metasByName.get(name), "content");
+  }
+
+  /**
+   * @return the same as {@code doc.select("link[rel=…]").attr("href")}
+   */
+  String linkWithRel(String rel) {
+    return firstAttr(linksWithRel(rel), "href");
+  }
+
+  /**
+   * @return the same as {@code doc.select("link[rel=…]")}
+   */
+  List<Element> linksWithRel(String rel) {
+    List<Element> elements = linksByRel.get(rel);
+    return elements != null ? elements : Collections.<Element>emptyList();
+  }
+
+  /**
+   * @return the same as {@code doc.select("link[rel=…]").select("link[type=…]").attr("href")}
+   */
+  String linkWithRelAndType(String rel, String type) {
+    for (Element link : linksWithRel(rel)) {
+      if (link.hasAttr("href") && link.hasAttr("type") && type.equalsIgnoreCase(link.attr("type").trim())) {
+        return link.attr("href");
+      }
+    }
+    return "";
+  }
+
+  /**
+   * @return the same as {@code doc.select("head link[rel=…]").attr("href")}
+   */
+  String headLinkWithRel(String rel) {
+    return firstAttr(headLinksByRel.get(rel), "href");
+  }
+
+  /**
+   * @return the same as {@code doc.select("head link[rel=…]")}
+   */
+  Elements headLinksWithRel(String rel) {
+    List<Element> elements = headLinksByRel.get(rel);
+    return elements != null ? new Elements(elements) : new Elements();
+  }
+
+  /**
+   * @return the same as {@code doc.select("head link[rel^=…]")}
+   */
+  Elements headLinksWithRelStarting(String prefix) {
+    Elements elements = new Elements();
+    for (int i = linksInHead.nextSetBit(0); i >= 0; i = linksInHead.nextSetBit(i + 1)) {
+      Element link = links.get(i);
+      if (link.hasAttr("rel") && link.attr("rel").toLowerCase().startsWith(prefix)) {
+        elements.add(link);
+      }
+    }
+    return elements;
+  }
+
+  /**
+   * @return the same as {@code doc.select("head link[rel^=…],link[rel$=…]").attr("href")}
+   */
+  String headLinkWithRelStartingOrLinkWithRelEnding(String prefix, String suffix) {
+    for (int i = 0; i < links.size(); i++) {
+      Element link = links.get(i);
+      if (!link.hasAttr("rel") || !link.hasAttr("href")) {
+        continue;
+      }
+      String rel = link.attr("rel").toLowerCase();
+      if ((linksInHead.get(i) && rel.startsWith(prefix)) || rel.endsWith(suffix)) {
+        return link.attr("href");
+      }
+    }
+    return "";
+  }
+
+  private static String firstAttr(List<Element> elements, String attributeKey) {
+    if (elements != null) {
+      for (Element element : elements) {
+        if (element.hasAttr(attributeKey)) {
+          return element.attr(attributeKey);
+        }
+      }
+    }
+    return "";
+  }
+
+  private static void add(Map<String, List<Element>> map, String key, Element element) {
+    List<Element> elements = map.get(key);
+    if (elements == null) {
+      elements = new ArrayList<>(1);
+      map.put(key, elements);
+    }
+    elements.add(element);
+  }
+
+  /**
+   * Folds the case of each character the way {@link String#equalsIgnoreCase(String)} compares
+   * them, so that two strings are equal ignoring case exactly if their folded forms are equal.
+   */
+  static String foldCase(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (Character.toLowerCase(Character.toUpperCase(c)) != c) {
+        char[] folded = s.toCharArray();
+        for (int j = i; j < folded.length; j++) {
+          folded[j] = Character.toLowerCase(Character.toUpperCase(folded[j]));
+        }
+        return new String(folded);
+      }
+    }
+    return s;
+  }
+}
@@ -18,7 +18,7 @@ public class Image {
     public boolean noFollow;
     public Element element;
 
-    private Image() {
+    Image() {
     }
 
     static Image from(Element imgElement) {
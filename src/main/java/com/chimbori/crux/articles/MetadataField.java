@@ -0,0 +1,19 @@
+package com.chimbori.crux.articles;
+
+/**
+ * Metadata fields of an {@link Article}, which can be requested individually from
+ * {@link ArticleExtractor#extractMetadata(java.util.Set)}, so that fields nobody reads are never
+ * looked up in the document.
+ */
+public enum MetadataField {
+  TITLE,
+  DESCRIPTION,
+  SITE_NAME,
+  THEME_COLOR,
+  CANONICAL_URL,
+  AMP_URL,
+  FEED_URL,
+  VIDEO_URL,
+  FAVICON_URL,
+  KEYWORDS,
+}
@@ -1,10 +1,8 @@
 package com.chimbori.crux.articles;
 
-import com.chimbori.crux.common.HeuristicString;
+import com.chimbori.crux.common.FirstNonEmpty;
 import com.chimbori.crux.common.StringUtils;
 
-import org.jsoup.nodes.Document;
-
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -15,113 +13,83 @@ class MetadataHelpers {
     // Prevent instantiation.
   }
 
-  static String extractTitle(Document doc) {
-    try {
-      return StringUtils.cleanTitle(new HeuristicString(doc.title())
-          .or(StringUtils.innerTrim(doc.select("head title").text()))
-          .or(StringUtils.innerTrim(doc.select("head meta[name=title]").attr("content")))
-          .or(StringUtils.innerTrim(doc.select("head meta[property=og:title]").attr("content")))
-          .or(StringUtils.innerTrim(doc.select("head meta[name=twitter:title]").attr("content")))
-          .toString());
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return StringUtils.cleanTitle(candidateFound.candidate);
-    }
+  static String extractTitle(HeadIndex index) {
+    return StringUtils.cleanTitle(new FirstNonEmpty()
+        .or(index.title())
+        .or(StringUtils.innerTrim(index.headTitleText()))
+        .or(StringUtils.innerTrim(index.headMetaWithName("title")))
+        .or(StringUtils.innerTrim(index.headMetaWithProperty("og:title")))
+        .or(StringUtils.innerTrim(index.headMetaWithName("twitter:title")))
+        .toString());
   }
 
-  static String extractAmpUrl(Document doc) {
-    try {
-      return new HeuristicString(StringUtils.urlEncodeSpaceCharacter(doc.select("link[rel=amphtml]").attr("href")))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return candidateFound.candidate;
-    }
+  static String extractAmpUrl(HeadIndex index) {
+    return new FirstNonEmpty()
+        .or(StringUtils.urlEncodeSpaceCharacter(index.linkWithRel("amphtml")))
+        .toString();
   }
 
-  static String extractCanonicalUrl(Document doc) {
-    try {
-      return new HeuristicString(null)
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("head link[rel=canonical]").attr("href")))
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("head meta[property=og:url]").attr("content")))
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("head meta[name=twitter:url]").attr("content")))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return candidateFound.candidate;
-    }
+  static String extractCanonicalUrl(HeadIndex index) {
+    return new FirstNonEmpty()
+        .or(StringUtils.urlEncodeSpaceCharacter(index.headLinkWithRel("canonical")))
+        .or(StringUtils.urlEncodeSpaceCharacter(index.headMetaWithProperty("og:url")))
+        .or(StringUtils.urlEncodeSpaceCharacter(index.headMetaWithName("twitter:url")))
+        .toString();
   }
 
-  static String extractDescription(Document doc) {
-    try {
-      return new HeuristicString(null)
-          .or(StringUtils.innerTrim(doc.select("head meta[name=description]").attr("content")))
-          .or(StringUtils.innerTrim(doc.select("head meta[property=og:description]").attr("content")))
-          .or(StringUtils.innerTrim(doc.select("head meta[name=twitter:description]").attr("content")))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return candidateFound.candidate;
-    }
+  static String extractDescription(HeadIndex index) {
+    return new FirstNonEmpty()
+        .or(StringUtils.innerTrim(index.headMetaWithName("description")))
+        .or(StringUtils.innerTrim(index.headMetaWithProperty("og:description")))
+        .or(StringUtils.innerTrim(index.headMetaWithName("twitter:description")))
+        .toString();
   }
 
-  static String extractSiteName(Document doc) {
-    try {
-      return new HeuristicString(null)
-          .or(StringUtils.innerTrim(doc.select("head meta[property=og:site_name]").attr("content")))
-          .or(StringUtils.innerTrim(doc.select("head meta[name=application-name]").attr("content")))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return candidateFound.candidate;
-    }
+  static String extractSiteName(HeadIndex index) {
+    return new FirstNonEmpty()
+        .or(StringUtils.innerTrim(index.headMetaWithProperty("og:site_name")))
+        .or(StringUtils.innerTrim(index.headMetaWithName("application-name")))
+        .toString();
   }
 
-  static String extractThemeColor(Document doc) {
-    return doc.select("meta[name=theme-color]").attr("content");
+  static String extractThemeColor(HeadIndex index) {
+    return index.metaWithName("theme-color");
   }
 
-  static String extractImageUrl(Document doc, List<Image> images) {
-    try {
-      return new HeuristicString(null)
-          // Twitter Cards and Open Graph images are usually higher quality, so rank them first.
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("head meta[name=twitter:image]").attr("content")))
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("head meta[property=og:image]").attr("content")))
-          // Then, grab any hero images from the article itself.
-          .or(images != null && images.size() > 0 ? StringUtils.urlEncodeSpaceCharacter(images.get(0).src) : null)
-          // image_src or thumbnails are usually low quality, so prioritize them *after* article images.
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("link[rel=image_src]").attr("href")))
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("head meta[name=thumbnail]").attr("content")))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return candidateFound.candidate;
-    }
+  static String extractImageUrl(HeadIndex index, List<Image> images) {
+    return new FirstNonEmpty()
+        // Twitter Cards and Open Graph images are usually higher quality, so rank them first.
+        .or(StringUtils.urlEncodeSpaceCharacter(index.headMetaWithName("twitter:image")))
+        .or(StringUtils.urlEncodeSpaceCharacter(index.headMetaWithProperty("og:image")))
+        // Then, grab any hero images from the article itself.
+        .or(images != null && images.size() > 0 ? StringUtils.urlEncodeSpaceCharacter(images.get(0).src) : null)
+        // image_src or thumbnails are usually low quality, so prioritize them *after* article images.
+        .or(StringUtils.urlEncodeSpaceCharacter(index.linkWithRel("image_src")))
+        .or(StringUtils.urlEncodeSpaceCharacter(index.headMetaWithName("thumbnail")))
+        .toString();
   }
 
-  static String extractFeedUrl(Document doc) {
-    try {
-      return new HeuristicString(null)
-          .or(doc.select("link[rel=alternate]").select("link[type=application/rss+xml]").attr("href"))
-          .or(doc.select("link[rel=alternate]").select("link[type=application/atom+xml]").attr("href"))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return candidateFound.candidate;
-    }
+  static String extractFeedUrl(HeadIndex index) {
+    return new FirstNonEmpty()
+        .or(index.linkWithRelAndType("alternate", "application/rss+xml"))
+        .or(index.linkWithRelAndType("alternate", "application/atom+xml"))
+        .toString();
   }
 
-  static String extractVideoUrl(Document doc) {
-    return StringUtils.urlEncodeSpaceCharacter(doc.select("head meta[property=og:video]").attr("content"));
+  static String extractVideoUrl(HeadIndex index) {
+    return StringUtils.urlEncodeSpaceCharacter(index.headMetaWithProperty("og:video"));
   }
 
-  static String extractFaviconUrl(Document doc) {
-    try {
-      return new HeuristicString(null)
-          .or(StringUtils.urlEncodeSpaceCharacter(ImageHelpers.findLargestIcon(doc.select("head link[rel=icon]"))))
-          .or(StringUtils.urlEncodeSpaceCharacter(ImageHelpers.findLargestIcon(doc.select("head link[rel^=apple-touch-icon]"))))
-          .or(StringUtils.urlEncodeSpaceCharacter(doc.select("head link[rel^=shortcut],link[rel$=icon]").attr("href")))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      return candidateFound.candidate;
-    }
+  static String extractFaviconUrl(HeadIndex index) {
+    return new FirstNonEmpty()
+        .or(StringUtils.urlEncodeSpaceCharacter(ImageHelpers.findLargestIcon(index.headLinksWithRel("icon"))))
+        .or(StringUtils.urlEncodeSpaceCharacter(ImageHelpers.findLargestIcon(index.headLinksWithRelStarting("apple-touch-icon"))))
+        .or(StringUtils.urlEncodeSpaceCharacter(index.headLinkWithRelStartingOrLinkWithRelEnding("shortcut", "icon")))
+        .toString();
   }
 
-  static Collection<String> extractKeywords(Document doc) {
-    String content = StringUtils.innerTrim(doc.select("head meta[name=keywords]").attr("content"));
+  static Collection<String> extractKeywords(HeadIndex index) {
+    String content = StringUtils.innerTrim(index.headMetaWithName("keywords"));
 
     if (content.startsWith("[") && content.endsWith("]")) {
       content = content.substring(1, content.length() - 1);
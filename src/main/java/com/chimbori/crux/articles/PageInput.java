@@ -0,0 +1,77 @@
+package com.chimbori.crux.articles;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A page to be extracted by {@link CruxBatch}, either as already-decoded HTML, or as a raw byte
+ * stream or buffer that is decoded by {@link com.chimbori.crux.common.CharsetConverter} on a worker
+ * thread.
+ */
+public final class PageInput {
+  public final String url;
+  public final String html;
+  public final InputStream stream;
+  public final ByteBuffer buffer;
+
+  /**
+   * The HTTP {@code Content-Type} header the page was served with, if known; only used to decode
+   * {@link #stream} or {@link #buffer}.
+   */
+  public final String contentType;
+
+  private PageInput(String url, String html, InputStream stream, ByteBuffer buffer, String contentType) {
+    if (url == null) {
+      throw new IllegalArgumentException();
+    }
+    this.url = url;
+    this.html = html;
+    this.stream = stream;
+    this.buffer = buffer;
+    this.contentType = contentType;
+  }
+
+  public static PageInput fromHtml(String url, String html) {
+    if (html == null) {
+      throw new IllegalArgumentException();
+    }
+    return new PageInput(url, html, null, null, null);
+  }
+
+  /**
+   * The stream is read and closed by the worker thread that extracts this page.
+   */
+  public static PageInput fromStream(String url, InputStream stream) {
+    if (stream == null) {
+      throw new IllegalArgumentException();
+    }
+    return fromStream(url, stream, null);
+  }
+
+  /**
+   * Like {@link #fromStream(String, InputStream)}, for a page fetched over HTTP.
+   *
+   * @param contentType the HTTP {@code Content-Type} header the page was served with, or null; a
+   *                    charset it declares takes precedence over one declared within the page.
+   */
+  public static PageInput fromStream(String url, InputStream stream, String contentType) {
+    if (stream == null) {
+      throw new IllegalArgumentException();
+    }
+    return new PageInput(url, null, stream, null, contentType);
+  }
+
+  /**
+   * The remaining bytes of the buffer are decoded in place, e.g. a slice of a memory-mapped file;
+   * its position is not changed.
+   *
+   * @param contentType the HTTP {@code Content-Type} header the page was served with, or null; a
+   *                    charset it declares takes precedence over one declared within the page.
+   */
+  public static PageInput fromBuffer(String url, ByteBuffer buffer, String contentType) {
+    if (buffer == null) {
+      throw new IllegalArgumentException();
+    }
+    return new PageInput(url, null, null, buffer, contentType);
+  }
+}
@@ -0,0 +1,50 @@
+package com.chimbori.crux.articles;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The outcome of extracting one {@link PageInput} in a {@link CruxBatch}: exactly one of
+ * {@link #article} and {@link #error} is non-null.
+ */
+public final class PageResult {
+  /** Position of the page in the batch’s input, starting at 0. */
+  public final int index;
+  public final String url;
+  public final Article article;
+  public final Throwable error;
+  public final boolean timedOut;
+
+  private PageResult(int index, String url, Article article, Throwable error, boolean timedOut) {
+    this.index = index;
+    this.url = url;
+    this.article = article;
+    this.error = error;
+    this.timedOut = timedOut;
+  }
+
+  static PageResult success(int index, String url, Article article) {
+    return new PageResult(index, url, article, null, false);
+  }
+
+  static PageResult failure(int index, String url, Throwable error) {
+    return new PageResult(index, url, null, error, false);
+  }
+
+  static PageResult timeout(int index, String url, long timeoutMillis) {
+    return new PageResult(index, url, null,
+        new TimeoutException("Extraction took longer than " + timeoutMillis + " ms"), true);
+  }
+
+  public boolean isSuccess() {
+    return article != null;
+  }
+
+  @Override
+  public String toString() {
+    return "PageResult{" +
+        "index=" + index +
+        ", url='" + url + '\'' +
+        (isSuccess() ? "" : ", error=" + error) +
+        '}';
+  }
+}
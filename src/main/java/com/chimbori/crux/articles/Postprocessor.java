@@ -8,8 +8,10 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
-import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -40,7 +42,7 @@ public class Postprocessor extends ProcessorBase {
    * Tags that should be retained in the output. This list should be fairly minimal, and equivalent
    * to the list of tags that callers can be expected to be able to handle.
    */
-  private static final Set<String> RETAIN_TAGS = new HashSet<>(Arrays.asList(
+  static final Set<String> RETAIN_TAGS = new HashSet<>(Arrays.asList(
       "p", "b", "i", "u", "strong", "em", "a", "pre", "h1", "h2", "h3", "h4", "h5", "h6", "blockquote", "img", "br"
   ));
 
@@ -56,7 +58,7 @@ public class Postprocessor extends ProcessorBase {
    * The whitelist of attributes that should be retained in the output. No other attributes
    * will be retained.
    */
-  private static final Set<String> ATTRIBUTES_TO_RETAIN_IN_HTML = new HashSet<>(Arrays.asList(
+  static final Set<String> ATTRIBUTES_TO_RETAIN_IN_HTML = new HashSet<>(Arrays.asList(
       "href", "title", "src", "srcset", "sizes", "alt", "width", "height", "cellspacing", "cellpadding"
   ));
 
@@ -71,118 +73,316 @@ public class Postprocessor extends ProcessorBase {
   ));
 
 
+  public Postprocessor() {
+  }
+
+  Postprocessor(ClassNameClassifier classifier) {
+    super(classifier);
+  }
+
+  /**
+   * Cleans up {@code topNode}, and moves its remaining child nodes into a new Document. The
+   * candidates within {@code topNode} are scored first, the same way as when {@code topNode} is
+   * found via a learned content path, so that those with negative scores are removed.
+   */
   public Document postprocess(Element topNode) {
+    GravityScores scores = new GravityScores();
+    if (topNode != null) {
+      Candidates candidates = new Candidates();
+      candidates.collect(topNode);
+      candidates.setPositionalScores(scores);
+      TextStats textStats = new TextStats(topNode);
+      for (int i = 0; i < candidates.size(); i++) {
+        ExtractionHelpers.getWeight(candidates.get(i), classifier, null, textStats, scores, null);
+      }
+    }
+    return postprocess(topNode, scores, new TextFingerprinter());
+  }
+
+  /**
+   * Applies all cleanup rules in two traversals of {@code topNode}, after measuring its text and its
+   * contents in one more pass; the result is the same as applying each rule in a full pass of its
+   * own, in this order:
+   * <ol>
+   * <li>Remove scored Elements with a negative score, or with too little text;</li>
+   * <li>Remove {@code <br>}s right after another one, and put a space before every other one;</li>
+   * <li>Remove Elements that are likely hidden or boilerplate;</li>
+   * <li>Turn container tags into {@code <p>}s, keeping their content;</li>
+   * <li>Remove tags that are not likely to be paragraphs, and top-level tags that are not likely
+   * to be top-level paragraphs;</li>
+   * <li>Remove top-level paragraphs that are too short;</li>
+   * <li>Remove disallowed attributes, and make URLs absolute.</li>
+   * </ol>
+   *
+   * The first traversal applies rules 1 to 5 on the way down; each rule only depends on the
+   * Elements before the current one, and on its subtree as it was originally. On the way up, it
+   * measures the text and the contents of each Element that remains, as rules 1 to 5 left it.
+   * Rule 6 then only depends on those measures of whole paragraphs, and rule 7 must not remove the
+   * attributes it looks at, so the second traversal applies rule 7 to the paragraphs that remain.
+   * Since those are exactly the paragraphs of the output, the same traversal also feeds their text
+   * to {@code fingerprinter}.
+   *
+   * The remaining child nodes of {@code topNode} are moved, not copied, into the returned
+   * Document, so {@code topNode} is left empty.
+   *
+   * @param scores        gravity scores of the candidates within {@code topNode}, as assigned
+   *                      while picking it as the best match
+   * @param fingerprinter is reset, then holds the SimHashes of the output’s paragraphs
+   */
+  Document postprocess(Element topNode, GravityScores scores, TextFingerprinter fingerprinter) {
     Log.i("postprocess");
+    fingerprinter.reset();
     Document doc = new Document("");
     if (topNode == null) {
       return doc;
     }
 
-    removeNodesWithNegativeScores(topNode);
-    replaceLineBreaksWithSpaces(topNode);
-    removeUnlikelyChildNodes(topNode);
-    removeTagsButRetainContent(topNode);
-    removeTagsNotLikelyToBeParagraphs(topNode);
-    removeTopLevelTagsNotLikelyToBeParagraphs(topNode);
-    removeShortParagraphs(topNode);
-    removeDisallowedAttributes(topNode);
-    makeUrlsAbsolute(topNode);
-
-    for (Node node : topNode.childNodes()) {
-      doc.appendChild(node.clone());  // TODO: Don’t copy each item separately.
+    cleanStructure(topNode, scores);
+    String baseUri = topNode.baseUri();
+    for (int i = 0; i < topNode.childNodeSize(); i++) {
+      cleanAttributes(topNode.childNode(i), baseUri, fingerprinter);
+      fingerprinter.endParagraph();
     }
+
+    // Move the remaining nodes instead of copying them. Inserting them all at once moves them
+    // from the last one to the first, so that each one is removed from the end of topNode.
+    doc.insertChildren(0, topNode.childNodes());
     return doc;
   }
 
-  protected void replaceLineBreaksWithSpaces(Element topNode) {
-    for (Element brNextToBrElement : topNode.select("br + br")) {
-      brNextToBrElement.remove();
+  /**
+   * Applies the same rules as {@link #postprocess(Element, GravityScores, TextFingerprinter)}, but
+   * instead of building a Document, writes the text of the remaining paragraphs to {@code out}
+   * during the traversal that would otherwise clean their attributes. Attributes are left as they
+   * are, and the paragraphs stay in {@code topNode}.
+   */
+  void postprocess(Element topNode, GravityScores scores, TextFingerprinter fingerprinter, TextWriter out)
+      throws IOException {
+    Log.i("postprocess");
+    fingerprinter.reset();
+    if (topNode == null) {
+      return;
     }
-    // TODO: what were the • that good for? Introduces ugly • while removing senseful <br>s
-    for (Element brElement : topNode.select("br")) {
-      if (brElement.previousSibling() != null) {
-        brElement.previousSibling().after(" ");
-      } else {
-        brElement.parent().append(" ");
-      }
+
+    cleanStructure(topNode, scores);
+    String baseUri = topNode.baseUri();
+    for (int i = 0; i < topNode.childNodeSize(); i++) {
+      Node childNode = topNode.childNode(i);
+      out.startParagraph(childNode);
+      writeText(childNode, baseUri, fingerprinter, out);
+      out.endParagraph();
+      fingerprinter.endParagraph();
     }
   }
 
-  protected void removeTopLevelTagsNotLikelyToBeParagraphs(Element element) {
-    for (Element childElement : element.children()) {
-      if (!RETAIN_TAGS_TOP_LEVEL.contains(childElement.tagName())) {
-        Log.printAndRemove(childElement, "removeTopLevelTagsNotLikelyToBeParagraphs");
+  /**
+   * Applies rules 1 to 6 to {@code topNode}; see {@link #postprocess(Element, GravityScores, TextFingerprinter)}.
+   */
+  private void cleanStructure(Element topNode, GravityScores scores) {
+    final TextStats textStats = new TextStats();
+    final SubtreeContents contents = new SubtreeContents(this);
+    new NodeTraversor(new NodeVisitor() {
+      @Override
+      public void head(Node node, int depth) {
       }
+
+      @Override
+      public void tail(Node node, int depth) {
+        if (node instanceof Element) {
+          textStats.add((Element) node);
+          contents.add((Element) node);
+        }
+      }
+    }).traverse(topNode);
+
+    if (hasNegativeScore(topNode, scores, textStats, contents)) {
+      Log.printAndRemove(topNode, "removeNodesWithNegativeScores");
     }
+    TextStats cleanTextStats = new TextStats();
+    SubtreeContents cleanContents = new SubtreeContents(this);
+    cleanChildNodes(topNode, true, scores, textStats, contents, cleanTextStats, cleanContents);
+    removeShortParagraphs(topNode, cleanTextStats, cleanContents);
   }
 
-  protected void removeTagsNotLikelyToBeParagraphs(Element element) {
-    for (Element childElement : element.children()) {
-      if (!RETAIN_TAGS.contains(childElement.tagName())) {
+  /**
+   * Applies the structural rules to the child nodes of {@code element}, and to their subtrees.
+   *
+   * @param isTopLevel     whether {@code element} is the top node
+   * @param cleanTextStats receives the text of each remaining child Element, once it is clean
+   * @param cleanContents  receives the contents of each remaining child Element, once it is clean
+   */
+  private void cleanChildNodes(Element element, boolean isTopLevel, GravityScores scores, TextStats textStats,
+                               SubtreeContents contents, TextStats cleanTextStats, SubtreeContents cleanContents) {
+    // Whether a <br> follows another one, and whether it follows anything at all, is decided as if
+    // only Elements with negative scores, and <br>s following another one, had been removed yet.
+    boolean followsLineBreak = false;
+    boolean followsNode = false;
+    int i = 0;
+    while (i < element.childNodeSize()) {
+      Node childNode = element.childNode(i);
+      if (!(childNode instanceof Element)) {
+        followsNode = true;
+        i++;
+        continue;
+      }
+
+      Element childElement = (Element) childNode;
+      if (hasNegativeScore(childElement, scores, textStats, contents)) {
+        Log.printAndRemove(childElement, "removeNodesWithNegativeScores");
+        continue;
+      }
+
+      boolean isLineBreak = childElement.tagName().equals("br");
+      if (isLineBreak && followsLineBreak) {
+        Log.printAndRemove(childElement, "replaceLineBreaksWithSpaces");
+        continue;
+      }
+      followsLineBreak = isLineBreak;
+      if (isLineBreak) {
+        if (followsNode) {
+          childElement.before(" ");
+          i++;
+        } else {
+          element.append(" ");
+        }
+      }
+      followsNode = true;
+
+      String tagName = REMOVE_TAGS_BUT_RETAIN_CONTENT.contains(childElement.tagName()) ? "p" : childElement.tagName();
+      if (isUnlikely(childElement)) {
+        Log.printAndRemove(childElement, "removeUnlikelyChildNodes");
+        continue;
+      }
+      if (!RETAIN_TAGS.contains(tagName)) {
         Log.printAndRemove(childElement, "removeTagsNotLikelyToBeParagraphs");
-      } else if (childElement.children().size() > 0) {
-        removeTagsNotLikelyToBeParagraphs(childElement);
+        continue;
+      }
+      if (isTopLevel && !RETAIN_TAGS_TOP_LEVEL.contains(tagName)) {
+        Log.printAndRemove(childElement, "removeTopLevelTagsNotLikelyToBeParagraphs");
+        continue;
+      }
+
+      cleanChildNodes(childElement, false, scores, textStats, contents, cleanTextStats, cleanContents);
+      if (!tagName.equals(childElement.tagName())) {
+        Log.i("removeTagsButRetainContent", childElement);
+        childElement.tagName(tagName);  // Set the wrapper tag to <p> instead of unwrapping them.
       }
+      cleanTextStats.add(childElement);  // After renaming it, since a <p> is a block.
+      cleanContents.add(childElement);
+      i++;
     }
   }
 
-  protected void removeTagsButRetainContent(Element element) {
-    for (Element childElement : element.children()) {
-      removeTagsButRetainContent(childElement);
-      if (REMOVE_TAGS_BUT_RETAIN_CONTENT.contains(childElement.tagName())) {
-        Log.i("removeTagsButRetainContent: [%s] %s", childElement.tagName(), childElement.outerHtml());
-        childElement.tagName("p");  // Set the wrapper tag to <p> instead of unwrapping them.
-      }
+  private boolean hasNegativeScore(Element element, GravityScores scores, TextStats textStats,
+                                   SubtreeContents contents) {
+    // Removing an Element never changes the text of those visited after it, which are either
+    // outside of its subtree, or within it, and thus detached along with it.
+    if (!scores.contains(element)) {
+      return false;
     }
+    return scores.get(element) < 0 ||
+        (textStats.textLength(element) < MIN_LENGTH_FOR_PARAGRAPHS && shouldKeepElement(element, contents) == false);
   }
 
   protected void removeShortParagraphs(Element topNode) {
+    removeShortParagraphs(topNode, new TextStats(topNode), new SubtreeContents(this, topNode));
+  }
+
+  /**
+   * @param textStats measures the text of the child Elements of {@code topNode} as they are now
+   * @param contents  holds the contents of the child Elements of {@code topNode} as they are now
+   */
+  private void removeShortParagraphs(Element topNode, TextStats textStats, SubtreeContents contents) {
     for (int i = topNode.childNodeSize() - 1; i >= 0; i--) {
       Node childNode = topNode.childNode(i);
 
-      String text = null;
+      int textLength = -1;  // No text at all.
+      int letterCount = 0;
       boolean isExemptFromMinTextLengthCheck = false;
       if (childNode instanceof TextNode) {
-        text = ((TextNode) childNode).text().trim();
+        String text = ((TextNode) childNode).text().trim();
+        textLength = text.length();
+        letterCount = StringUtils.countLetters(text);
 
       } else if (childNode instanceof Element) {
         Element childElement = (Element) childNode;
-        text = childElement.text().trim();
+        textLength = textStats.textLength(childElement);
+        letterCount = textStats.letterCount(childElement);
         isExemptFromMinTextLengthCheck = TAGS_EXEMPT_FROM_MIN_LENGTH_CHECK.contains(childElement.tagName());
       }
 
       Log.i("removeShortParagraphs: [%s] isExemptFromMinTextLengthCheck : %b", childNode, isExemptFromMinTextLengthCheck);
 
-      if (shouldKeepShortParagraph(childNode) == false &&
-          (text == null ||
-          text.isEmpty() ||
-          (!isExemptFromMinTextLengthCheck && text.length() < MIN_LENGTH_FOR_PARAGRAPHS) ||
-          text.length() > StringUtils.countLetters(text) * 2)) {
+      if (shouldKeepShortParagraph(childNode, contents) == false &&
+          (textLength <= 0 ||
+          (!isExemptFromMinTextLengthCheck && textLength < MIN_LENGTH_FOR_PARAGRAPHS) ||
+          textLength > letterCount * 2)) {
         Log.printAndRemove(childNode, "removeShortParagraphs:");
       }
     }
   }
 
-  protected void removeUnlikelyChildNodes(Element element) {
-    for (Element childElement : element.children()) {
-      if (isUnlikely(childElement)) {
-        Log.printAndRemove(childElement, "removeUnlikelyChildNodes");
-      } else if (childElement.children().size() > 0) {
-        removeUnlikelyChildNodes(childElement);
-      }
+  /**
+   * Removes disallowed attributes from {@code node} and its descendants, and makes their URLs
+   * absolute, while feeding their text to {@code fingerprinter}.
+   */
+  private void cleanAttributes(Node node, String baseUri, TextFingerprinter fingerprinter) {
+    if (node instanceof TextNode) {
+      fingerprinter.append(((TextNode) node).getWholeText());
+      return;
+    }
+    if (!(node instanceof Element)) {
+      return;
+    }
+    Element element = (Element) node;
+    if (element.isBlock()) {
+      fingerprinter.endWord();  // Like Element.text(), which separates words before a block.
+    }
+    for (int i = 0; i < element.childNodeSize(); i++) {
+      cleanAttributes(element.childNode(i), baseUri, fingerprinter);
+    }
+    if (element.tagName().equals("br")) {
+      fingerprinter.endWord();
     }
-  }
 
-  protected void removeNodesWithNegativeScores(Element topNode) {
-    Elements elementsWithGravityScore = topNode.select(ExtractionHelpers.GRAVITY_SCORE_SELECTOR);
-    for (Element element : elementsWithGravityScore) {
-      int score = Integer.parseInt(element.attr(ExtractionHelpers.GRAVITY_SCORE_ATTRIBUTE));
-      if (score < 0 || (element.text().length() < MIN_LENGTH_FOR_PARAGRAPHS && shouldKeepElement(element) == false)) {
-        Log.printAndRemove(element, "removeNodesWithNegativeScores");
+    for (Attribute attribute : element.attributes().asList()) { // make a copy otherwise it will throw a ConcurrentModificationException
+      if (!ATTRIBUTES_TO_RETAIN_IN_HTML.contains(attribute.getKey())) {
+        element.removeAttr(attribute.getKey());
       }
     }
+    makeAttributeUrlsAbsolute(element, baseUri);
   }
 
+  /**
+   * Writes the text of {@code node} and its descendants to {@code out}, while feeding it to
+   * {@code fingerprinter} exactly as {@link #cleanAttributes(Node, String, TextFingerprinter)} does.
+   */
+  private void writeText(Node node, String baseUri, TextFingerprinter fingerprinter, TextWriter out)
+      throws IOException {
+    if (node instanceof TextNode) {
+      String text = ((TextNode) node).getWholeText();
+      fingerprinter.append(text);
+      out.text(text, StrippedView.preserveWhitespace(node.parent()));
+      return;
+    }
+    if (!(node instanceof Element)) {
+      return;
+    }
+    Element element = (Element) node;
+    String urlAttribute = element.tagName().equals("img") ? "src" : "href";
+    String url = element.hasAttr(urlAttribute) ? makeUrlAbsolute(element.attr(urlAttribute), baseUri) : null;
+    out.startElement(element, url);
+    if (element.isBlock()) {
+      fingerprinter.endWord();
+    }
+    for (int i = 0; i < element.childNodeSize(); i++) {
+      writeText(element.childNode(i), baseUri, fingerprinter, out);
+    }
+    if (element.tagName().equals("br")) {
+      fingerprinter.endWord();
+    }
+    out.endElement(element, url);
+  }
 
   protected boolean isUnlikely(Element element) {
     String styleAttribute = element.attr("style");
@@ -191,17 +391,4 @@ public class Postprocessor extends ProcessorBase {
     return UNLIKELY_CSS_STYLES.matcher(styleAttribute).find()
         || UNLIKELY_CLASS_NAMES.matcher(classAttribute).find();
   }
-
-  protected void removeDisallowedAttributes(Element node) {
-    for (Element childElement : node.children()) {
-      removeDisallowedAttributes(childElement);
-    }
-
-    for (Attribute attribute : node.attributes().asList()) { // make a copy otherwise it will throw a ConcurrentModificationException
-      if (!ATTRIBUTES_TO_RETAIN_IN_HTML.contains(attribute.getKey())) {
-        node.removeAttr(attribute.getKey());
-      }
-    }
-  }
-
 }
@@ -7,10 +7,19 @@ import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.select.Elements;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 /**
  * Performs basic sanitization before starting the extraction process.
  */
 public class Preprocessor extends ProcessorBase {
+  public Preprocessor() {
+  }
+
+  Preprocessor(ClassNameClassifier classifier) {
+    super(classifier);
+  }
 
   public void preprocess(Element bodyElement, PreprocessorOptions options) {
     Log.i("preprocess");
@@ -33,13 +42,77 @@ public class Preprocessor extends ProcessorBase {
    * candidates, so exercise caution when enabling this.
    */
   protected void stripUnlikelyCandidates(Element element) {
+    for(Element child : findUnlikelyCandidates(element)) {
+      Log.printAndRemove(child, "stripUnlikelyCandidates");
+    }
+  }
+
+  /**
+   * Finds the Elements that {@link #stripUnlikelyCandidates(Element)} would remove, without
+   * removing them, in document order.
+   */
+  protected Set<Element> findUnlikelyCandidates(Element element) {
+    Set<Element> unlikelyCandidates = new LinkedHashSet<>();
+    SubtreeContents contents = null;  // Only computed once an Element is classified as negative.
     for(Element child : element.select("*")) {
-      String classNameAndId = child.className().toLowerCase() + " " + child.id().toLowerCase();
-      if(ExtractionHelpers.NEGATIVE_CSS_CLASSES_AND_IDS.matcher(classNameAndId).find() &&
-          ExtractionHelpers.POSITIVE_CSS_CLASSES_AND_IDS.matcher(classNameAndId).find() == false && containsImage(child) == false) {
-        Log.printAndRemove(child, "stripUnlikelyCandidates");
+      if(isClassifiedNegative(child) == false) {
+        continue;
+      }
+      if(contents == null) {
+        contents = new SubtreeContents(this, element);
+      }
+      if(containsImage(child, contents) == false) {
+        unlikelyCandidates.add(child);
+      }
+    }
+    return unlikelyCandidates;
+  }
+
+  /**
+   * @return whether {@link #stripUnlikelyCandidates(Element)} would remove {@code element} itself,
+   * as opposed to along with one of its ancestors
+   */
+  boolean isUnlikelyCandidate(Element element) {
+    return isClassifiedNegative(element) && containsImage(element) == false;
+  }
+
+  private boolean isClassifiedNegative(Element element) {
+    int matches = classifier.classify(element.className().toLowerCase() + " " + element.id().toLowerCase());
+    return (matches & ClassNameClassifier.NEGATIVE) != 0 && (matches & ClassNameClassifier.POSITIVE) == 0;
+  }
+
+  /**
+   * Finds the Elements that {@link #removeScriptsStylesForms(Element)} would remove, without
+   * removing them. {@code <noscript>}s with images are unwrapped instead, so they are not included.
+   */
+  protected Set<Element> findScriptsStylesForms(Element element) {
+    Set<Element> found = new LinkedHashSet<>();
+    found.addAll(element.getElementsByTag("script"));
+    for (Element item : element.getElementsByTag("noscript")) {
+      if(item.select("img").isEmpty()) {
+        found.add(item);
       }
     }
+    found.addAll(element.getElementsByTag("style"));
+    found.addAll(element.getElementsByTag("form"));
+    return found;
+  }
+
+  /**
+   * @return whether {@link #removeScriptsStylesForms(Element)} would remove {@code element} itself,
+   * as opposed to along with one of its ancestors
+   */
+  boolean isScriptStyleForm(Element element) {
+    switch (element.tagName()) {
+      case "script":
+      case "style":
+      case "form":
+        return true;
+      case "noscript":
+        return element.select("img").isEmpty();
+      default:
+        return false;
+    }
   }
 
   protected void removeScriptsStylesForms(Element element) {
@@ -4,22 +4,49 @@ import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 
 import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Contains common utils for Preprocessor and Postprocessor
  */
 public abstract class ProcessorBase {
+  /**
+   * Whether each subclass overrides {@link #containsHeading(Element)} or
+   * {@link #containsImage(Element)}, in which case {@link SubtreeContents} cannot answer for it.
+   */
+  private static final ConcurrentMap<Class<?>, Boolean> OVERRIDES_CONTENT_CHECKS = new ConcurrentHashMap<>();
 
+  final ClassNameClassifier classifier;
+
+  ProcessorBase() {
+    this(new ClassNameClassifier());
+  }
+
+  /**
+   * @param classifier shared with other processors working on the same document, so that each
+   *                   distinct class name is only classified once
+   */
+  ProcessorBase(ClassNameClassifier classifier) {
+    this.classifier = classifier;
+  }
 
   protected boolean shouldKeepShortParagraph(Node node) {
+    return shouldKeepShortParagraph(node, null);
+  }
+
+  /**
+   * @param contents if not null, used instead of selecting within the subtree of {@code node}
+   */
+  boolean shouldKeepShortParagraph(Node node, SubtreeContents contents) {
     if(node instanceof Element) {
       Element childElement = (Element) node;
-      String classNameAndId = childElement.className() + " " + childElement.id();
+      int matches = classifier.classify(childElement.className() + " " + childElement.id());
 
-      if(containsImage(childElement) ||
-          ExtractionHelpers.POSITIVE_CSS_CLASSES_AND_IDS.matcher(classNameAndId).find() &&
-          ExtractionHelpers.UNLIKELY_CSS_CLASSES_AND_IDS.matcher(classNameAndId).find() == false &&
-          ExtractionHelpers.NEGATIVE_CSS_CLASSES_AND_IDS.matcher(classNameAndId).find() == false) {
+      if(containsImage(childElement, contents) ||
+          (matches & ClassNameClassifier.POSITIVE) != 0 &&
+          (matches & ClassNameClassifier.UNLIKELY) == 0 &&
+          (matches & ClassNameClassifier.NEGATIVE) == 0) {
         return true;
       }
     }
@@ -28,14 +55,29 @@ public abstract class ProcessorBase {
   }
 
   protected boolean shouldKeepElement(Element element) {
-    return "td".equals(element.tagName()) || containsHeading(element) || containsImage(element) ||
-            ExtractionHelpers.POSITIVE_CSS_CLASSES_AND_IDS.matcher(element.className() + " " + element.id()).find();
+    return shouldKeepElement(element, null);
+  }
+
+  /**
+   * @param contents if not null, used instead of selecting within the subtree of {@code element}
+   */
+  boolean shouldKeepElement(Element element, SubtreeContents contents) {
+    return "td".equals(element.tagName()) || containsHeading(element, contents) || containsImage(element, contents) ||
+            (classifier.classify(element.className() + " " + element.id()) & ClassNameClassifier.POSITIVE) != 0;
   }
 
   protected boolean containsHeading(Element element) {
     return element.select("h1, h2, h3, h4, h5, h6").size() > 0;
   }
 
+  /**
+   * @param contents if not null, and {@link #containsHeading(Element)} is not overridden, used
+   *                 instead of selecting within the subtree of {@code element}
+   */
+  boolean containsHeading(Element element, SubtreeContents contents) {
+    return usesContents(contents) ? contents.containsHeading(element) : containsHeading(element);
+  }
+
   protected boolean containsImage(Element element) {
     Element imageElement = element.select("img").first();
     if(imageElement != null) {
@@ -45,22 +87,58 @@ public abstract class ProcessorBase {
     return false;
   }
 
+  /**
+   * @param contents if not null, and {@link #containsImage(Element)} is not overridden, used instead
+   *                 of selecting within the subtree of {@code element}
+   */
+  boolean containsImage(Element element, SubtreeContents contents) {
+    return usesContents(contents) ? contents.containsImage(element) : containsImage(element);
+  }
+
+  private boolean usesContents(SubtreeContents contents) {
+    return contents != null && !overridesContentChecks(getClass());
+  }
+
+  private static boolean overridesContentChecks(Class<?> type) {
+    Boolean overrides = OVERRIDES_CONTENT_CHECKS.get(type);
+    if (overrides == null) {
+      overrides = false;
+      for (Class<?> c = type; c != ProcessorBase.class; c = c.getSuperclass()) {
+        if (declares(c, "containsHeading") || declares(c, "containsImage")) {
+          overrides = true;
+          break;
+        }
+      }
+      OVERRIDES_CONTENT_CHECKS.put(type, overrides);
+    }
+    return overrides;
+  }
+
+  private static boolean declares(Class<?> type, String methodName) {
+    try {
+      type.getDeclaredMethod(methodName, Element.class);
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return whether the image is declared to be less than 33 pixels wide or high; dimensions that
+   * are not numbers are ignored, along with all dimensions after them
+   */
   protected boolean isSmallImage(Element image) {
     try {
-      if(image.attr("width").length() > 0) {
-        int width = Integer.parseInt(image.attr("width"));
-        if(width < 33) {
-          return true;
-        }
+      String width = image.attr("width");
+      if(width.length() > 0 && Integer.parseInt(width) < 33) {
+        return true;
       }
 
-      if(image.attr("height").length() > 0) {
-        int height = Integer.parseInt(image.attr("height"));
-        if(height < 33) {
-          return true;
-        }
+      String height = image.attr("height");
+      if(height.length() > 0 && Integer.parseInt(height) < 33) {
+        return true;
       }
-    } catch(Exception ignored) { }
+    } catch(NumberFormatException ignored) { }
 
     return false;
   }
@@ -70,14 +148,23 @@ public abstract class ProcessorBase {
   protected void makeUrlsAbsolute(Element element) {
     String baseUri = element.baseUri();
 
-    for(Element hrefElement : element.select("[href]")) {
-        hrefElement.attr("href", makeUrlAbsolute(hrefElement.attr("href"), baseUri));
+    for(Element childElement : element.getAllElements()) {
+      makeAttributeUrlsAbsolute(childElement, baseUri);
+    }
+  }
+
+  /**
+   * Makes the URLs in the attributes of this Element absolute, but not those of its descendants.
+   */
+  protected void makeAttributeUrlsAbsolute(Element element, String baseUri) {
+    if(element.hasAttr("href")) {
+      element.attr("href", makeUrlAbsolute(element.attr("href"), baseUri));
     }
 
-    for(Element srcElement : element.select("[src]")) {
-        srcElement.attr("src", makeUrlAbsolute(srcElement.attr("src"), baseUri));
+    if(element.hasAttr("src")) {
+      element.attr("src", makeUrlAbsolute(element.attr("src"), baseUri));
 
-      makeSourceSetUrlsAbsolute(srcElement, baseUri);
+      makeSourceSetUrlsAbsolute(element, baseUri);
     }
   }
 
@@ -0,0 +1,141 @@
+package com.chimbori.crux.articles;
+
+import java.util.Arrays;
+
+/**
+ * A set of 64-bit SimHashes, e.g. {@link Article#simHash}, that answers whether it contains one
+ * within a given Hamming distance of another, i.e. differing in at most that many bits. This is
+ * meant for dropping near-duplicates, such as the same wire story syndicated by many sites, right
+ * after they have been extracted:
+ *
+ * <pre>
+ * SimHashIndex seen = new SimHashIndex(3);
+ * if (!seen.addIfNotNear(article.simHash)) {
+ *   return;  // A near-duplicate of an article seen before.
+ * }
+ * </pre>
+ *
+ * For a maximum distance of k, each SimHash is split into k + 1 blocks of bits; two SimHashes that
+ * are within distance k must then be identical in at least one block. Each block is indexed by a
+ * hash table, so a query only compares against the SimHashes that share one of its blocks, instead
+ * of against all of them. The tables are flat arrays of entry indexes chained through another flat
+ * array, so each SimHash costs 8 bytes, plus up to 16 bytes for each block.
+ *
+ * This class is not thread safe.
+ */
+public final class SimHashIndex {
+  private static final int NONE = -1;
+
+  private final int maxDistance;
+  private final int blocks;
+  private final int[] blockShifts;
+  private final long[] blockMasks;
+
+  private long[] simHashes = new long[64];
+  private int size = 0;
+
+  /**
+   * For each block, the first entry in each bucket, and for each entry, the next one in the same
+   * bucket, stored at {@code block * capacity + entry}.
+   */
+  private int[] heads;
+  private int[] next;
+  private int bucketBits;
+
+  /**
+   * @param maxDistance SimHashes that differ in at most this many bits are considered near; from 0
+   *                    to 63
+   */
+  public SimHashIndex(int maxDistance) {
+    if (maxDistance < 0 || maxDistance > 63) {
+      throw new IllegalArgumentException("maxDistance must be between 0 and 63: " + maxDistance);
+    }
+    this.maxDistance = maxDistance;
+    this.blocks = maxDistance + 1;
+    this.blockShifts = new int[blocks];
+    this.blockMasks = new long[blocks];
+    for (int block = 0; block < blocks; block++) {
+      int start = block * 64 / blocks;
+      int end = (block + 1) * 64 / blocks;
+      blockShifts[block] = start;
+      blockMasks[block] = end - start == 64 ? -1L : (1L << (end - start)) - 1;
+    }
+    rebuild(7);
+  }
+
+  /**
+   * @return the number of bits in which two SimHashes differ
+   */
+  public static int distance(long a, long b) {
+    return Long.bitCount(a ^ b);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return whether a SimHash within the maximum distance of {@code simHash} has been added
+   */
+  public boolean containsNear(long simHash) {
+    for (int block = 0; block < blocks; block++) {
+      long key = blockKey(simHash, block);
+      for (int entry = heads[(block << bucketBits) + bucket(key)]; entry != NONE;
+           entry = next[block * simHashes.length + entry]) {
+        if (distance(simHash, simHashes[entry]) <= maxDistance) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public void add(long simHash) {
+    if (size == simHashes.length) {
+      simHashes = Arrays.copyOf(simHashes, simHashes.length * 2);
+      rebuild(Integer.numberOfTrailingZeros(simHashes.length));
+    }
+    simHashes[size] = simHash;
+    link(size);
+    size++;
+  }
+
+  /**
+   * Adds {@code simHash} unless a SimHash near it has been added before.
+   *
+   * @return whether it was added, i.e. whether it is not a near-duplicate
+   */
+  public boolean addIfNotNear(long simHash) {
+    if (containsNear(simHash)) {
+      return false;
+    }
+    add(simHash);
+    return true;
+  }
+
+  private void rebuild(int bucketBits) {
+    this.bucketBits = bucketBits;
+    heads = new int[blocks << bucketBits];
+    Arrays.fill(heads, NONE);
+    next = new int[blocks * simHashes.length];
+    for (int entry = 0; entry < size; entry++) {
+      link(entry);
+    }
+  }
+
+  private void link(int entry) {
+    for (int block = 0; block < blocks; block++) {
+      int head = (block << bucketBits) + bucket(blockKey(simHashes[entry], block));
+      next[block * simHashes.length + entry] = heads[head];
+      heads[head] = entry;
+    }
+  }
+
+  private long blockKey(long simHash, int block) {
+    return (simHash >>> blockShifts[block]) & blockMasks[block];
+  }
+
+  private int bucket(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - bucketBits));
+  }
+}
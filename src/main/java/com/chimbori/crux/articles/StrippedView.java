@@ -0,0 +1,150 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.Log;
+
+import org.jsoup.helper.StringUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A view of a DOM tree in which unlikely candidates (as found by
+ * {@link Preprocessor#findUnlikelyCandidates(Element)}) have been stripped, without actually
+ * removing them. This lets a tree be scored with and without those candidates at the same time,
+ * instead of cloning it and scoring each copy separately.
+ *
+ * {@link #text(Element)} and {@link #ownText(Element)} return exactly what {@link Element#text()}
+ * and {@link Element#ownText()} would return if the stripped Elements had been removed.
+ */
+class StrippedView {
+  private final Set<Element> strippedElements;
+  private final Set<Element> removedElements = newIdentitySet();
+  private final Set<Element> elementsWithStrippedDescendants = newIdentitySet();
+  private final StringBuilder accum;
+
+  /**
+   * @param accum a buffer to build text in, which is reused by every call
+   */
+  StrippedView(Set<Element> strippedElements, StringBuilder accum) {
+    this.strippedElements = strippedElements;
+    this.accum = accum;
+    for (Element strippedElement : strippedElements) {
+      if (removedElements.contains(strippedElement)) {
+        continue;  // Already covered by a stripped ancestor.
+      }
+      removedElements.addAll(strippedElement.getAllElements());
+      // Mark all ancestors, stopping at the first one that has already been marked.
+      Element parent = strippedElement.parent();
+      while (parent != null && elementsWithStrippedDescendants.add(parent)) {
+        parent = parent.parent();
+      }
+    }
+  }
+
+  /**
+   * @return whether this Element is still part of the tree once unlikely candidates are stripped.
+   */
+  boolean contains(Element element) {
+    return !removedElements.contains(element);
+  }
+
+  /**
+   * @return whether this Element itself is one of the unlikely candidates that are stripped.
+   */
+  boolean isStripped(Element element) {
+    return strippedElements.contains(element);
+  }
+
+  /**
+   * @return whether stripping unlikely candidates changes anything within this Element’s subtree.
+   */
+  boolean hasStrippedDescendants(Element element) {
+    return elementsWithStrippedDescendants.contains(element);
+  }
+
+  String text(Element element) {
+    if (!hasStrippedDescendants(element)) {
+      return element.text();
+    }
+    accum.setLength(0);
+    appendText(element, accum);
+    return accum.toString().trim();
+  }
+
+  String ownText(Element element) {
+    if (!hasStrippedDescendants(element)) {
+      return element.ownText();
+    }
+    accum.setLength(0);
+    for (Node child : element.childNodes()) {
+      if (child instanceof TextNode) {
+        appendNormalisedText((TextNode) child, accum);
+      } else if (child instanceof Element && !isStripped((Element) child)
+          && ((Element) child).tagName().equals("br") && !lastCharIsWhitespace(accum)) {
+        accum.append(" ");
+      }
+    }
+    return accum.toString().trim();
+  }
+
+  /**
+   * Actually removes all stripped Elements from the tree, once this view has been picked.
+   */
+  void strip() {
+    for (Element strippedElement : strippedElements) {
+      Log.printAndRemove(strippedElement, "stripUnlikelyCandidates");
+    }
+  }
+
+  private void appendText(Node node, StringBuilder accum) {
+    if (node instanceof TextNode) {
+      appendNormalisedText((TextNode) node, accum);
+    } else if (node instanceof Element) {
+      Element element = (Element) node;
+      if (isStripped(element)) {
+        return;
+      }
+      if (accum.length() > 0 && (element.isBlock() || element.tagName().equals("br"))
+          && !lastCharIsWhitespace(accum)) {
+        accum.append(" ");
+      }
+      for (Node child : element.childNodes()) {
+        appendText(child, accum);
+      }
+    }
+  }
+
+  private static void appendNormalisedText(TextNode textNode, StringBuilder accum) {
+    String text = textNode.getWholeText();
+    if (preserveWhitespace(textNode.parent())) {
+      accum.append(text);
+    } else {
+      StringUtil.appendNormalisedWhitespace(accum, text, lastCharIsWhitespace(accum));
+    }
+  }
+
+  /**
+   * @return whether jsoup keeps the whitespace of text within this Node as-is, instead of
+   * normalizing it
+   */
+  static boolean preserveWhitespace(Node node) {
+    if (node instanceof Element) {
+      Element element = (Element) node;
+      return element.tag().preserveWhitespace() ||
+          element.parent() != null && element.parent().tag().preserveWhitespace();
+    }
+    return false;
+  }
+
+  private static boolean lastCharIsWhitespace(StringBuilder accum) {
+    return accum.length() != 0 && accum.charAt(accum.length() - 1) == ' ';
+  }
+
+  private static Set<Element> newIdentitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+  }
+}
@@ -0,0 +1,112 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Whether the subtree of every Element in a tree contains a heading or a large image, computed
+ * bottom-up in a single pass, so that asking for each Element does not select within its subtree
+ * every time. Each image’s dimensions are parsed only once.
+ *
+ * {@link #containsHeading(Element)} and {@link #containsImage(Element)} return exactly what
+ * {@link ProcessorBase#containsHeading(Element)} and {@link ProcessorBase#containsImage(Element)}
+ * would, i.e. the latter only looks at the first image in the subtree, which is measured with the
+ * processor’s {@link ProcessorBase#isSmallImage(Element)}.
+ *
+ * This is a snapshot; it does not reflect changes made to the tree after it was computed.
+ */
+class SubtreeContents {
+  private static final int KNOWN = 1;
+  private static final int HAS_HEADING = 2;
+  private static final int HAS_IMAGE = 4;
+  private static final int FIRST_IMAGE_IS_LARGE = 8;
+
+  /** Maps each Element to its flags, so that unknown Elements map to 0. */
+  private final ElementIntMap flags = new ElementIntMap();
+
+  private final ProcessorBase processor;
+
+  SubtreeContents(ProcessorBase processor, Element root) {
+    this(processor);
+    new NodeTraversor(new NodeVisitor() {
+      @Override
+      public void head(Node node, int depth) {
+      }
+
+      @Override
+      public void tail(Node node, int depth) {
+        if (node instanceof Element) {
+          add((Element) node);
+        }
+      }
+    }).traverse(root);
+  }
+
+  /**
+   * Creates empty flags, to be filled in by {@link #add(Element)}.
+   */
+  SubtreeContents(ProcessorBase processor) {
+    this.processor = processor;
+  }
+
+  /**
+   * @return whether {@code element} is a heading, or has one among its descendants
+   */
+  boolean containsHeading(Element element) {
+    int elementFlags = flags.get(element);
+    if (elementFlags == 0) {
+      return processor.containsHeading(element);
+    }
+    return (elementFlags & HAS_HEADING) != 0;
+  }
+
+  /**
+   * @return whether the first image in the subtree of {@code element}, including itself, is not
+   * small
+   */
+  boolean containsImage(Element element) {
+    int elementFlags = flags.get(element);
+    if (elementFlags == 0) {
+      return processor.containsImage(element);
+    }
+    return (elementFlags & FIRST_IMAGE_IS_LARGE) != 0;
+  }
+
+  /**
+   * Computes the flags of {@code element} as it is now. Its child Elements must all have been added
+   * before, and the flags of an Element reflect the tree as it was when that Element was added.
+   */
+  void add(Element element) {
+    int elementFlags = KNOWN;
+    switch (element.tagName()) {
+      case "h1":
+      case "h2":
+      case "h3":
+      case "h4":
+      case "h5":
+      case "h6":
+        elementFlags |= HAS_HEADING;
+        break;
+      case "img":
+        elementFlags |= HAS_IMAGE;
+        if (!processor.isSmallImage(element)) {
+          elementFlags |= FIRST_IMAGE_IS_LARGE;
+        }
+        break;
+    }
+
+    for (int i = 0; i < element.childNodeSize(); i++) {
+      Node child = element.childNode(i);
+      if (child instanceof Element) {
+        int childFlags = flags.get((Element) child);
+        elementFlags |= childFlags & HAS_HEADING;
+        if ((elementFlags & HAS_IMAGE) == 0) {
+          elementFlags |= childFlags & (HAS_IMAGE | FIRST_IMAGE_IS_LARGE);
+        }
+      }
+    }
+    flags.set(element, elementFlags);
+  }
+}
@@ -0,0 +1,127 @@
+package com.chimbori.crux.articles;
+
+import java.util.Arrays;
+
+/**
+ * Computes a 64-bit SimHash of the text of each paragraph, and of the whole article, as the text is
+ * fed to it in document order, without building any Strings.
+ *
+ * Words are runs of letters and digits, compared case-insensitively. Each word is hashed, and each
+ * bit of a SimHash is set if more of its words have that bit set than not. Texts that share most of
+ * their words therefore have SimHashes that differ in only a few bits; see {@link SimHashIndex}.
+ *
+ * Not thread safe; each {@link ExtractionScratch} has its own.
+ */
+class TextFingerprinter {
+  private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME = 0x100000001B3L;
+
+  private final int[] articleCounts = new int[64];
+  private final int[] paragraphCounts = new int[64];
+  private long[] paragraphs = new long[16];
+  private int paragraphCount = 0;
+  private int paragraphWords = 0;
+  private int articleWords = 0;
+
+  private long wordHash = FNV_OFFSET;
+  private boolean inWord = false;
+
+  void reset() {
+    Arrays.fill(articleCounts, 0);
+    Arrays.fill(paragraphCounts, 0);
+    paragraphCount = 0;
+    paragraphWords = 0;
+    articleWords = 0;
+    wordHash = FNV_OFFSET;
+    inWord = false;
+  }
+
+  /**
+   * Adds text to the current paragraph. A word may continue across calls, just like it continues
+   * across adjacent text nodes in {@link org.jsoup.nodes.Element#text()}.
+   */
+  void append(CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        wordHash = (wordHash ^ Character.toLowerCase(c)) * FNV_PRIME;
+        inWord = true;
+      } else {
+        endWord();
+      }
+    }
+  }
+
+  /**
+   * Ends the current word, if any, e.g. at a {@code <br>}, or where a block starts.
+   */
+  void endWord() {
+    if (!inWord) {
+      return;
+    }
+    long h = mix(wordHash);
+    for (int bit = 0; bit < 64; bit++) {
+      paragraphCounts[bit] += (int) ((h >>> bit) & 1) * 2 - 1;
+    }
+    paragraphWords++;
+    wordHash = FNV_OFFSET;
+    inWord = false;
+  }
+
+  /**
+   * Ends the current paragraph. Paragraphs without any words, e.g. a lone image, are skipped.
+   */
+  void endParagraph() {
+    endWord();
+    if (paragraphWords == 0) {
+      return;
+    }
+    if (paragraphCount == paragraphs.length) {
+      paragraphs = Arrays.copyOf(paragraphs, paragraphCount * 2);
+    }
+    paragraphs[paragraphCount++] = simHash(paragraphCounts);
+    for (int bit = 0; bit < 64; bit++) {
+      articleCounts[bit] += paragraphCounts[bit];
+    }
+    Arrays.fill(paragraphCounts, 0);
+    articleWords += paragraphWords;
+    paragraphWords = 0;
+  }
+
+  /**
+   * @return the SimHash of all paragraphs so far, or 0 if they had no words at all
+   */
+  long articleSimHash() {
+    return articleWords == 0 ? 0 : simHash(articleCounts);
+  }
+
+  /**
+   * @return the SimHash of each paragraph so far that had any words, in document order
+   */
+  long[] paragraphSimHashes() {
+    return Arrays.copyOf(paragraphs, paragraphCount);
+  }
+
+  private static long simHash(int[] counts) {
+    long h = 0;
+    for (int bit = 0; bit < 64; bit++) {
+      if (counts[bit] > 0) {
+        h |= 1L << bit;
+      }
+    }
+    return h;
+  }
+
+  /**
+   * The MurmurHash3 finalizer, since the bits of an FNV hash are not spread evenly enough for a
+   * SimHash, whose every bit needs to be set for about half of all words.
+   */
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
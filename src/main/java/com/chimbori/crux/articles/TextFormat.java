@@ -0,0 +1,22 @@
+package com.chimbori.crux.articles;
+
+/**
+ * Formats in which {@link ArticleExtractor#extractText(Appendable, TextFormat)} can write the text
+ * of an article, instead of building {@link Article#document}.
+ */
+public enum TextFormat {
+  /**
+   * One paragraph per line, separated by blank lines, with whitespace collapsed as in
+   * {@link org.jsoup.nodes.Element#text()}, i.e. except within a {@code <pre>}. Headings start with
+   * one {@code #} per level, and lines within block quotes with {@code >}; line breaks are kept. No
+   * other markup is written, and nothing is escaped.
+   */
+  PARAGRAPHS,
+
+  /**
+   * Like {@link #PARAGRAPHS}, plus Markdown for bold and italic text, links, images, and list items,
+   * with characters that Markdown would otherwise interpret escaped by a backslash. The text of a
+   * {@code <pre>} is written as a fenced code block instead, as-is.
+   */
+  MARKDOWN,
+}
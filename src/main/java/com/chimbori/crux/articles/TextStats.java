@@ -0,0 +1,272 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.StringUtils;
+
+import org.jsoup.helper.StringUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.Arrays;
+
+/**
+ * Lengths and letter counts of the text of every Element in a subtree, computed bottom-up in a
+ * single pass, so that heuristics can read them without building the text itself. Calling
+ * {@link Element#text()} on every Element of a subtree builds each string from scratch, which
+ * costs time proportional to the subtree’s size times its depth.
+ *
+ * {@link #textLength(Element)}, {@link #letterCount(Element)}, and
+ * {@link #ownTextLength(Element)} return exactly what the same measures of {@link Element#text()}
+ * and {@link Element#ownText()} would, or of {@link StrippedView#text(Element)} and
+ * {@link StrippedView#ownText(Element)} if a view is given.
+ *
+ * This requires some care, since jsoup normalizes whitespace across Element boundaries, and
+ * inserts spaces before block Elements depending on the text that precedes them. So for each
+ * Element, the text appended by its subtree is summarized once for each state the text before it
+ * may be in: empty, ending in a space, or ending in anything else.
+ *
+ * The stats are a snapshot; they do not reflect changes made to the tree after they were computed.
+ */
+class TextStats {
+  private static final int EMPTY = 0;
+  private static final int ENDS_WITH_SPACE = 1;
+  private static final int ENDS_WITH_OTHER = 2;
+  private static final int STATES = 3;
+
+  private static final int LENGTH = 0;
+  private static final int LEADING_TRIMMABLE = 1;
+  private static final int TRAILING_TRIMMABLE = 2;
+  private static final int LETTERS = 3;
+  private static final int LAST_IS_SPACE = 4;
+  private static final int FIELDS = 5;
+
+  private static final int OWN_TEXT_LENGTH = STATES * FIELDS;
+  private static final int STRIDE = OWN_TEXT_LENGTH + 1;
+
+  private final StrippedView view;
+  /** Maps each Element to its index plus one, so that unknown Elements map to 0. */
+  private final ElementIntMap ids = new ElementIntMap();
+  private int[] data = new int[64 * STRIDE];
+  private int size = 0;
+
+  private final Summary[] summaries = {new Summary(), new Summary(), new Summary()};
+  private final Summary ownText = new Summary();
+
+  TextStats(Element root) {
+    this(root, null);
+  }
+
+  /**
+   * Creates empty stats, to be filled in by {@link #add(Element)}.
+   */
+  TextStats() {
+    this.view = null;
+  }
+
+  /**
+   * @param view if not null, stats are computed as if its unlikely candidates had been stripped
+   */
+  TextStats(Element root, StrippedView view) {
+    this.view = view;
+    new NodeTraversor(new NodeVisitor() {
+      @Override
+      public void head(Node node, int depth) {
+      }
+
+      @Override
+      public void tail(Node node, int depth) {
+        if (node instanceof Element) {
+          add((Element) node);
+        }
+      }
+    }).traverse(root);
+  }
+
+  /**
+   * @return {@code element.text().length()}
+   */
+  int textLength(Element element) {
+    int offset = offsetOf(element);
+    if (offset < 0) {
+      return view != null ? view.text(element).length() : element.text().length();
+    }
+    return trimmedLength(offset + EMPTY * FIELDS);
+  }
+
+  /**
+   * @return {@code StringUtils.countLetters(element.text())}
+   */
+  int letterCount(Element element) {
+    int offset = offsetOf(element);
+    if (offset < 0) {
+      String text = view != null ? view.text(element) : element.text();
+      return StringUtils.countLetters(text);
+    }
+    return data[offset + EMPTY * FIELDS + LETTERS];
+  }
+
+  /**
+   * @return {@code element.ownText().length()}
+   */
+  int ownTextLength(Element element) {
+    int offset = offsetOf(element);
+    if (offset < 0) {
+      return view != null ? view.ownText(element).length() : element.ownText().length();
+    }
+    return data[offset + OWN_TEXT_LENGTH];
+  }
+
+  private int offsetOf(Element element) {
+    return (ids.get(element) - 1) * STRIDE;
+  }
+
+  private int trimmedLength(int base) {
+    int length = data[base + LENGTH];
+    int leading = data[base + LEADING_TRIMMABLE];
+    return leading == length ? 0 : length - leading - data[base + TRAILING_TRIMMABLE];
+  }
+
+  /**
+   * Measures {@code element} as it is now. Its child Elements must all have been added before, and
+   * the stats of an Element reflect the tree as it was when that Element was added.
+   */
+  void add(Element element) {
+    boolean isBlock = element.isBlock() || element.tagName().equals("br");
+    for (int state = 0; state < STATES; state++) {
+      summaries[state].reset(state);
+      if (isBlock && state == ENDS_WITH_OTHER) {
+        summaries[state].append(' ');
+      }
+    }
+    ownText.reset(EMPTY);
+
+    boolean preserveWhitespace = StrippedView.preserveWhitespace(element);
+    for (Node child : element.childNodes()) {
+      if (child instanceof TextNode) {
+        String text = ((TextNode) child).getWholeText();
+        for (Summary summary : summaries) {
+          summary.appendText(text, preserveWhitespace);
+        }
+        ownText.appendText(text, preserveWhitespace);
+
+      } else if (child instanceof Element) {
+        Element childElement = (Element) child;
+        if (view != null && view.isStripped(childElement)) {
+          continue;
+        }
+        int offset = offsetOf(childElement);
+        for (Summary summary : summaries) {
+          summary.append(data, offset + summary.state * FIELDS);
+        }
+        if (childElement.tagName().equals("br") && ownText.state != ENDS_WITH_SPACE) {
+          ownText.append(' ');
+        }
+      }
+    }
+
+    if ((size + 1) * STRIDE > data.length) {
+      data = Arrays.copyOf(data, data.length * 2);
+    }
+    int offset = size * STRIDE;
+    for (int state = 0; state < STATES; state++) {
+      summaries[state].writeTo(data, offset + state * FIELDS);
+    }
+    data[offset + OWN_TEXT_LENGTH] = ownText.trimmedLength();
+    ids.set(element, ++size);
+  }
+
+  /**
+   * Summarizes the text appended to an accumulator, which was in a given state before.
+   */
+  private static class Summary {
+    int length;
+    int leadingTrimmable;  // Characters that String.trim() would remove from the start.
+    int trailingTrimmable;  // Characters that String.trim() would remove from the end.
+    int letters;
+    boolean lastIsSpace;
+    int state;
+
+    void reset(int initialState) {
+      length = leadingTrimmable = trailingTrimmable = letters = 0;
+      lastIsSpace = false;
+      state = initialState;
+    }
+
+    void append(char c) {
+      boolean trimmable = c <= ' ';
+      if (trimmable && leadingTrimmable == length) {
+        leadingTrimmable++;
+      }
+      trailingTrimmable = trimmable ? trailingTrimmable + 1 : 0;
+      if (Character.isLetter(c)) {
+        letters++;
+      }
+      length++;
+      lastIsSpace = c == ' ';
+      state = lastIsSpace ? ENDS_WITH_SPACE : ENDS_WITH_OTHER;
+    }
+
+    /**
+     * Mirrors jsoup’s handling of a TextNode, including
+     * {@link StringUtil#appendNormalisedWhitespace(StringBuilder, String, boolean)}.
+     */
+    void appendText(String text, boolean preserveWhitespace) {
+      if (preserveWhitespace) {
+        for (int i = 0; i < text.length(); i++) {
+          append(text.charAt(i));
+        }
+        return;
+      }
+      boolean stripLeading = state == ENDS_WITH_SPACE;
+      boolean lastWasWhite = false;
+      boolean reachedNonWhite = false;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (StringUtil.isWhitespace(c)) {
+          if ((stripLeading && !reachedNonWhite) || lastWasWhite) {
+            continue;
+          }
+          append(' ');
+          lastWasWhite = true;
+        } else {
+          append(c);
+          lastWasWhite = false;
+          reachedNonWhite = true;
+        }
+      }
+    }
+
+    /**
+     * Appends the summary of another Element’s text, as stored in {@code data}.
+     */
+    void append(int[] data, int base) {
+      int otherLength = data[base + LENGTH];
+      if (otherLength == 0) {
+        return;
+      }
+      int otherTrailing = data[base + TRAILING_TRIMMABLE];
+      if (leadingTrimmable == length) {
+        leadingTrimmable += data[base + LEADING_TRIMMABLE];
+      }
+      trailingTrimmable = otherTrailing == otherLength ? trailingTrimmable + otherLength : otherTrailing;
+      letters += data[base + LETTERS];
+      length += otherLength;
+      lastIsSpace = data[base + LAST_IS_SPACE] != 0;
+      state = lastIsSpace ? ENDS_WITH_SPACE : ENDS_WITH_OTHER;
+    }
+
+    void writeTo(int[] data, int base) {
+      data[base + LENGTH] = length;
+      data[base + LEADING_TRIMMABLE] = leadingTrimmable;
+      data[base + TRAILING_TRIMMABLE] = trailingTrimmable;
+      data[base + LETTERS] = letters;
+      data[base + LAST_IS_SPACE] = lastIsSpace ? 1 : 0;
+    }
+
+    int trimmedLength() {
+      return leadingTrimmable == length ? 0 : length - leadingTrimmable - trailingTrimmable;
+    }
+  }
+}
@@ -0,0 +1,390 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import java.io.IOException;
+
+/**
+ * Writes the paragraphs of an article to an {@link Appendable} in a {@link TextFormat}, as the
+ * postprocessor visits their nodes in document order.
+ *
+ * Nothing is written until it is known to be followed by text: whitespace, line breaks, paragraph
+ * separators and opening Markdown markers are all held back until then, and dropped if no text
+ * follows. That way, empty elements, and whitespace at the start or end of a paragraph or an
+ * emphasized run, leave no trace in the output.
+ *
+ * Whitespace is collapsed exactly where {@link Element#text()} collapses it, so the text within a
+ * {@code <pre>} keeps its spaces and line breaks. In Markdown, a {@code <pre>} is written as a
+ * fenced code block, in which nothing is escaped.
+ */
+final class TextWriter {
+  private final Appendable out;
+  private final boolean markdown;
+
+  private boolean wroteParagraph = false;
+  private boolean startedParagraph = false;
+  private String linePrefix = "";
+  private String continuationPrefix = "";  // Starts every line of a paragraph after its first.
+  private boolean atLineStart = true;
+  private boolean endsWithSpace = true;  // Whether Element.text() would end with a space here.
+
+  private int preDepth = 0;
+  private String fence = null;  // Opens and closes the current code block.
+  private boolean wroteFence = false;
+
+  private boolean pendingSpace = false;
+  private final StringBuilder pendingWhitespace = new StringBuilder();  // Kept as-is, within a <pre>.
+  private boolean pendingLineBreak = false;
+  private boolean pendingNewLine = false;  // Ends the line after a code block.
+  private final StringBuilder pendingMarkers = new StringBuilder();
+
+  TextWriter(Appendable out, TextFormat format) {
+    this.out = out;
+    this.markdown = format == TextFormat.MARKDOWN;
+  }
+
+  /**
+   * Starts a paragraph for a top-level node of the output.
+   */
+  void startParagraph(Node node) {
+    String tagName = node instanceof Element ? ((Element) node).tagName() : "";
+    if (tagName.length() == 2 && tagName.charAt(0) == 'h' && tagName.charAt(1) >= '1' && tagName.charAt(1) <= '6') {
+      linePrefix = "######".substring(0, tagName.charAt(1) - '0') + " ";
+    } else if (tagName.equals("blockquote")) {
+      linePrefix = "> ";
+    } else if (tagName.equals("li") && markdown) {
+      linePrefix = "- ";
+    } else {
+      linePrefix = "";
+    }
+    continuationPrefix = linePrefix.equals("> ") ? linePrefix : linePrefix.equals("- ") ? "  " : "";
+  }
+
+  void endParagraph() throws IOException {
+    if (startedParagraph) {
+      out.append('\n');
+      wroteParagraph = true;
+    }
+    startedParagraph = false;
+    atLineStart = true;
+    endsWithSpace = true;
+    pendingSpace = false;
+    pendingWhitespace.setLength(0);
+    pendingLineBreak = false;
+    pendingNewLine = false;
+    pendingMarkers.setLength(0);
+  }
+
+  private boolean inCodeBlock() {
+    return markdown && preDepth > 0;
+  }
+
+  /**
+   * @param url the absolute URL of a link or an image, or null
+   */
+  void startElement(Element element, String url) throws IOException {
+    if (inCodeBlock()) {
+      if (element.tagName().equals("br")) {
+        holdWhitespace('\n');
+      } else if (element.tagName().equals("pre")) {
+        preDepth++;
+      }
+      return;  // Markup is not interpreted within a code block.
+    }
+    switch (element.tagName()) {
+      case "br":
+        pendingLineBreak = startedParagraph;
+        pendingSpace = false;
+        pendingWhitespace.setLength(0);
+        break;
+      case "b":
+      case "strong":
+        if (markdown) {
+          pendingMarkers.append("**");
+        }
+        break;
+      case "i":
+      case "em":
+        if (markdown) {
+          pendingMarkers.append('*');
+        }
+        break;
+      case "a":
+        if (markdown && url != null && !url.isEmpty()) {
+          pendingMarkers.append('[');
+        }
+        break;
+      case "img":
+        if (markdown && url != null && !url.isEmpty()) {
+          flush();
+          atLineStart = false;
+          out.append("![");
+          escape(element.attr("alt").trim());
+          out.append("](");
+          appendUrl(url);
+          out.append(')');
+          endsWithSpace = false;
+        }
+        break;
+      case "pre":
+        preDepth++;
+        if (markdown) {
+          fence = fenceFor(element.text());
+          pendingSpace = false;  // The code block starts on a line of its own anyway.
+          pendingWhitespace.setLength(0);
+          break;
+        }
+        pendingSpace = true;
+        break;
+      case "p":
+      case "blockquote":
+      case "li":
+      case "h1":
+      case "h2":
+      case "h3":
+      case "h4":
+      case "h5":
+      case "h6":
+        pendingSpace = true;  // Like Element.text(), which separates words before a block, but not after one.
+        break;
+      default:
+        break;
+    }
+  }
+
+  void endElement(Element element, String url) throws IOException {
+    if (inCodeBlock()) {
+      if (element.tagName().equals("pre") && --preDepth == 0) {
+        if (wroteFence) {
+          out.append('\n').append(continuationPrefix).append(fence);
+          wroteFence = false;
+          pendingNewLine = true;
+        }
+        fence = null;
+        pendingWhitespace.setLength(0);
+      }
+      return;
+    }
+    switch (element.tagName()) {
+      case "pre":
+        preDepth--;
+        break;
+      case "b":
+      case "strong":
+        if (markdown) {
+          closeMarker("**", "**");
+        }
+        break;
+      case "i":
+      case "em":
+        if (markdown) {
+          closeMarker("*", "*");
+        }
+        break;
+      case "a":
+        if (markdown && url != null && !url.isEmpty()) {
+          if (pendingMarkers.length() > 0) {
+            pendingMarkers.setLength(pendingMarkers.length() - 1);
+          } else {
+            out.append("](");
+            appendUrl(url);
+            out.append(')');
+          }
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Writes {@code text}, with each run of whitespace collapsed into a single space, unless
+   * {@code preserveWhitespace}.
+   */
+  void text(String text, boolean preserveWhitespace) throws IOException {
+    int length = text.length();
+    int i = 0;
+    while (i < length) {
+      char c = text.charAt(i);
+      if (isWhitespace(c)) {
+        if (preserveWhitespace) {
+          holdWhitespace(c);
+        } else {
+          pendingSpace = true;
+        }
+        i++;
+        continue;
+      }
+      int end = i + 1;
+      while (end < length && !isWhitespace(text.charAt(end))) {
+        end++;
+      }
+      flush();
+      if (markdown && !inCodeBlock()) {
+        escape(text, i, end);
+      } else {
+        out.append(text, i, end);
+      }
+      atLineStart = false;
+      endsWithSpace = false;
+      i = end;
+    }
+  }
+
+  /**
+   * Holds back a whitespace character that is kept as-is. Like {@link Element#text()}, any space
+   * held back before it collapses only with whitespace before it.
+   */
+  private void holdWhitespace(char c) {
+    if (pendingSpace) {
+      boolean afterSpace = pendingWhitespace.length() > 0
+          ? pendingWhitespace.charAt(pendingWhitespace.length() - 1) == ' '
+          : endsWithSpace;
+      if (!afterSpace) {
+        pendingWhitespace.append(' ');
+      }
+      pendingSpace = false;
+    }
+    pendingWhitespace.append(c);
+  }
+
+  /**
+   * Writes everything held back so far, since text is about to follow.
+   */
+  private void flush() throws IOException {
+    boolean opensCodeBlock = inCodeBlock() && !wroteFence;
+    if (opensCodeBlock) {
+      pendingWhitespace.delete(0, pendingWhitespace.lastIndexOf("\n") + 1);  // Keeps the indentation.
+    }
+    if (!startedParagraph) {
+      if (wroteParagraph) {
+        out.append('\n');
+      }
+      out.append(linePrefix);
+      startedParagraph = true;
+      atLineStart = true;
+      if (!opensCodeBlock) {
+        pendingWhitespace.setLength(0);
+      }
+    } else if (pendingLineBreak || pendingNewLine) {
+      out.append(markdown && pendingLineBreak ? "  \n" : "\n").append(continuationPrefix);
+      atLineStart = true;
+      endsWithSpace = true;
+    } else if (!opensCodeBlock) {
+      writeWhitespace();
+      if (pendingSpace && !endsWithSpace) {
+        out.append(' ');
+      }
+    }
+    if (opensCodeBlock) {
+      if (!atLineStart) {
+        out.append('\n').append(continuationPrefix);
+      }
+      out.append(fence).append('\n').append(continuationPrefix);
+      wroteFence = true;
+      atLineStart = true;
+      writeWhitespace();
+    }
+    pendingSpace = false;
+    pendingWhitespace.setLength(0);
+    pendingLineBreak = false;
+    pendingNewLine = false;
+    if (pendingMarkers.length() > 0) {
+      out.append(pendingMarkers);
+      pendingMarkers.setLength(0);
+      atLineStart = false;
+    }
+  }
+
+  /**
+   * Drops the opening marker of an element if it was never written, since no text followed it, or
+   * else writes its closing marker.
+   */
+  private void closeMarker(String openingMarker, String closingMarker) throws IOException {
+    if (pendingMarkers.length() > 0) {
+      pendingMarkers.setLength(pendingMarkers.length() - openingMarker.length());
+    } else {
+      out.append(closingMarker);
+    }
+  }
+
+  private void writeWhitespace() throws IOException {
+    for (int i = 0; i < pendingWhitespace.length(); i++) {
+      char c = pendingWhitespace.charAt(i);
+      out.append(c);
+      if (c == '\n') {
+        out.append(continuationPrefix);
+        atLineStart = true;
+      }
+      endsWithSpace = c == ' ';
+    }
+  }
+
+  /**
+   * @return a fence of backticks that is longer than any run of backticks within {@code code}
+   */
+  private static String fenceFor(String code) {
+    int longestRun = 0;
+    int run = 0;
+    for (int i = 0; i < code.length(); i++) {
+      run = code.charAt(i) == '`' ? run + 1 : 0;
+      longestRun = Math.max(longestRun, run);
+    }
+    StringBuilder fence = new StringBuilder("```");
+    while (fence.length() <= longestRun) {
+      fence.append('`');
+    }
+    return fence.toString();
+  }
+
+  private void escape(String text) throws IOException {
+    escape(text, 0, text.length());
+  }
+
+  private void escape(String text, int start, int end) throws IOException {
+    int listMarker = atLineStart ? orderedListMarker(text, start, end) : -1;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      boolean special = c == '\\' || c == '`' || c == '*' || c == '_' || c == '[' || c == ']' || c == '<' ||
+          (i == start && atLineStart && (c == '#' || c == '>' || c == '-' || c == '+' || c == '=')) ||
+          i == listMarker;
+      if (special) {
+        out.append('\\');
+      }
+      out.append(c);
+    }
+  }
+
+  /**
+   * @return the index of the {@code .} or {@code )} that ends {@code text} between {@code start}
+   * and {@code end}, after nothing but digits, as in an ordered list item, or -1
+   */
+  private static int orderedListMarker(String text, int start, int end) {
+    int i = start;
+    while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+      i++;
+    }
+    char c = i + 1 == end ? text.charAt(i) : 0;
+    return i > start && (c == '.' || c == ')') ? i : -1;
+  }
+
+  private void appendUrl(String url) throws IOException {
+    for (int i = 0; i < url.length(); i++) {
+      char c = url.charAt(i);
+      if (c == ' ') {
+        out.append("%20");
+      } else if (c == '(') {
+        out.append("%28");
+      } else if (c == ')') {
+        out.append("%29");
+      } else {
+        out.append(c);
+      }
+    }
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+}
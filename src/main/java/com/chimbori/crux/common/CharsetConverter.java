@@ -1,20 +1,44 @@
 package com.chimbori.crux.common;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
- * This class is not thread safe. Use one new instance every time due to encoding variable.
+ * Detects the charset of an HTML page from its first few bytes, and decodes it in a single pass,
+ * from a stream, a channel, or a buffer. The charset is sniffed at the byte level, without
+ * decoding anything to a String, and the page is then decoded chunk by chunk into a
+ * {@link CharBuffer} that is reused across calls, so at most {@code maxBytes} of the stream are
+ * ever read, and no full copy of the page’s bytes is kept around.
+ *
+ * This class is not thread safe. Each thread can reuse its own instance for any number of pages.
  */
 public class CharsetConverter {
   private final static String UTF8 = "UTF-8";
   private final static String ISO = "ISO-8859-1";
   private final static int K2 = 2048;
-  private static final int DEFAULT_MAX_BYTES = 500 * 1024;
+  public static final int DEFAULT_MAX_BYTES = 500 * 1024;
+
+  /**
+   * A charset declared by the {@code charset=…} of a meta tag is searched for within this many
+   * bytes, and one declared by the {@code encoding=…} of an XML declaration within twice as many.
+   */
+  private static final int SNIFF_LENGTH = K2;
+
+  /**
+   * Charset names longer than this are not considered.
+   */
+  private static final int MAX_CHARSET_NAME_LENGTH = 40;
+
+  private static final byte[] CHARSET_KEY = "charset=".getBytes(Charset.forName(ISO));
+  private static final byte[] ENCODING_KEY = "encoding=".getBytes(Charset.forName(ISO));
 
   public static class StringWithEncoding {
     public final String content;
@@ -26,7 +50,24 @@ public class CharsetConverter {
     }
   }
 
-  private CharsetConverter() {
+  private final int maxBytes;
+  private final ByteBuffer bytes = ByteBuffer.allocate(2 * SNIFF_LENGTH);
+  private CharBuffer chars = CharBuffer.allocate(2 * SNIFF_LENGTH);
+  private String encoding = UTF8;
+
+  public CharsetConverter() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * @param maxBytes no more than this many bytes are read from each stream; HTML beyond that limit
+   *                 is cut off.
+   */
+  public CharsetConverter(int maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
   }
 
   public static String extractEncoding(String contentType) {
@@ -53,137 +94,302 @@ public class CharsetConverter {
   }
 
   public static StringWithEncoding readStream(InputStream inputStream) {
-    // HTTP 1.1 standard is iso-8859-1 not utf8 but we force utf-8 as YouTube assumes it.
-    String encoding = UTF8;
+    return readStream(inputStream, DEFAULT_MAX_BYTES);
+  }
 
-    BufferedInputStream in = null;
+  public static StringWithEncoding readStream(InputStream inputStream, int maxBytes) {
     try {
-      in = new BufferedInputStream(inputStream, K2);
-      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-      // detect encoding with the help of meta tag
-      try {
-        in.mark(K2 * 2);
-        String tmpEnc = detectCharset("charset=", outputStream, in, encoding);
-        if (tmpEnc != null)
-          encoding = tmpEnc;
-        else {
-          Log.i("no charset found in first stage");
-          // detect with the help of xml beginning ala encoding="charset"
-          tmpEnc = detectCharset("encoding=", outputStream, in, encoding);
-          if (tmpEnc != null) {
-            encoding = tmpEnc;
-          } else {
-            Log.i("no charset found in second stage");
-          }
-        }
-
-        if (!Charset.isSupported(encoding))
-          throw new UnsupportedEncodingException(encoding);
-      } catch (UnsupportedEncodingException e) {
-        Log.i("Using default encoding:" + UTF8 + " problem:" + e.getMessage() + " encoding:" + encoding);
-        encoding = UTF8;
-      }
+      CharsetConverter converter = new CharsetConverter(maxBytes);
+      CharBuffer content = converter.decode(inputStream);
+      return new StringWithEncoding(content.toString(), converter.encoding());
 
+    } catch (IOException e) {
       // SocketException: Connection reset
       // IOException: missing CR    => problem on server (probably some xml character thing?)
       // IOException: Premature EOF => socket unexpectedly closed from server
-      int bytesRead = outputStream.size();
-      byte[] arr = new byte[K2];
-      while (true) {
-        if (bytesRead >= DEFAULT_MAX_BYTES) {
-          Log.i("maxBytes " + DEFAULT_MAX_BYTES + " exceeded. HTML may be broken.");
-          break;
-        }
+      e.printStackTrace();
+    } finally {
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        // Ignore.
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads up to {@code maxBytes} from the stream, and decodes them using the charset declared
+   * within its first few bytes, or UTF-8 if none was found. The stream is not closed.
+   *
+   * @return the decoded content, which is only valid until the next call to this method, since the
+   * same buffer is reused.
+   */
+  public CharBuffer decode(InputStream inputStream) throws IOException {
+    return decode(Channels.newChannel(inputStream), null);
+  }
+
+  /**
+   * Like {@link #decode(InputStream)}, but for a page whose HTTP {@code Content-Type} header is
+   * known; see {@link #decode(ByteBuffer, String)}.
+   */
+  public CharBuffer decode(InputStream inputStream, String contentType) throws IOException {
+    return decode(Channels.newChannel(inputStream), contentType);
+  }
+
+  /**
+   * Like {@link #decode(InputStream)}, but reads from a blocking channel, which is not closed.
+   */
+  public CharBuffer decode(ReadableByteChannel channel) throws IOException {
+    return decode(channel, null);
+  }
+
+  /**
+   * Like {@link #decode(ReadableByteChannel)}, but for a page whose HTTP {@code Content-Type}
+   * header is known; see {@link #decode(ByteBuffer, String)}.
+   */
+  public CharBuffer decode(ReadableByteChannel channel, String contentType) throws IOException {
+    bytes.clear();
+    int prefixLength = readFully(channel, bytes);
+    CharsetDecoder decoder = newDecoder(chooseEncoding(prefixLength, contentType));
+    chars.clear();
 
-        int n = in.read(arr);
-        if (n < 0)
-          break;
-        bytesRead += n;
-        outputStream.write(arr, 0, n);
+    int bytesRead = Math.min(prefixLength, maxBytes);
+    bytes.flip();
+    bytes.limit(bytesRead);
+    while (true) {
+      decode(decoder, bytes, false);
+      bytes.compact();  // Keeps the bytes of a character that has been cut in half by the chunk.
+      if (bytesRead >= maxBytes) {
+        Log.i("maxBytes " + maxBytes + " exceeded. HTML may be broken.");
+        break;
+      }
+      bytes.limit(Math.min(bytes.capacity(), bytes.position() + maxBytes - bytesRead));
+      int n = channel.read(bytes);
+      if (n < 0) {
+        break;
       }
+      bytesRead += n;
+      bytes.flip();
+    }
+    bytes.flip();
+    return finishDecoding(decoder, bytes);
+  }
 
-      return new StringWithEncoding(outputStream.toString(encoding), encoding.toLowerCase());
+  /**
+   * Like {@link #decode(InputStream)}, but decodes the remaining bytes of a buffer in place, e.g. a
+   * slice of a memory-mapped file, without copying them first. The buffer’s position is not
+   * changed.
+   */
+  public CharBuffer decode(ByteBuffer buffer) {
+    return decode(buffer, null);
+  }
 
-    } catch (IOException e) {
-      e.printStackTrace();
-    } finally {
-      if (in != null) {
-        try {
-          in.close();
-        } catch (IOException e) {
-          // Ignore.
-        }
+  /**
+   * Like {@link #decode(ByteBuffer)}, but for a page whose HTTP {@code Content-Type} header is
+   * known, e.g. one stored in a WARC file. A supported charset declared by the header takes
+   * precedence over one declared within the page, as it would in a browser; otherwise, the charset
+   * is sniffed from the first few bytes as usual.
+   *
+   * @param contentType the value of the {@code Content-Type} header, or null if there was none
+   */
+  public CharBuffer decode(ByteBuffer buffer, String contentType) {
+    ByteBuffer page = buffer.duplicate();
+    if (page.remaining() > maxBytes) {
+      Log.i("maxBytes " + maxBytes + " exceeded. HTML may be broken.");
+      page.limit(page.position() + maxBytes);
+    }
+
+    // Only the first few bytes are copied, to sniff the charset from.
+    ByteBuffer prefix = buffer.duplicate();
+    bytes.clear();
+    if (prefix.remaining() > bytes.remaining()) {
+      prefix.limit(prefix.position() + bytes.remaining());
+    }
+    int prefixLength = prefix.remaining();
+    bytes.put(prefix);
+    CharsetDecoder decoder = newDecoder(chooseEncoding(prefixLength, contentType));
+
+    chars.clear();
+    return finishDecoding(decoder, page);
+  }
+
+  /**
+   * @return the encoding used by the last call to any of the {@code decode} methods, in lower case.
+   */
+  public String encoding() {
+    return encoding.toLowerCase();
+  }
+
+  /**
+   * @return the supported charset declared by {@code contentType}, if any, or else the one sniffed
+   * from the first {@code prefixLength} bytes of {@link #bytes}; it is also kept as
+   * {@link #encoding}.
+   */
+  private String chooseEncoding(int prefixLength, String contentType) {
+    String declaredEncoding = charsetOf(contentType);
+    if (declaredEncoding != null && isSupported(declaredEncoding)) {
+      encoding = declaredEncoding;
+      return encoding;
+    }
+    return sniffEncoding(prefixLength);
+  }
+
+  /**
+   * @return the charset declared within the first {@code prefixLength} bytes of {@link #bytes}, or
+   * UTF-8 if none was found; it is also kept as {@link #encoding}.
+   */
+  private String sniffEncoding(int prefixLength) {
+    // HTTP 1.1 standard is iso-8859-1 not utf8 but we force utf-8 as YouTube assumes it.
+    encoding = UTF8;
+    String detectedEncoding = sniffCharset(bytes.array(), Math.min(prefixLength, SNIFF_LENGTH), CHARSET_KEY);
+    if (detectedEncoding == null) {
+      Log.i("no charset found in first stage");
+      // detect with the help of xml beginning ala encoding="charset"
+      detectedEncoding = sniffCharset(bytes.array(), prefixLength, ENCODING_KEY);
+      if (detectedEncoding == null) {
+        Log.i("no charset found in second stage");
+      }
+    }
+    if (detectedEncoding != null) {
+      if (isSupported(detectedEncoding)) {
+        encoding = detectedEncoding;
+      } else {
+        Log.i("Using default encoding:" + UTF8 + " unsupported encoding:" + detectedEncoding);
+      }
+    }
+    return encoding;
+  }
+
+  /**
+   * Unlike {@link #extractEncoding(String)}, does not fall back to a default charset.
+   *
+   * @return the charset declared by the {@code charset=…} parameter of a {@code Content-Type}
+   * header, without quotes, or null if there is none
+   */
+  private static String charsetOf(String contentType) {
+    if (contentType == null) {
+      return null;
+    }
+    for (String value : contentType.split(";")) {
+      value = value.trim();
+      if (value.regionMatches(true, 0, "charset=", 0, "charset=".length())) {
+        String charset = StringUtils.encodingCleanup(value.substring("charset=".length()));
+        return charset.isEmpty() ? null : charset;
       }
     }
     return null;
   }
 
+  private static CharsetDecoder newDecoder(String encoding) {
+    return Charset.forName(encoding).newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  private CharBuffer finishDecoding(CharsetDecoder decoder, ByteBuffer in) {
+    decode(decoder, in, true);
+    while (decoder.flush(chars) == CoderResult.OVERFLOW) {
+      growChars();
+    }
+    chars.flip();
+    return chars;
+  }
+
+  private void decode(CharsetDecoder decoder, ByteBuffer in, boolean endOfInput) {
+    while (decoder.decode(in, chars, endOfInput) == CoderResult.OVERFLOW) {
+      growChars();
+    }
+  }
+
+  private void growChars() {
+    CharBuffer grown = CharBuffer.allocate(chars.capacity() * 2);
+    chars.flip();
+    grown.put(chars);
+    chars = grown;
+  }
+
   /**
-   * This method detects the charset even if the first call only returns some
-   * bytes. It will read until 4K bytes are reached and then try to determine
-   * the encoding
+   * Reads until the buffer is full, or the channel is exhausted.
    *
-   * @throws IOException
+   * @return the number of bytes read
    */
-  private static String detectCharset(String key, ByteArrayOutputStream bos, BufferedInputStream in,
-                               String enc) throws IOException {
-
-    // Grab better encoding from stream
-    byte[] arr = new byte[K2];
-    int nSum = 0;
-    while (nSum < K2) {
-      int n = in.read(arr);
-      if (n < 0)
+  private static int readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+    int total = 0;
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer);
+      if (n < 0) {
         break;
+      }
+      total += n;
+    }
+    return total;
+  }
+
+  private static boolean isSupported(String encoding) {
+    try {
+      return Charset.isSupported(encoding);
+    } catch (IllegalArgumentException e) {  // Illegal charset name.
+      return false;
+    }
+  }
 
-      nSum += n;
-      bos.write(arr, 0, n);
-    }
-
-    String str = bos.toString(enc);
-    int encIndex = str.indexOf(key);
-    int clength = key.length();
-    if (encIndex > 0) {
-      char startChar = str.charAt(encIndex + clength);
-      int lastEncIndex;
-      if (startChar == '\'')
-        // if we have charset='something'
-        lastEncIndex = str.indexOf("'", ++encIndex + clength);
-      else if (startChar == '\"')
-        // if we have charset="something"
-        lastEncIndex = str.indexOf("\"", ++encIndex + clength);
-      else {
-        // if we have "text/html; charset=utf-8"
-        int first = str.indexOf("\"", encIndex + clength);
-        if (first < 0)
-          first = Integer.MAX_VALUE;
-
-        // or "text/html; charset=utf-8 "
-        int sec = str.indexOf(" ", encIndex + clength);
-        if (sec < 0)
-          sec = Integer.MAX_VALUE;
-        lastEncIndex = Math.min(first, sec);
-
-        // or "text/html; charset=utf-8 '
-        int third = str.indexOf("'", encIndex + clength);
-        if (third > 0)
-          lastEncIndex = Math.min(lastEncIndex, third);
+  /**
+   * Looks for {@code key} in the first {@code length} bytes of {@code buffer}, and returns the
+   * charset name that follows it, whether it is quoted or not. Since the key and the delimiters
+   * around the name are all ASCII, this works on the raw bytes of any ASCII-compatible encoding.
+   */
+  private static String sniffCharset(byte[] buffer, int length, byte[] key) {
+    int keyIndex = indexOf(buffer, length, key);
+    if (keyIndex <= 0 || keyIndex + key.length >= length) {
+      return null;
+    }
+
+    int start = keyIndex + key.length;
+    int end;
+    byte startChar = buffer[start];
+    if (startChar == '\'' || startChar == '"') {
+      // if we have charset='something' or charset="something"
+      start++;
+      end = indexOf(buffer, length, startChar, start);
+    } else {
+      // if we have "text/html; charset=utf-8", or "text/html; charset=utf-8 "
+      int doubleQuote = indexOf(buffer, length, (byte) '"', start);
+      int space = indexOf(buffer, length, (byte) ' ', start);
+      end = Math.min(doubleQuote < 0 ? Integer.MAX_VALUE : doubleQuote, space < 0 ? Integer.MAX_VALUE : space);
+
+      // or "text/html; charset=utf-8 '
+      int singleQuote = indexOf(buffer, length, (byte) '\'', start);
+      if (singleQuote > 0) {
+        end = Math.min(end, singleQuote);
       }
+    }
 
-      // re-read byte array with different encoding
-      // assume that the encoding string cannot be greater than 40 chars
-      if (lastEncIndex > encIndex + clength && lastEncIndex < encIndex + clength + 40) {
-        String tmpEnc = StringUtils.encodingCleanup(str.substring(encIndex + clength, lastEncIndex));
-        try {
-          in.reset();
-          bos.reset();
-          return tmpEnc;
-        } catch (IOException e) {
-          Log.i("Couldn't reset stream to re-read with new encoding %s %s %s", tmpEnc, e.toString(), e);
+    if (end > start && end < start + MAX_CHARSET_NAME_LENGTH) {
+      return StringUtils.encodingCleanup(new String(buffer, start, end - start, Charset.forName(UTF8)));
+    }
+    return null;
+  }
+
+  private static int indexOf(byte[] buffer, int length, byte[] key) {
+    outer:
+    for (int i = 0; i <= length - key.length; i++) {
+      for (int j = 0; j < key.length; j++) {
+        if (buffer[i + j] != key[j]) {
+          continue outer;
         }
       }
+      return i;
     }
-    return null;
+    return -1;
+  }
+
+  private static int indexOf(byte[] buffer, int length, byte b, int fromIndex) {
+    for (int i = fromIndex; i < length; i++) {
+      if (buffer[i] == b) {
+        return i;
+      }
+    }
+    return -1;
   }
 }
@@ -0,0 +1,76 @@
+package com.chimbori.crux.common;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A fast, non-cryptographic 64-bit hash of page contents, for recognizing a page that has been seen
+ * before without comparing it byte by byte. It follows the structure of the tail loop of xxHash64:
+ * eight bytes (or four chars) are mixed in at a time, and the result is run through the MurmurHash3
+ * finalizer, so every input bit affects every output bit.
+ *
+ * The hashes of bytes and of chars are not meant to be compared with each other.
+ */
+public final class ContentHash {
+  private static final long PRIME1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME3 = 0x165667B19E3779F9L;
+  private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+  private ContentHash() {
+  }
+
+  /**
+   * Hashes the remaining bytes of a buffer, without changing its position.
+   */
+  public static long of(ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int start = in.position();
+    int end = in.limit();
+    long h = PRIME3 + (end - start) * PRIME1;
+    int i = start;
+    for (; i + 8 <= end; i += 8) {
+      h = round(h, in.getLong(i));
+    }
+    if (i < end) {
+      long word = 0;
+      for (int shift = 0; i < end; i++, shift += 8) {
+        word |= (in.get(i) & 0xffL) << shift;
+      }
+      h = round(h, word);
+    }
+    return finish(h);
+  }
+
+  public static long of(CharSequence chars) {
+    int length = chars.length();
+    long h = PRIME4 + length * PRIME1;
+    int i = 0;
+    for (; i + 4 <= length; i += 4) {
+      h = round(h, chars.charAt(i) | (long) chars.charAt(i + 1) << 16
+          | (long) chars.charAt(i + 2) << 32 | (long) chars.charAt(i + 3) << 48);
+    }
+    if (i < length) {
+      long word = 0;
+      for (int shift = 0; i < length; i++, shift += 16) {
+        word |= (long) chars.charAt(i) << shift;
+      }
+      h = round(h, word);
+    }
+    return finish(h);
+  }
+
+  private static long round(long h, long word) {
+    h ^= Long.rotateLeft(word * PRIME2, 31) * PRIME1;
+    return Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+  }
+
+  private static long finish(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,59 @@
+package com.chimbori.crux.common;
+
+/**
+ * Picks the first non-empty string out of several candidates, with a fluent API, as a
+ * replacement for {@link HeuristicString} that never throws.
+ *
+ * Once a candidate has been picked, all further calls to {@code or(…)} return immediately. A
+ * {@link Candidate} is only evaluated if no earlier candidate has been picked, so expensive ones,
+ * e.g. those that scan a whole subtree, should be passed that way; cheap ones can be passed as
+ * plain strings.
+ *
+ * <pre>
+ * String url = new FirstNonEmpty()
+ *     .or(root.attr("src"))
+ *     .or(new FirstNonEmpty.Candidate() {
+ *       public String get() { return anyChildTagWithAttr(root.select("*"), "src"); }
+ *     })
+ *     .toString();
+ * </pre>
+ *
+ * If no candidate is non-empty, the result is the empty string if any candidate was empty, or null
+ * if all were null, just like with {@link HeuristicString}.
+ */
+public class FirstNonEmpty {
+  private String string = null;
+
+  /**
+   * A candidate that is computed on demand.
+   */
+  public interface Candidate {
+    String get();
+  }
+
+  public FirstNonEmpty or(String candidate) {
+    if (!isFound() && candidate != null) {
+      string = candidate;
+    }
+    return this;
+  }
+
+  public FirstNonEmpty or(Candidate candidate) {
+    if (!isFound()) {
+      or(candidate.get());
+    }
+    return this;
+  }
+
+  /**
+   * @return whether a non-empty candidate has been picked, so that no further ones are evaluated.
+   */
+  public boolean isFound() {
+    return string != null && !string.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return string;
+  }
+}
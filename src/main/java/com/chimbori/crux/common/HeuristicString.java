@@ -9,7 +9,11 @@ package com.chimbori.crux.common;
  * When a candidate is found, it is returned via the {@link CandidateFound} Exception. This is to
  * ensure that other pending calls to {@link .or(...)} are not executed, and the caller can skip
  * evaluating other candidates as soon as the first one is found.
+ *
+ * @deprecated Use {@link FirstNonEmpty} instead, which returns the same result without throwing,
+ * and can skip evaluating later candidates entirely.
  */
+@Deprecated
 public class HeuristicString {
   private String string = null;
 
@@ -26,12 +26,38 @@ public class StringUtils {
     return url.isEmpty() ? url : url.trim().replaceAll(WHITESPACE, "%20");
   }
 
+  /**
+   * @return the number of non-overlapping occurrences of {@code substring} within {@code str}, or
+   * 0 if {@code substring} is empty
+   */
   public static int countMatches(String str, String substring) {
+    if (substring.isEmpty()) {
+      return 0;
+    }
     int count = 0;
     int indexOf = str.indexOf(substring);
-    if (indexOf >= 0) {
+    while (indexOf >= 0) {
       count++;
-      count += countMatches(str.substring(indexOf + substring.length()), substring);
+      indexOf = str.indexOf(substring, indexOf + substring.length());
+    }
+    return count;
+  }
+
+  /**
+   * Counts the occurrences of several substrings within {@code str}, without allocating. Each
+   * substring is counted as by {@link #countMatches(String, String)}, i.e. occurrences of the same
+   * substring do not overlap, but those of different ones may.
+   *
+   * The text is scanned once per substring: {@link String#indexOf(String, int)} is intrinsified by
+   * the JIT, so this is several times faster than a single character-by-character scan that tests
+   * every substring at each position.
+   *
+   * @return the total number of occurrences of all substrings
+   */
+  public static int countMatches(String str, String[] substrings) {
+    int count = 0;
+    for (String substring : substrings) {
+      count += countMatches(str, substring);
     }
     return count;
   }
@@ -65,9 +91,16 @@ public class StringUtils {
   }
 
   /**
-   * @return the longest substring as str1.substring(result[0], result[1]);
+   * Inputs whose lengths multiply to more than this are compared with a {@link SuffixAutomaton},
+   * which takes linear time, instead of with dynamic programming, which takes quadratic time.
    */
-  static String getLongestSubstring(String str1, String str2) {
+  private static final long MAX_LONGEST_SUBSTRING_PRODUCT = 1 << 20;
+
+  /**
+   * @return the longest substring of {@code str1} that is also a substring of {@code str2}; if
+   * several are equally long, the one that ends first in {@code str1}
+   */
+  public static String getLongestSubstring(String str1, String str2) {
     int res[] = longestSubstring(str1, str2);
     if (res == null || res[0] >= res[1])
       return "";
@@ -75,36 +108,50 @@ public class StringUtils {
     return str1.substring(res[0], res[1]);
   }
 
-  private static int[] longestSubstring(String str1, String str2) {
+  /**
+   * @return the longest substring as str1.substring(result[0], result[1]);
+   */
+  static int[] longestSubstring(String str1, String str2) {
     if (str1 == null || str1.isEmpty() || str2 == null || str2.isEmpty())
       return null;
 
-    // dynamic programming => save already identical length into array
-    // to understand this algo simply print identical length in every entry of the array
-    // i+1, j+1 then reuses information from i,j
-    // java initializes them already with 0
-    int[][] num = new int[str1.length()][str2.length()];
+    if ((long) str1.length() * str2.length() > MAX_LONGEST_SUBSTRING_PRODUCT)
+      return new SuffixAutomaton(str2).longestCommonSubstring(str1);
+
+    return longestSubstringByRows(str1, str2);
+  }
+
+  /**
+   * Finds the longest common substring by dynamic programming, keeping only a single row of the
+   * table, over the shorter of both strings, so that memory is O(min(n, m)) rather than O(n * m).
+   */
+  static int[] longestSubstringByRows(String str1, String str2) {
+    // num[j + 1] is the length of the common suffix of the prefixes of both strings that end at
+    // outer index i and inner index j; iterating j backwards lets the row be updated in place.
+    boolean outerIsStr1 = str1.length() >= str2.length();
+    String outer = outerIsStr1 ? str1 : str2;
+    String inner = outerIsStr1 ? str2 : str1;
+    int[] num = new int[inner.length() + 1];
     int maxlen = 0;
-    int lastSubstrBegin = 0;
     int endIndex = 0;
-    for (int i = 0; i < str1.length(); i++) {
-      for (int j = 0; j < str2.length(); j++) {
-        if (str1.charAt(i) == str2.charAt(j)) {
-          if ((i == 0) || (j == 0))
-            num[i][j] = 1;
-          else
-            num[i][j] = 1 + num[i - 1][j - 1];
-
-          if (num[i][j] > maxlen) {
-            maxlen = num[i][j];
-            // generate substring from str1 => i
-            lastSubstrBegin = i - num[i][j] + 1;
-            endIndex = i + 1;
-          }
+    for (int i = 0; i < outer.length(); i++) {
+      char c = outer.charAt(i);
+      for (int j = inner.length() - 1; j >= 0; j--) {
+        if (c != inner.charAt(j)) {
+          num[j + 1] = 0;
+          continue;
+        }
+        int len = num[j] + 1;
+        num[j + 1] = len;
+        // Track where the substring ends in str1, preferring the match that ends first there.
+        int str1End = outerIsStr1 ? i + 1 : j + 1;
+        if (len > maxlen || (len == maxlen && str1End < endIndex)) {
+          maxlen = len;
+          endIndex = str1End;
         }
       }
     }
-    return new int[]{lastSubstrBegin, endIndex};
+    return new int[]{endIndex - maxlen, endIndex};
   }
 
   static String estimateDate(String url) {
@@ -0,0 +1,169 @@
+package com.chimbori.crux.common;
+
+import java.util.Arrays;
+
+/**
+ * The suffix automaton of a string, i.e. the smallest automaton that accepts exactly its
+ * substrings, built in time and memory linear in the string’s length. Running another string
+ * through it finds their longest common substring in linear time as well, which is what
+ * {@link StringUtils#getLongestSubstring(String, String)} uses it for on long inputs.
+ *
+ * A string of length n yields at most 2n states and 3n transitions. All of them are kept in flat
+ * arrays: each state’s transitions form a linked list, for copying them when a state is cloned,
+ * and are indexed by (state, character) in an open-addressing hash table, for lookups.
+ */
+class SuffixAutomaton {
+  private static final int NONE = -1;
+
+  // Per state.
+  private final int[] length;
+  private final int[] link;
+  private final int[] firstEdge;
+  private int states = 0;
+
+  // Per transition.
+  private final char[] edgeChar;
+  private final int[] edgeTarget;
+  private final int[] nextEdge;
+  private int edges = 0;
+
+  // Hash table from (state, character) to the index of the transition, or NONE.
+  private final long[] tableKeys;
+  private final int[] tableEdges;
+  private final int tableMask;
+
+  SuffixAutomaton(String str) {
+    int maxStates = Math.max(2, 2 * str.length());
+    length = new int[maxStates];
+    link = new int[maxStates];
+    firstEdge = new int[maxStates];
+
+    int maxEdges = Math.max(1, 3 * str.length());
+    edgeChar = new char[maxEdges];
+    edgeTarget = new int[maxEdges];
+    nextEdge = new int[maxEdges];
+
+    int tableSize = Integer.highestOneBit(maxEdges * 2 - 1) << 1;
+    tableKeys = new long[tableSize];
+    tableEdges = new int[tableSize];
+    Arrays.fill(tableEdges, NONE);
+    tableMask = tableSize - 1;
+
+    int last = newState(0, NONE);
+    for (int i = 0; i < str.length(); i++) {
+      last = extend(last, str.charAt(i));
+    }
+  }
+
+  /**
+   * @return the longest substring of {@code str} that is also a substring of the automaton’s
+   * string, as {@code str.substring(result[0], result[1])}; if several are equally long, the one
+   * that ends first in {@code str}
+   */
+  int[] longestCommonSubstring(String str) {
+    int state = 0;
+    int currentLength = 0;
+    int maxLength = 0;
+    int endIndex = 0;
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      while (state != 0 && target(state, c) == NONE) {
+        state = link[state];
+        currentLength = length[state];
+      }
+      int next = target(state, c);
+      if (next != NONE) {
+        state = next;
+        currentLength++;
+      }
+      if (currentLength > maxLength) {
+        maxLength = currentLength;
+        endIndex = i + 1;
+      }
+    }
+    return new int[]{endIndex - maxLength, endIndex};
+  }
+
+  /**
+   * Appends a character to the automaton’s string; {@code last} is the state for the whole string
+   * before, and the state for the whole string after is returned.
+   */
+  private int extend(int last, char c) {
+    int current = newState(length[last] + 1, NONE);
+    int p = last;
+    while (p != NONE && target(p, c) == NONE) {
+      addEdge(p, c, current);
+      p = link[p];
+    }
+    if (p == NONE) {
+      link[current] = 0;
+      return current;
+    }
+    int q = target(p, c);
+    if (length[p] + 1 == length[q]) {
+      link[current] = q;
+      return current;
+    }
+    int clone = newState(length[p] + 1, link[q]);
+    for (int e = firstEdge[q]; e != NONE; e = nextEdge[e]) {
+      addEdge(clone, edgeChar[e], edgeTarget[e]);
+    }
+    while (p != NONE && target(p, c) == q) {
+      setTarget(p, c, clone);
+      p = link[p];
+    }
+    link[q] = clone;
+    link[current] = clone;
+    return current;
+  }
+
+  private int newState(int stateLength, int stateLink) {
+    length[states] = stateLength;
+    link[states] = stateLink;
+    firstEdge[states] = NONE;
+    return states++;
+  }
+
+  private void addEdge(int state, char c, int target) {
+    int e = edges++;
+    edgeChar[e] = c;
+    edgeTarget[e] = target;
+    nextEdge[e] = firstEdge[state];
+    firstEdge[state] = e;
+    long key = key(state, c);
+    int slot = slot(key);
+    while (tableEdges[slot] != NONE) {
+      slot = (slot + 1) & tableMask;
+    }
+    tableKeys[slot] = key;
+    tableEdges[slot] = e;
+  }
+
+  private int target(int state, char c) {
+    int e = edge(state, c);
+    return e != NONE ? edgeTarget[e] : NONE;
+  }
+
+  private void setTarget(int state, char c, int target) {
+    edgeTarget[edge(state, c)] = target;
+  }
+
+  private int edge(int state, char c) {
+    long key = key(state, c);
+    for (int slot = slot(key); tableEdges[slot] != NONE; slot = (slot + 1) & tableMask) {
+      if (tableKeys[slot] == key) {
+        return tableEdges[slot];
+      }
+    }
+    return NONE;
+  }
+
+  private static long key(int state, char c) {
+    return ((long) state << 16) | c;
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32) & tableMask;
+  }
+}
@@ -1,6 +1,6 @@
 package com.chimbori.crux.images;
 
-import com.chimbori.crux.common.HeuristicString;
+import com.chimbori.crux.common.FirstNonEmpty;
 import com.chimbori.crux.common.StringUtils;
 
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -38,19 +38,32 @@ public class ImageUrlExtractor {
   }
 
   public ImageUrlExtractor findImage() {
-    try {
-      imageUrl = new HeuristicString(root.attr("src"))
-          .or(root.attr("data-src"))
-          .or(anyChildTagWithAttr(root.select("img"), "src"))
-          .or(anyChildTagWithAttr(root.select("img"), "data-src"))
-          .or(anyChildTagWithAttr(root.select("*"), "src"))
-          .or(anyChildTagWithAttr(root.select("*"), "data-src"))
-          .or(parseImageUrlFromStyleAttr(root.select("[role=img]")))
-          .or(parseImageUrlFromStyleAttr(root.select("*")))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      imageUrl = candidateFound.candidate;
-    }
+    imageUrl = new FirstNonEmpty()
+        .or(root.attr("src"))
+        .or(root.attr("data-src"))
+        .or(new FirstNonEmpty.Candidate() {
+          @Override
+          public String get() {
+            Elements images = root.select("img");
+            return new FirstNonEmpty()
+                .or(anyChildTagWithAttr(images, "src"))
+                .or(anyChildTagWithAttr(images, "data-src"))
+                .toString();
+          }
+        })
+        .or(new FirstNonEmpty.Candidate() {
+          @Override
+          public String get() {
+            Elements all = root.select("*");
+            return new FirstNonEmpty()
+                .or(anyChildTagWithAttr(all, "src"))
+                .or(anyChildTagWithAttr(all, "data-src"))
+                .or(parseImageUrlFromStyleAttr(root.select("[role=img]")))
+                .or(parseImageUrlFromStyleAttr(all))
+                .toString();
+          }
+        })
+        .toString();
     imageUrl = StringUtils.makeAbsoluteUrl(url.toString(), imageUrl);
     return this;
   }
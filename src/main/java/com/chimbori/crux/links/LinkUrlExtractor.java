@@ -1,6 +1,6 @@
 package com.chimbori.crux.links;
 
-import com.chimbori.crux.common.HeuristicString;
+import com.chimbori.crux.common.FirstNonEmpty;
 import com.chimbori.crux.common.StringUtils;
 
 import org.jsoup.nodes.Element;
@@ -31,13 +31,15 @@ public class LinkUrlExtractor {
   }
 
   public LinkUrlExtractor findLink() {
-    try {
-      linkUrl = new HeuristicString(root.attr("href"))
-          .or(anyChildTagWithAttr(root.select("*"), "href"))
-          .toString();
-    } catch (HeuristicString.CandidateFound candidateFound) {
-      linkUrl = candidateFound.candidate;
-    }
+    linkUrl = new FirstNonEmpty()
+        .or(root.attr("href"))
+        .or(new FirstNonEmpty.Candidate() {
+          @Override
+          public String get() {
+            return anyChildTagWithAttr(root.select("*"), "href");
+          }
+        })
+        .toString();
     linkUrl = StringUtils.makeAbsoluteUrl(url, linkUrl);
     return this;
   }
@@ -0,0 +1,230 @@
+package com.chimbori.crux.pipeline;
+
+import com.chimbori.crux.articles.Article;
+import com.chimbori.crux.articles.CruxEngine;
+import com.chimbori.crux.articles.PageInput;
+import com.chimbori.crux.common.CharsetConverter;
+import com.chimbori.crux.urls.CruxURL;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Connects URL heuristics, fetching, charset decoding, and article extraction: each URL is
+ * filtered with {@link CruxURL#isLikelyArticle()}, its redirects are resolved with
+ * {@link CruxURL#resolveRedirects()}, then it is fetched by a {@link PageFetcher}, decoded by
+ * {@link CharsetConverter}, and extracted by a {@link CruxEngine}.
+ *
+ * Fetching and extracting run on separate executors, so that many slow, blocking fetches can be
+ * in flight at once, while CPU-bound extraction stays on a small pool. By default, fetches run on
+ * a cached thread pool, and extraction on a fixed pool with one thread per processor; on runtimes
+ * with virtual threads, pass a virtual-thread-per-task executor to {@link #fetchExecutor} to keep
+ * tens of thousands of fetches in flight cheaply. Fetches to the same host are limited by
+ * {@link #maxConnectionsPerHost(int)}.
+ *
+ * <pre>
+ * new CruxPipeline().maxInFlight(1000).run(urls, new CruxPipeline.Listener() {
+ *   public void onResult(PipelineResult result) { ... }
+ * });
+ * </pre>
+ *
+ * Results are delivered, in order of completion, on the thread that calls
+ * {@link #run(Iterable, Listener)}, which blocks until all URLs are done.
+ */
+public class CruxPipeline {
+  private final PageFetcher fetcher;
+  private CruxEngine engine = new CruxEngine();
+  private ExecutorService fetchExecutor;
+  private ExecutorService extractExecutor;
+  private int maxInFlight = 256;
+  private int maxConnectionsPerHost = 4;
+
+  public interface Listener {
+    void onResult(PipelineResult result);
+  }
+
+  public CruxPipeline() {
+    this(new HttpUrlConnectionFetcher());
+  }
+
+  public CruxPipeline(PageFetcher fetcher) {
+    this.fetcher = fetcher;
+  }
+
+  public CruxPipeline engine(CruxEngine engine) {
+    this.engine = engine;
+    return this;
+  }
+
+  /**
+   * Runs fetches, including reading and decoding each response, on this executor, which is not
+   * shut down by the pipeline. Tasks on it block on the network, and on per-host limits.
+   */
+  public CruxPipeline fetchExecutor(ExecutorService fetchExecutor) {
+    this.fetchExecutor = fetchExecutor;
+    return this;
+  }
+
+  /**
+   * Runs extraction on this executor, which is not shut down by the pipeline. Tasks on it never
+   * block, so it should be bounded by the number of processors.
+   */
+  public CruxPipeline extractExecutor(ExecutorService extractExecutor) {
+    this.extractExecutor = extractExecutor;
+    return this;
+  }
+
+  /**
+   * Limits the number of URLs that have been taken from the input, but whose results have not been
+   * delivered yet. Defaults to 256.
+   */
+  public CruxPipeline maxInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException();
+    }
+    this.maxInFlight = maxInFlight;
+    return this;
+  }
+
+  /**
+   * Limits the number of concurrent fetches from any one host, within each call to
+   * {@link #run(Iterable, Listener)}; a change only applies to later calls. Defaults to 4.
+   */
+  public CruxPipeline maxConnectionsPerHost(int maxConnectionsPerHost) {
+    if (maxConnectionsPerHost < 1) {
+      throw new IllegalArgumentException();
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    return this;
+  }
+
+  /**
+   * Runs all URLs through the pipeline, passing each result to the listener. URLs are taken from
+   * the input lazily, as earlier ones complete.
+   */
+  public void run(Iterable<String> urls, Listener listener) throws InterruptedException {
+    ExecutorService fetchExecutor = this.fetchExecutor != null
+        ? this.fetchExecutor : Executors.newCachedThreadPool();
+    ExecutorService extractExecutor = this.extractExecutor != null
+        ? this.extractExecutor : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      run(urls, listener, fetchExecutor, extractExecutor);
+    } finally {
+      if (fetchExecutor != this.fetchExecutor) {
+        fetchExecutor.shutdown();
+      }
+      if (extractExecutor != this.extractExecutor) {
+        extractExecutor.shutdown();
+      }
+    }
+  }
+
+  private void run(Iterable<String> urls, Listener listener, Executor fetchExecutor, Executor extractExecutor)
+      throws InterruptedException {
+    BlockingQueue<PipelineResult> completed = new LinkedBlockingQueue<>();
+    HostPermits hostPermits = new HostPermits(maxConnectionsPerHost);
+    int inFlight = 0;
+
+    Iterator<String> input = urls.iterator();
+    while (true) {
+      while (input.hasNext() && inFlight < maxInFlight) {
+        String inputUrl = input.next();
+        CruxURL url = CruxURL.parse(inputUrl);
+        if (url == null || !url.isWebScheme() || !url.isLikelyArticle()) {
+          listener.onResult(PipelineResult.skipped(inputUrl));
+          continue;
+        }
+        url.resolveRedirects();
+
+        inFlight++;
+        try {
+          fetchExecutor.execute(new FetchTask(inputUrl, url.url, completed, hostPermits, extractExecutor));
+        } catch (RejectedExecutionException e) {
+          completed.add(PipelineResult.failed(inputUrl, url.toString(), e));
+        }
+      }
+      if (inFlight == 0) {
+        break;
+      }
+      listener.onResult(completed.take());
+      inFlight--;
+    }
+  }
+
+  private class FetchTask implements Runnable {
+    private final String inputUrl;
+    private final URL url;
+    private final BlockingQueue<PipelineResult> completed;
+    private final HostPermits hostPermits;
+    private final Executor extractExecutor;
+
+    FetchTask(String inputUrl, URL url, BlockingQueue<PipelineResult> completed, HostPermits hostPermits,
+              Executor extractExecutor) {
+      this.inputUrl = inputUrl;
+      this.url = url;
+      this.completed = completed;
+      this.hostPermits = hostPermits;
+      this.extractExecutor = extractExecutor;
+    }
+
+    @Override
+    public void run() {
+      final String finalUrl;
+      final String html;
+      String host = url.getHost().toLowerCase();
+      try {
+        hostPermits.acquire(host);
+      } catch (InterruptedException e) {
+        completed.add(PipelineResult.failed(inputUrl, url.toString(), e));
+        return;
+      }
+      try {
+        PageInput page = fetcher.fetch(url);
+        finalUrl = page.url;
+        html = readHtml(page);
+      } catch (Throwable t) {
+        completed.add(PipelineResult.failed(inputUrl, url.toString(), t));
+        return;
+      } finally {
+        hostPermits.release(host);
+      }
+
+      try {
+        extractExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Article article = engine.extract(finalUrl, html);
+              completed.add(PipelineResult.extracted(inputUrl, finalUrl, article));
+            } catch (Throwable t) {
+              completed.add(PipelineResult.failed(inputUrl, finalUrl, t));
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        completed.add(PipelineResult.failed(inputUrl, finalUrl, e));
+      }
+    }
+  }
+
+  private static String readHtml(PageInput page) throws IOException {
+    if (page.html != null) {
+      return page.html;
+    }
+    if (page.buffer != null) {
+      return new CharsetConverter().decode(page.buffer, page.contentType).toString();
+    }
+    try {
+      return new CharsetConverter().decode(page.stream, page.contentType).toString();
+    } finally {
+      page.stream.close();
+    }
+  }
+}
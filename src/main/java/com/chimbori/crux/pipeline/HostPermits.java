@@ -0,0 +1,78 @@
+package com.chimbori.crux.pipeline;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of concurrent fetches from each host. A host’s permits are only kept while
+ * some fetch holds or waits for one of them, so a crawl over any number of hosts only ever holds
+ * as many entries as there are fetches in flight.
+ *
+ * This class is thread safe.
+ */
+final class HostPermits {
+  private final int maxPerHost;
+  private final Map<String, Host> hosts = new HashMap<>();
+
+  private static final class Host {
+    final Semaphore permits;
+    int users = 0;  // Fetches that hold, or wait for, one of its permits.
+
+    Host(int maxPerHost) {
+      this.permits = new Semaphore(maxPerHost);
+    }
+  }
+
+  HostPermits(int maxPerHost) {
+    this.maxPerHost = maxPerHost;
+  }
+
+  /**
+   * Blocks until a permit for {@code host} is available. Every successful call must be followed by
+   * a call to {@link #release(String)}.
+   */
+  void acquire(String host) throws InterruptedException {
+    Host entry;
+    synchronized (hosts) {
+      entry = hosts.get(host);
+      if (entry == null) {
+        entry = new Host(maxPerHost);
+        hosts.put(host, entry);
+      }
+      entry.users++;
+    }
+    try {
+      entry.permits.acquire();
+    } catch (InterruptedException e) {
+      leave(host, entry);
+      throw e;
+    }
+  }
+
+  void release(String host) {
+    Host entry;
+    synchronized (hosts) {
+      entry = hosts.get(host);
+    }
+    entry.permits.release();
+    leave(host, entry);
+  }
+
+  /**
+   * @return the number of hosts with fetches in flight
+   */
+  int size() {
+    synchronized (hosts) {
+      return hosts.size();
+    }
+  }
+
+  private void leave(String host, Host entry) {
+    synchronized (hosts) {
+      if (--entry.users == 0) {
+        hosts.remove(host);
+      }
+    }
+  }
+}
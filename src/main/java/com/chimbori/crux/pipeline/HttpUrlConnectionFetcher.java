@@ -0,0 +1,52 @@
+package com.chimbori.crux.pipeline;
+
+import com.chimbori.crux.articles.PageInput;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * A {@link PageFetcher} based on {@link HttpURLConnection}, which follows HTTP redirects, and
+ * treats error responses as failures.
+ */
+public class HttpUrlConnectionFetcher implements PageFetcher {
+  private static final int DEFAULT_TIMEOUT_MS = 30 * 1000;
+
+  private final int timeoutMs;
+  private final String userAgent;
+
+  public HttpUrlConnectionFetcher() {
+    this(DEFAULT_TIMEOUT_MS, null);
+  }
+
+  /**
+   * @param timeoutMs used both as connect and as read timeout
+   * @param userAgent sent as the User-Agent header, unless null
+   */
+  public HttpUrlConnectionFetcher(int timeoutMs, String userAgent) {
+    this.timeoutMs = timeoutMs;
+    this.userAgent = userAgent;
+  }
+
+  @Override
+  public PageInput fetch(URL url) throws IOException {
+    URLConnection connection = url.openConnection();
+    connection.setConnectTimeout(timeoutMs);
+    connection.setReadTimeout(timeoutMs);
+    if (userAgent != null) {
+      connection.setRequestProperty("User-Agent", userAgent);
+    }
+    if (connection instanceof HttpURLConnection) {
+      HttpURLConnection httpConnection = (HttpURLConnection) connection;
+      httpConnection.setInstanceFollowRedirects(true);
+      int responseCode = httpConnection.getResponseCode();
+      if (responseCode >= 400) {
+        httpConnection.disconnect();
+        throw new IOException("HTTP " + responseCode + " for " + url);
+      }
+    }
+    return PageInput.fromStream(connection.getURL().toString(), connection.getInputStream(), connection.getContentType());
+  }
+}
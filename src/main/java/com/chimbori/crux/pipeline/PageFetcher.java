@@ -0,0 +1,20 @@
+package com.chimbori.crux.pipeline;
+
+import com.chimbori.crux.articles.PageInput;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Downloads pages for a {@link CruxPipeline}. Implementations can wrap any HTTP library; the
+ * default is {@link HttpUrlConnectionFetcher}. Implementations must be thread-safe, since the
+ * pipeline calls them from many threads at once.
+ */
+public interface PageFetcher {
+  /**
+   * @return the page’s final URL, after any HTTP redirects, and its undecoded body, which the
+   * pipeline reads and closes.
+   * @throws IOException if the page could not be fetched, including for HTTP error responses
+   */
+  PageInput fetch(URL url) throws IOException;
+}
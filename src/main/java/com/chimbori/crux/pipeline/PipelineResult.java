@@ -0,0 +1,54 @@
+package com.chimbori.crux.pipeline;
+
+import com.chimbori.crux.articles.Article;
+
+/**
+ * The outcome of running one URL through a {@link CruxPipeline}.
+ */
+public final class PipelineResult {
+  public enum Status {
+    /** The page was fetched, and its article extracted. */
+    EXTRACTED,
+    /** The URL was invalid, not a web URL, or not likely to be an article, so it was not fetched. */
+    SKIPPED,
+    /** Fetching, decoding, or extracting the page failed; see {@link #error}. */
+    FAILED,
+  }
+
+  public final Status status;
+  /** The URL as it was passed to the pipeline. */
+  public final String inputUrl;
+  /** The URL after resolving redirects, both heuristically and via HTTP; null if skipped. */
+  public final String url;
+  public final Article article;
+  public final Throwable error;
+
+  private PipelineResult(Status status, String inputUrl, String url, Article article, Throwable error) {
+    this.status = status;
+    this.inputUrl = inputUrl;
+    this.url = url;
+    this.article = article;
+    this.error = error;
+  }
+
+  static PipelineResult extracted(String inputUrl, String url, Article article) {
+    return new PipelineResult(Status.EXTRACTED, inputUrl, url, article, null);
+  }
+
+  static PipelineResult skipped(String inputUrl) {
+    return new PipelineResult(Status.SKIPPED, inputUrl, null, null, null);
+  }
+
+  static PipelineResult failed(String inputUrl, String url, Throwable error) {
+    return new PipelineResult(Status.FAILED, inputUrl, url, null, error);
+  }
+
+  @Override
+  public String toString() {
+    return "PipelineResult{" +
+        "status=" + status +
+        ", inputUrl='" + inputUrl + '\'' +
+        (error == null ? "" : ", error=" + error) +
+        '}';
+  }
+}
@@ -0,0 +1,560 @@
+package com.chimbori.crux.warc;
+
+import com.chimbori.crux.articles.PageInput;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads the records of a WARC file one by one, either uncompressed ({@code .warc}), or as a series
+ * of concatenated gzip members ({@code .warc.gz}), which is detected from the first two bytes.
+ *
+ * The file is memory-mapped, a window of up to 1 GiB at a time. Records of an uncompressed file are
+ * sliced straight out of the mapping, so they are never copied. Each gzip member is inflated into
+ * a buffer of its own, which records are then sliced out of; a member normally holds a single
+ * record, but records split across members, or members holding several records, are read as well.
+ * Either way, a record stays valid after the reader has moved past it, or has been closed, so
+ * records can be handed to other threads while the next ones are read:
+ *
+ * <pre>
+ * WarcReader reader = WarcReader.open(file);
+ * try {
+ *   new CruxBatch().extractAll(reader.htmlPages(), executor, listener);
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ *
+ * This class is not thread safe.
+ */
+public class WarcReader implements Closeable {
+  private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final Charset ISO = Charset.forName("ISO-8859-1");
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final int windowSize;
+  private final boolean gzipped;
+
+  /**
+   * The bytes that records are parsed from: a window of the mapped file, or the decompressed
+   * contents of the last gzip member, preceded by any part of a record left over from before it.
+   */
+  private ByteBuffer data = ByteBuffer.allocate(0);
+
+  /**
+   * The offset in the file of the first byte of {@link #data}, if the file is not compressed.
+   */
+  private long dataOffset = 0;
+
+  // Only used for compressed files.
+  private ByteBuffer compressed = ByteBuffer.allocate(0);
+  private long compressedOffset = 0;
+  private long nextMemberOffset = 0;
+  private final Inflater inflater = new Inflater(true);
+  private final CRC32 crc = new CRC32();
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+
+  public static WarcReader open(File file) throws IOException {
+    FileInputStream stream = new FileInputStream(file);
+    try {
+      return new WarcReader(stream.getChannel(), DEFAULT_WINDOW_SIZE);
+    } catch (IOException | RuntimeException e) {
+      try {
+        stream.close();
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+  }
+
+  WarcReader(FileChannel channel, int windowSize) throws IOException {
+    this.channel = channel;
+    this.fileSize = channel.size();
+    this.windowSize = windowSize;
+    this.gzipped = fileSize >= 2 && isGzipMember(map(0, 2), 0);
+  }
+
+  /**
+   * @return the next record, or null at the end of the file
+   * @throws IOException if the file cannot be read, or is not a well-formed WARC file
+   */
+  public WarcRecord next() throws IOException {
+    while (true) {
+      skipLineBreaks();
+      if (!data.hasRemaining()) {
+        if (fill()) {
+          continue;
+        }
+        return null;
+      }
+
+      int start = data.position();
+      int blockStart = indexAfterBlankLine(data, start);
+      if (blockStart < 0) {
+        if (fill()) {
+          continue;
+        }
+        throw new IOException("Truncated WARC record header");
+      }
+      Map<String, String> headers = parseHeaders(data, start, blockStart, UTF8);
+      if (!headers.get("").startsWith("WARC/")) {
+        throw new IOException("Not a WARC record: " + headers.get(""));
+      }
+      long contentLength = parseContentLength(headers.get("Content-Length"));
+      if (blockStart + contentLength > data.limit()) {
+        if (fill()) {
+          continue;
+        }
+        throw new IOException("Truncated WARC record: " + headers.get("WARC-Record-ID"));
+      }
+
+      ByteBuffer block = slice(data, blockStart, (int) contentLength);
+      data.position(blockStart + (int) contentLength);
+      return newRecord(headers, block);
+    }
+  }
+
+  /**
+   * @return the remaining records that are {@link WarcRecord#isHtmlResponse() HTML responses}, as
+   * pages for {@link com.chimbori.crux.articles.CruxBatch}. Records are read only as the pages are
+   * iterated over, so the whole file is never held in memory; an {@link IOException} while reading
+   * is rethrown as an {@link IllegalStateException}.
+   */
+  public Iterable<PageInput> htmlPages() {
+    return new Iterable<PageInput>() {
+      @Override
+      public Iterator<PageInput> iterator() {
+        return new Iterator<PageInput>() {
+          private WarcRecord nextRecord;
+
+          @Override
+          public boolean hasNext() {
+            try {
+              while (nextRecord == null) {
+                WarcRecord record = WarcReader.this.next();
+                if (record == null) {
+                  return false;
+                }
+                if (record.isHtmlResponse()) {
+                  nextRecord = record;
+                }
+              }
+              return true;
+            } catch (IOException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+
+          @Override
+          public PageInput next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            PageInput page = nextRecord.toPageInput();
+            nextRecord = null;
+            return page;
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    inflater.end();
+    channel.close();
+  }
+
+  private void skipLineBreaks() {
+    while (data.hasRemaining()) {
+      byte b = data.get(data.position());
+      if (b != '\r' && b != '\n') {
+        break;
+      }
+      data.position(data.position() + 1);
+    }
+  }
+
+  /**
+   * Makes more bytes available after the current position of {@link #data}.
+   *
+   * @return false at the end of the file
+   */
+  private boolean fill() throws IOException {
+    return gzipped ? inflateMember() : mapNextWindow();
+  }
+
+  private boolean mapNextWindow() throws IOException {
+    long offset = dataOffset + data.position();
+    if (dataOffset + data.limit() >= fileSize) {
+      return false;
+    }
+    if (data.position() == 0 && data.limit() == windowSize) {
+      throw new IOException("WARC record at " + offset + " is larger than " + windowSize + " bytes");
+    }
+    data = map(offset, Math.min(windowSize, fileSize - offset));
+    dataOffset = offset;
+    return true;
+  }
+
+  /**
+   * Inflates the next gzip member into a new buffer, after the remaining bytes of {@link #data}.
+   * Buffers are never reused, so records sliced out of earlier members remain valid.
+   *
+   * @return false if there are no more members
+   */
+  private boolean inflateMember() throws IOException {
+    if (nextMemberOffset >= fileSize) {
+      return false;
+    }
+    long memberOffset = nextMemberOffset;
+    long offset = skipGzipHeader(memberOffset);
+
+    int leftover = data.remaining();
+    byte[] out = new byte[leftover + CHUNK_SIZE];
+    data.get(out, 0, leftover);
+    int length = leftover;
+    inflater.reset();
+    crc.reset();
+    try {
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          ByteBuffer in = compressedAt(offset);
+          int n = Math.min(chunk.length, in.remaining());
+          if (n == 0) {
+            throw new IOException("Truncated gzip member at " + memberOffset);
+          }
+          in.get(chunk, 0, n);
+          inflater.setInput(chunk, 0, n);
+          offset += n;
+        }
+        if (length == out.length) {
+          out = Arrays.copyOf(out, out.length * 2);
+        }
+        int n = inflater.inflate(out, length, out.length - length);
+        if (n == 0 && inflater.needsDictionary()) {
+          throw new IOException("Corrupt gzip member at " + memberOffset);
+        }
+        crc.update(out, length, n);
+        length += n;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt gzip member at " + memberOffset, e);
+    }
+    offset -= inflater.getRemaining();
+
+    ByteBuffer trailer = compressedAt(offset);
+    if (trailer.remaining() < 8) {
+      throw new IOException("Truncated gzip member at " + memberOffset);
+    }
+    if (readIntLittleEndian(trailer) != (int) crc.getValue()
+        || readIntLittleEndian(trailer) != length - leftover) {
+      throw new IOException("Corrupt gzip member at " + memberOffset);
+    }
+    nextMemberOffset = offset + 8;
+    data = ByteBuffer.wrap(out, 0, length);
+    return true;
+  }
+
+  /**
+   * @return the offset of the compressed data of the gzip member at {@code memberOffset}
+   */
+  private long skipGzipHeader(long memberOffset) throws IOException {
+    ByteBuffer in = compressedAt(memberOffset);
+    if (!isGzipMember(in, in.position())) {
+      throw new IOException("Not a gzip member at " + memberOffset);
+    }
+    int start = in.position();
+    try {
+      in.position(start + 3);
+      int flags = in.get() & 0xff;
+      in.position(start + 10);  // Skips the modification time, extra flags, and operating system.
+      if ((flags & 4) != 0) {  // FEXTRA
+        int extraLength = (in.get() & 0xff) | (in.get() & 0xff) << 8;
+        in.position(in.position() + extraLength);
+      }
+      if ((flags & 8) != 0) {  // FNAME
+        while (in.get() != 0) {
+        }
+      }
+      if ((flags & 16) != 0) {  // FCOMMENT
+        while (in.get() != 0) {
+        }
+      }
+      if ((flags & 2) != 0) {  // FHCRC
+        in.position(in.position() + 2);
+      }
+    } catch (RuntimeException e) {  // Thrown for positions past the end of the window.
+      throw new IOException("Truncated gzip header at " + memberOffset, e);
+    }
+    return memberOffset + in.position() - start;
+  }
+
+  /**
+   * @return the mapped window of the compressed file, positioned at {@code offset}; it is remapped
+   * if fewer than a chunk of bytes would remain in it before the end of the file.
+   */
+  private ByteBuffer compressedAt(long offset) throws IOException {
+    long windowEnd = compressedOffset + compressed.limit();
+    if (offset < compressedOffset || offset > windowEnd
+        || (windowEnd - offset < CHUNK_SIZE && windowEnd < fileSize)) {
+      compressed = map(offset, Math.min(windowSize, fileSize - offset));
+      compressedOffset = offset;
+    }
+    compressed.position((int) (offset - compressedOffset));
+    return compressed;
+  }
+
+  private ByteBuffer map(long offset, long length) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+  }
+
+  private static boolean isGzipMember(ByteBuffer buffer, int index) {
+    return buffer.limit() - index >= 2
+        && (buffer.get(index) & 0xff) == 0x1f && (buffer.get(index + 1) & 0xff) == 0x8b;
+  }
+
+  private static int readIntLittleEndian(ByteBuffer buffer) {
+    return (buffer.get() & 0xff) | (buffer.get() & 0xff) << 8
+        | (buffer.get() & 0xff) << 16 | (buffer.get() & 0xff) << 24;
+  }
+
+  /**
+   * Parses the HTTP response in the block of a {@code response} record, if it holds one.
+   */
+  private static WarcRecord newRecord(Map<String, String> headers, ByteBuffer block) {
+    String contentType = headers.get("Content-Type");
+    if (!"response".equals(headers.get("WARC-Type"))
+        || contentType == null || !contentType.toLowerCase().startsWith("application/http")) {
+      return new WarcRecord(headers, block, -1, null, block);
+    }
+    int bodyStart = indexAfterBlankLine(block, 0);
+    if (bodyStart < 0) {
+      return new WarcRecord(headers, block, -1, null, block);
+    }
+    Map<String, String> httpHeaders = parseHeaders(block, 0, bodyStart, ISO);
+    int status = parseStatus(httpHeaders.get(""));
+    ByteBuffer body = slice(block, bodyStart, block.limit() - bodyStart);
+    try {
+      String transferEncoding = httpHeaders.get("Transfer-Encoding");
+      if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+        body = dechunk(body);
+      }
+      String contentEncoding = httpHeaders.get("Content-Encoding");
+      if (contentEncoding != null) {
+        contentEncoding = contentEncoding.trim().toLowerCase();
+        if (contentEncoding.equals("gzip") || contentEncoding.equals("x-gzip")) {
+          body = readFully(new GZIPInputStream(new ByteBufferInputStream(body)));
+        } else if (contentEncoding.equals("deflate")) {
+          body = readFully(new InflaterInputStream(new ByteBufferInputStream(body)));
+        }
+      }
+    } catch (IOException e) {
+      // The body is malformed; it is passed on as stored, which is as good as it gets.
+    }
+    return new WarcRecord(headers, block, status, httpHeaders.get("Content-Type"), body);
+  }
+
+  /**
+   * @return the status code of an HTTP status line such as {@code HTTP/1.1 200 OK}, or -1
+   */
+  private static int parseStatus(String statusLine) {
+    if (statusLine == null || !statusLine.startsWith("HTTP/")) {
+      return -1;
+    }
+    String[] parts = statusLine.split(" +");
+    if (parts.length < 2) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(parts[1]);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static long parseContentLength(String contentLength) throws IOException {
+    try {
+      long length = Long.parseLong(contentLength);
+      if (length >= 0 && length <= Integer.MAX_VALUE) {
+        return length;
+      }
+    } catch (NumberFormatException e) {
+      // Handled below.
+    }
+    throw new IOException("Invalid WARC Content-Length: " + contentLength);
+  }
+
+  /**
+   * Parses the header lines of a WARC record or HTTP message, between {@code start} and
+   * {@code end}. The first line, i.e. the version or status line, is stored under the empty name.
+   * Header names are case-insensitive, and continuation lines are appended to the previous value.
+   */
+  private static Map<String, String> parseHeaders(ByteBuffer buffer, int start, int end, Charset charset) {
+    byte[] bytes = new byte[end - start];
+    ByteBuffer source = buffer.duplicate();
+    source.position(start);
+    source.get(bytes);
+    String[] lines = new String(bytes, charset).split("\r?\n");
+
+    Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    String lastName = null;
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i];
+      if (i == 0) {
+        headers.put("", line.trim());
+      } else if (!line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t') && lastName != null) {
+        headers.put(lastName, headers.get(lastName) + " " + line.trim());
+      } else {
+        int colon = line.indexOf(':');
+        if (colon > 0) {
+          lastName = line.substring(0, colon).trim();
+          String value = line.substring(colon + 1).trim();
+          if (lastName.equalsIgnoreCase("WARC-Target-URI") && value.startsWith("<") && value.endsWith(">")) {
+            value = value.substring(1, value.length() - 1);  // As in the examples of the WARC 1.0 spec.
+          }
+          headers.put(lastName, value);
+        }
+      }
+    }
+    return headers;
+  }
+
+  /**
+   * @return the index right after the first empty line at or after {@code start}, i.e. after
+   * {@code \r\n\r\n} or {@code \n\n}, or -1 if there is none before the limit of the buffer
+   */
+  private static int indexAfterBlankLine(ByteBuffer buffer, int start) {
+    int limit = buffer.limit();
+    for (int i = start; i < limit - 1; i++) {
+      if (buffer.get(i) == '\n') {
+        if (buffer.get(i + 1) == '\n') {
+          return i + 2;
+        }
+        if (buffer.get(i + 1) == '\r' && i + 2 < limit && buffer.get(i + 2) == '\n') {
+          return i + 3;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int start, int length) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(start + length);
+    slice.position(start);
+    return slice.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Decodes an HTTP body sent with {@code Transfer-Encoding: chunked}, ignoring chunk extensions
+   * and trailers.
+   */
+  private static ByteBuffer dechunk(ByteBuffer body) throws IOException {
+    ByteBuffer in = body.duplicate();
+    byte[] out = new byte[in.remaining()];
+    int length = 0;
+    while (true) {
+      StringBuilder sizeLine = new StringBuilder();
+      while (true) {
+        if (!in.hasRemaining()) {
+          throw new IOException("Truncated chunk size");
+        }
+        char c = (char) in.get();
+        if (c == '\n') {
+          break;
+        }
+        sizeLine.append(c);
+      }
+      int semicolon = sizeLine.indexOf(";");
+      String size = (semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine.toString()).trim();
+      int chunkSize;
+      try {
+        chunkSize = Integer.parseInt(size, 16);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid chunk size: " + size);
+      }
+      if (chunkSize == 0) {
+        break;
+      }
+      if (chunkSize < 0 || chunkSize > in.remaining()) {
+        throw new IOException("Truncated chunk");
+      }
+      in.get(out, length, chunkSize);
+      length += chunkSize;
+      if (in.hasRemaining() && in.get(in.position()) == '\r') {
+        in.get();
+      }
+      if (in.hasRemaining() && in.get(in.position()) == '\n') {
+        in.get();
+      }
+    }
+    return ByteBuffer.wrap(out, 0, length).slice();
+  }
+
+  private static ByteBuffer readFully(InputStream in) throws IOException {
+    try {
+      byte[] out = new byte[CHUNK_SIZE];
+      int length = 0;
+      int n;
+      while ((n = in.read(out, length, out.length - length)) >= 0) {
+        length += n;
+        if (length == out.length) {
+          out = Arrays.copyOf(out, out.length * 2);
+        }
+      }
+      return ByteBuffer.wrap(out, 0, length).slice();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+  }
+}
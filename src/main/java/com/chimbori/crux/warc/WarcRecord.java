@@ -0,0 +1,87 @@
+package com.chimbori.crux.warc;
+
+import com.chimbori.crux.articles.PageInput;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * A single record of a WARC file, as read by {@link WarcReader}.
+ *
+ * Its {@link #block} is a read-only slice of the memory-mapped file, or of the decompressed gzip
+ * member it came from, so nothing is copied. For {@code response} records that hold an HTTP
+ * response, the status line and headers are parsed, and {@link #payload} is just the response body;
+ * it is only copied if the body had to be de-chunked or decompressed.
+ */
+public final class WarcRecord {
+  /**
+   * The {@code WARC-Type} of the record, e.g. {@code response}, {@code request}, or
+   * {@code warcinfo}.
+   */
+  public final String type;
+
+  /**
+   * The {@code WARC-Target-URI} of the record, or null if it has none.
+   */
+  public final String targetUri;
+
+  /**
+   * The record’s content block, exactly as stored in the file.
+   */
+  public final ByteBuffer block;
+
+  /**
+   * The HTTP status code, or -1 if the record does not hold an HTTP response.
+   */
+  public final int httpStatus;
+
+  /**
+   * The HTTP {@code Content-Type} header, or null if the record does not hold an HTTP response, or
+   * the response had none.
+   */
+  public final String httpContentType;
+
+  /**
+   * The HTTP response body if the record holds an HTTP response, otherwise the same as
+   * {@link #block}.
+   */
+  public final ByteBuffer payload;
+
+  private final Map<String, String> headers;
+
+  WarcRecord(Map<String, String> headers, ByteBuffer block, int httpStatus, String httpContentType, ByteBuffer payload) {
+    this.headers = headers;
+    this.type = headers.get("WARC-Type");
+    this.targetUri = headers.get("WARC-Target-URI");
+    this.block = block;
+    this.httpStatus = httpStatus;
+    this.httpContentType = httpContentType;
+    this.payload = payload;
+  }
+
+  /**
+   * @return the value of a WARC header of this record, looked up case-insensitively, or null
+   */
+  public String header(String name) {
+    return headers.get(name);
+  }
+
+  /**
+   * @return whether this record is a successful HTTP response of an HTML page, i.e. one worth
+   * extracting an article from. A response without a {@code Content-Type} is assumed to be HTML.
+   */
+  public boolean isHtmlResponse() {
+    if (!"response".equals(type) || targetUri == null || httpStatus < 200 || httpStatus >= 300) {
+      return false;
+    }
+    return httpContentType == null || httpContentType.toLowerCase().contains("html");
+  }
+
+  /**
+   * @return the response body as a page for {@link com.chimbori.crux.articles.CruxBatch}, to be
+   * decoded with the charset of its HTTP {@code Content-Type}, if it declares one.
+   */
+  public PageInput toPageInput() {
+    return PageInput.fromBuffer(targetUri, payload, httpContentType);
+  }
+}
@@ -0,0 +1,140 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.CharsetConverter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArticleCodecTest {
+  private static final String[] TEST_FILES = {"npr.html", "nyt.html", "techcrunch.html", "bbc.html", "blogger.html"};
+
+  @Test
+  public void testRoundTripsExtractedArticles() throws Exception {
+    for (String testFile : TEST_FILES) {
+      Article expected = extract(testFile);
+      byte[] record = ArticleCodec.encode(expected);
+      ByteBuffer document = ArticleCodec.field(ByteBuffer.wrap(record), ArticleCodec.Field.DOCUMENT);
+      expected.document.outputSettings().prettyPrint(false);
+      assertTrue(testFile, document.remaining() < expected.document.html().getBytes("UTF-8").length);
+      expected.document.outputSettings().prettyPrint(true);
+
+      Article actual = ArticleCodec.decode(ByteBuffer.wrap(record));
+      assertSameArticle(testFile, expected, actual);
+      assertArrayEquals(testFile, record, ArticleCodec.encode(actual));
+    }
+  }
+
+  @Test
+  public void testReadsSingleFieldsWithoutCopying() throws Exception {
+    Article article = extract("npr.html");
+    article.title = "Ünïcödé 📰 title";
+    byte[] bytes = ArticleCodec.encode(article);
+    ByteBuffer record = ByteBuffer.allocateDirect(bytes.length + 3);
+    record.put(new byte[3]).put(bytes).position(3);
+
+    assertEquals(article.title, ArticleCodec.string(record, ArticleCodec.Field.TITLE));
+    assertEquals(article.url, ArticleCodec.string(record, ArticleCodec.Field.URL));
+    assertEquals(3, record.position());
+
+    ByteBuffer simHash = ArticleCodec.field(record, ArticleCodec.Field.SIM_HASH);
+    assertEquals(8, simHash.remaining());
+    assertEquals(article.simHash, simHash.getLong());
+    assertTrue(simHash.isDirect());
+
+    article.document = null;
+    assertNull(ArticleCodec.field(ByteBuffer.wrap(ArticleCodec.encode(article)), ArticleCodec.Field.DOCUMENT));
+  }
+
+  @Test
+  public void testStreamsRecords() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ArticleCodec.Writer writer = new ArticleCodec.Writer(bytes);
+    Article[] articles = new Article[TEST_FILES.length];
+    for (int i = 0; i < TEST_FILES.length; i++) {
+      articles[i] = extract(TEST_FILES[i]);
+      writer.write(articles[i]);
+    }
+    writer.close();
+
+    ArticleCodec.Reader reader = new ArticleCodec.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+    for (int i = 0; i < TEST_FILES.length; i++) {
+      assertSameArticle(TEST_FILES[i], articles[i], reader.read());
+    }
+    assertNull(reader.read());
+
+    byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+    reader = new ArticleCodec.Reader(new ByteArrayInputStream(truncated));
+    for (int i = 0; i < TEST_FILES.length - 1; i++) {
+      reader.readRecord();
+    }
+    try {
+      reader.readRecord();
+      fail();
+    } catch (EOFException expected) {
+    }
+  }
+
+  @Test
+  public void testRejectsNewerVersions() {
+    byte[] record = ArticleCodec.encode(new CruxEngine().extract("http://example.com/", "<p>Hello</p>"));
+    record[0] = (byte) (ArticleCodec.VERSION + 1);
+    try {
+      ArticleCodec.decode(ByteBuffer.wrap(record));
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testRetainedTagsAndAttributesHaveIds() {
+    assertTrue(new HashSet<>(Arrays.asList(ArticleCodec.TAGS)).containsAll(Postprocessor.RETAIN_TAGS));
+    assertTrue(new HashSet<>(Arrays.asList(ArticleCodec.ATTRIBUTES)).containsAll(Postprocessor.ATTRIBUTES_TO_RETAIN_IN_HTML));
+  }
+
+  private static Article extract(String testFile) throws Exception {
+    String html = CharsetConverter.readStream(new FileInputStream(new File("test_data/" + testFile))).content;
+    return new CruxEngine().extract("http://example.com/" + testFile, html);
+  }
+
+  private static void assertSameArticle(String message, Article expected, Article actual) {
+    assertEquals(message, expected.url, actual.url);
+    assertEquals(message, expected.title, actual.title);
+    assertEquals(message, expected.description, actual.description);
+    assertEquals(message, expected.siteName, actual.siteName);
+    assertEquals(message, expected.canonicalUrl, actual.canonicalUrl);
+    assertEquals(message, expected.imageUrl, actual.imageUrl);
+    assertEquals(message, expected.faviconUrl, actual.faviconUrl);
+    assertEquals(message, expected.keywords == null ? null : expected.keywords.toString(),
+        actual.keywords == null ? null : actual.keywords.toString());
+    assertEquals(message, expected.images.size(), actual.images.size());
+    for (int i = 0; i < expected.images.size(); i++) {
+      Image expectedImage = expected.images.get(i);
+      Image actualImage = actual.images.get(i);
+      assertEquals(message, expectedImage.src, actualImage.src);
+      assertEquals(message, expectedImage.title, actualImage.title);
+      assertEquals(message, expectedImage.alt, actualImage.alt);
+      assertEquals(message, expectedImage.weight, actualImage.weight);
+      assertEquals(message, expectedImage.width, actualImage.width);
+      assertEquals(message, expectedImage.height, actualImage.height);
+      assertEquals(message, expectedImage.noFollow, actualImage.noFollow);
+      assertNull(message, actualImage.element);
+    }
+    assertEquals(message, expected.document.outerHtml(), actual.document.outerHtml());
+    assertEquals(message, expected.simHash, actual.simHash);
+    assertArrayEquals(message, expected.paragraphSimHashes, actual.paragraphSimHashes);
+  }
+}
@@ -1,8 +1,17 @@
 package com.chimbori.crux.articles;
 
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.EnumSet;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ArticleExtractorTest {
   private static final String EXAMPLE_URL = "http://example.com/";
@@ -47,4 +56,57 @@ public class ArticleExtractorTest {
         "<div>Default Text but longer that’s still longer than our minimum text size limits</div>").extractContent().article();
     assertEquals("Default Text but longer that’s still longer than our minimum text size limits", article.document.text());
   }
+
+  @Test
+  public void testThatScoresAreNotWrittenToTheDocument() {
+    Document document = Jsoup.parse("<div class=\"content\"><p>Text that has to be longer than X characters so it’s not stripped out for being too short.</p>" +
+        "<p>More text that has to be longer than X characters so it’s not stripped out for being too short.</p></div>", EXAMPLE_URL);
+    new ArticleExtractor(EXAMPLE_URL, document).extractContent();
+    assertTrue(document.select("[gravityScore]").isEmpty());
+  }
+
+  @Test
+  public void testExtractOnlyRequestedMetadataFields() {
+    String html = "<html><head><title>Title</title>" +
+        "<meta name=\"description\" content=\"Description\">" +
+        "<meta name=\"keywords\" content=\"a, b\">" +
+        "<link rel=\"canonical\" href=\"http://example.com/canonical\">" +
+        "</head><body></body></html>";
+
+    Article article = ArticleExtractor.with(EXAMPLE_URL, html)
+        .extractMetadata(EnumSet.of(MetadataField.TITLE, MetadataField.KEYWORDS))
+        .article();
+    assertEquals("Title", article.title);
+    assertEquals(Arrays.asList("a", "b"), article.keywords);
+    assertEquals("", article.description);
+    assertEquals(EXAMPLE_URL, article.canonicalUrl);
+
+    article = ArticleExtractor.with(EXAMPLE_URL, html).extractMetadata().article();
+    assertEquals("Title", article.title);
+    assertEquals("Description", article.description);
+    assertEquals("http://example.com/canonical", article.canonicalUrl);
+  }
+
+  @Test
+  public void testExtractFromBytes() throws Exception {
+    String html = "<html><head><meta charset=\"utf-8\"><title>Caf\u00e9</title></head><body><div><p>" +
+        "Ein Caf\u00e9 ist ein Lokal, in dem vor allem Kaffee und Kuchen serviert werden, und es ist " +
+        "oft ein Ort, an dem man sich trifft, um zu reden, zu lesen, oder einfach nur die Zeit zu " +
+        "vertreiben, w\u00e4hrend drau\u00dfen die Stra\u00dfenbahnen vorbeifahren.</p></div></body></html>";
+    byte[] bytes = html.getBytes("UTF-8");
+    Article expected = ArticleExtractor.with(EXAMPLE_URL, html).extractMetadata().extractContent().article();
+
+    Article fromStream = ArticleExtractor.from(EXAMPLE_URL, new ByteArrayInputStream(bytes)).extractMetadata().extractContent().article();
+    Article fromChannel = ArticleExtractor.from(EXAMPLE_URL, Channels.newChannel(new ByteArrayInputStream(bytes))).extractMetadata().extractContent().article();
+    Article fromBuffer = ArticleExtractor.from(EXAMPLE_URL, ByteBuffer.wrap(bytes)).extractMetadata().extractContent().article();
+    for (Article article : Arrays.asList(fromStream, fromChannel, fromBuffer)) {
+      assertEquals("Café", article.title);
+      assertEquals(expected.document.outerHtml(), article.document.outerHtml());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testExtractFromEmptyBuffer() {
+    ArticleExtractor.from(EXAMPLE_URL, ByteBuffer.allocate(0));
+  }
 }
@@ -0,0 +1,70 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CandidatesTest {
+  @Test
+  public void testCollectsCandidatesInDocumentOrder() {
+    Element body = Jsoup.parse("<div id=a><p id=b>x</p><span><p id=c>y</p></span></div>" +
+        "<table><tr><td id=d>z</td></tr></table><h1 id=e>t</h1><h3>u</h3><section id=f></section>").body();
+    Candidates candidates = new Candidates();
+    candidates.collect(body);
+    assertEquals(6, candidates.size());
+    assertEquals("a", candidates.get(0).id());
+    assertEquals("b", candidates.get(1).id());
+    assertEquals("c", candidates.get(2).id());
+    assertEquals("d", candidates.get(3).id());
+    assertEquals("e", candidates.get(4).id());
+    assertEquals("f", candidates.get(5).id());
+  }
+
+  @Test
+  public void testPositionalScoresAreHalved() {
+    StringBuilder html = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      html.append("<p>paragraph</p>");
+    }
+    Candidates candidates = new Candidates();
+    candidates.collect(Jsoup.parse(html.toString()).body());
+    int[] expected = {100, 50, 25, 12, 6, 3, 1, 0, 0, 0};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], candidates.positionalScore(i));
+    }
+
+    GravityScores scores = new GravityScores();
+    candidates.setPositionalScores(scores);
+    assertEquals(10, scores.size());
+    assertTrue(scores.contains(candidates.get(9)));
+    assertEquals(50, scores.get(candidates.get(1)));
+  }
+
+  @Test
+  public void testCollectReplacesPreviousCandidates() {
+    StringBuilder html = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      html.append("<div>block</div>");
+    }
+    Candidates candidates = new Candidates();
+    candidates.collect(Jsoup.parse(html.toString()).body());
+    assertEquals(300, candidates.size());
+
+    candidates.collect(Jsoup.parse("<p>only</p>").body());
+    assertEquals(1, candidates.size());
+    assertEquals(100, candidates.positionalScore(0));
+  }
+
+  @Test
+  public void testTagNames() {
+    assertTrue(Candidates.isCandidate("article"));
+    assertTrue(Candidates.isCandidate("td"));
+    assertFalse(Candidates.isCandidate("h3"));
+    assertFalse(Candidates.isCandidate("span"));
+    assertFalse(Candidates.isCandidate("pre"));
+  }
+}
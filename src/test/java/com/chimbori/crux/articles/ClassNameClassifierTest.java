@@ -0,0 +1,109 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClassNameClassifierTest {
+  // The regular expressions that the classifier replaces, used as the reference implementation.
+  private static final Pattern UNLIKELY_CSS_CLASSES_AND_IDS =
+      Pattern.compile("banner|breadcrumbs|combx|comment|community|cover-wrap|disqus|discuss|e[-]?mail|extra|"
+          + "foot|header|legends|menu|modal|related|remark|reply|replies|rss|share|sharing|shoutbox|sidebar|skyscraper|"
+          + "social|sponsor|supplemental|ad|ad-break|all|agegate|archive|attachment|pagination|pager|popup|print|"
+          + "sign|single|facebook|twitter|yom-remote");
+
+  private static final Pattern POSITIVE_CSS_CLASSES_AND_IDS =
+      Pattern.compile("body|content|h?entry|h-entry|main|page|post|text|blog|story|haupt"
+          + "|arti(cle|kel)|instapaper_body|pagination");
+
+  private static final Pattern NEGATIVE_CSS_CLASSES_AND_IDS =
+      Pattern.compile("nav($|igation)|user|(^com-)|"
+          + "hidden|^hid$| hid$| hid |^hid |banner|combx|comment|com-|contact|foot|footer|footnote|"
+          + "masthead|media|meta|modal|outbrain|promo|related|scroll|share|sharing|shoutbox|sidebar|skyscraper|"
+          + "sponsor|shopping|tags|tool|widget|player|disclaimer|post-ratings");
+
+  private static final Pattern NEGATIVE_CSS_STYLES =
+      Pattern.compile("hidden|display: ?none|font-size: ?small");
+
+  @Test
+  public void testSingleVocabularies() {
+    assertEquals(ClassNameClassifier.POSITIVE, ClassNameClassifier.match("article-body"));
+    assertEquals(ClassNameClassifier.UNLIKELY, ClassNameClassifier.match("e-mail"));
+    assertEquals(ClassNameClassifier.NEGATIVE, ClassNameClassifier.match("widget"));
+    assertEquals(0, ClassNameClassifier.match("ARTICLE"));
+    assertEquals(0, ClassNameClassifier.match(""));
+  }
+
+  @Test
+  public void testAnchors() {
+    assertMatchesLikeRegex("nav");
+    assertMatchesLikeRegex("topnav");
+    assertMatchesLikeRegex("nav\n");
+    assertMatchesLikeRegex("nav\r\n");
+    assertMatchesLikeRegex("nav\n\n");
+    assertMatchesLikeRegex("navbar");
+    assertMatchesLikeRegex("hid");
+    assertMatchesLikeRegex("hid x");
+    assertMatchesLikeRegex("x hid");
+    assertMatchesLikeRegex("x hid y");
+    assertMatchesLikeRegex("xhid");
+    assertMatchesLikeRegex("com-x");
+    assertMatchesLikeRegex("\u0002hid\u0003");
+    assertMatchesLikeRegex("display: none");
+    assertMatchesLikeRegex("display:  none");
+  }
+
+  @Test
+  public void testMatchesLikeRegexOnGoldenFiles() throws IOException {
+    Set<String> candidates = new LinkedHashSet<>();
+    File[] testFiles = new File("test_data").listFiles();
+    for (File testFile : testFiles) {
+      if (!testFile.getName().endsWith(".html")) {
+        continue;
+      }
+      for (Element element : Jsoup.parse(testFile, "UTF-8").getAllElements()) {
+        candidates.add(element.className());
+        candidates.add(element.id());
+        candidates.add(element.attr("style"));
+        candidates.add(element.className() + " " + element.id());
+        candidates.add(element.className().toLowerCase() + " " + element.id().toLowerCase());
+      }
+    }
+    for (String candidate : candidates) {
+      assertMatchesLikeRegex(candidate);
+    }
+  }
+
+  @Test
+  public void testCachedResultsAreTheSame() {
+    ClassNameClassifier classifier = new ClassNameClassifier();
+    int expected = ClassNameClassifier.POSITIVE | ClassNameClassifier.UNLIKELY | ClassNameClassifier.NEGATIVE;
+    assertEquals(expected, classifier.classify("post-content sidebar"));
+    assertEquals(expected, classifier.classify("post-content sidebar"));
+  }
+
+  private static void assertMatchesLikeRegex(String text) {
+    int expected = 0;
+    if (POSITIVE_CSS_CLASSES_AND_IDS.matcher(text).find()) {
+      expected |= ClassNameClassifier.POSITIVE;
+    }
+    if (UNLIKELY_CSS_CLASSES_AND_IDS.matcher(text).find()) {
+      expected |= ClassNameClassifier.UNLIKELY;
+    }
+    if (NEGATIVE_CSS_CLASSES_AND_IDS.matcher(text).find()) {
+      expected |= ClassNameClassifier.NEGATIVE;
+    }
+    if (NEGATIVE_CSS_STYLES.matcher(text).find()) {
+      expected |= ClassNameClassifier.NEGATIVE_STYLE;
+    }
+    assertEquals("[" + text + "]", expected, ClassNameClassifier.match(text));
+  }
+}
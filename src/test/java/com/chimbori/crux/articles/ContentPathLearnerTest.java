@@ -0,0 +1,173 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.articles.model.PreprocessorOptions;
+import com.chimbori.crux.common.CharsetConverter;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ContentPathLearnerTest {
+  private static final String PARAGRAPH = "<p>Where warehouses once stood empty, there is now a covered market, a ferry " +
+      "terminal, and a row of small workshops that repair boats, bicycles, and the occasional espresso machine.</p>";
+  private static final String COMMENT = "<p>We took the ferry from that terminal last summer, and had our bicycles " +
+      "repaired in one of those workshops while we waited. Highly recommended!</p>";
+
+  @Test
+  public void testLearnedPathIsReusedForSameHost() {
+    ContentPathLearner learner = new ContentPathLearner(10);
+    CruxEngine engine = new CruxEngine().contentPaths(learner);
+
+    engine.extract("http://example.com/one", page("First story", 5));
+    assertEquals(1, learner.missCount());
+    assertEquals(1, learner.size());
+
+    Article article = engine.extract("http://EXAMPLE.com/two", page("Second story", 6));
+    assertEquals(1, learner.hitCount());
+    assertEquals(6, article.document.select("p").size());
+    assertEquals(0.5, learner.hitRate(), 0);
+
+    engine.extract("http://example.org/three", page("Third story", 5));
+    assertEquals(2, learner.missCount());
+    assertEquals(2, learner.size());
+  }
+
+  @Test
+  public void testFallsBackWhenPathNoLongerLeadsToContent() {
+    ContentPathLearner learner = new ContentPathLearner(10);
+    CruxEngine engine = new CruxEngine().contentPaths(learner);
+    engine.extract("http://example.com/one", page("First story", 5));
+
+    // The same template, but with too little text at the remembered path.
+    Article article = engine.extract("http://example.com/two", "<html><body><div class=\"nav\">Home</div>" +
+        "<div class=\"content story\"><p>Short.</p></div><div class=\"main\"><h1>Title</h1>" + repeat(PARAGRAPH, 5) +
+        "</div></body></html>");
+    assertEquals(1, learner.failureCount());
+    assertEquals(0, learner.hitCount());
+    assertEquals(5, article.document.select("p").size());
+
+    // The path learned from that page replaced the one that failed.
+    engine.extract("http://example.com/three", "<html><body><div class=\"nav\">Home</div>" +
+        "<div class=\"content story\"><p>Short.</p></div><div class=\"main\"><h1>Title</h1>" + repeat(PARAGRAPH, 4) +
+        "</div></body></html>");
+    assertEquals(1, learner.hitCount());
+  }
+
+  @Test
+  public void testFailedPathLeavesPageAsItWas() {
+    // The remembered path now leads to a short paragraph, and the real text is in a comment, which
+    // the stripped tree that the path was learned from would not have.
+    String html = "<html><body><div class=\"nav\">Home</div><div class=\"story content\"><p>Short.</p>" +
+        "<div class=\"comment\">" + repeat(PARAGRAPH, 5) + "</div></div></body></html>";
+    for (boolean singlePass : new boolean[]{false, true}) {
+      Article expected = engine(singlePass).extract("http://example.com/two", html);
+
+      ContentPathLearner learner = new ContentPathLearner(10);
+      CruxEngine engine = engine(singlePass).contentPaths(learner);
+      engine.extract("http://example.com/one", page("First story", 5));
+      Article actual = engine.extract("http://example.com/two", html);
+      assertEquals(1, learner.failureCount());
+      assertEquals(expected.document.outerHtml(), actual.document.outerHtml());
+      assertEquals(expected.simHash, actual.simHash);
+    }
+  }
+
+  @Test
+  public void testSiblingsRemovedByPreprocessingAreNotCounted() {
+    // The comments come first, in a container with the same tag and class names as the story's.
+    String html = "<html><body><div id=\"comments\"><div class=\"c\">" + repeat(COMMENT, 4) +
+        "</div></div><script>var x;</script><div><div class=\"c\"><h1>Story</h1>" + repeat(PARAGRAPH, 5) + "</div></div></body></html>";
+    for (boolean singlePass : new boolean[]{false, true}) {
+      Article expected = engine(singlePass).extract("http://example.com/one", html);
+      assertEquals(1, expected.document.select("h1").size());
+
+      ContentPathLearner learner = new ContentPathLearner(10);
+      CruxEngine engine = engine(singlePass).contentPaths(learner);
+      engine.extract("http://example.com/one", html);
+      Article actual = engine.extract("http://example.com/two", html);
+      assertEquals(1, learner.hitCount());
+      assertEquals(expected.document.outerHtml(), actual.document.outerHtml());
+    }
+
+    Element body = Jsoup.parse(html).body();
+    Element story = body.select("h1").first().parent();
+    Element preprocessed = body.clone();
+    new Preprocessor().preprocess(preprocessed, new PreprocessorOptions(true, true, true));
+    ContentPathLearner.ContentPath path = ContentPathLearner.ContentPath.of(preprocessed.select("h1").first().parent(), true);
+    assertSame(story, path.find(body, new Preprocessor()));
+  }
+
+  @Test
+  public void testSameResultAsFullScoring() throws Exception {
+    for (String testFile : new String[]{"npr.html", "nyt.html", "techcrunch.html"}) {
+      String html = CharsetConverter.readStream(new FileInputStream(new File("test_data/" + testFile))).content;
+      String url = "http://example.com/" + testFile;
+      Article expected = new CruxEngine().extract(url, html);
+
+      ContentPathLearner learner = new ContentPathLearner(10);
+      CruxEngine engine = new CruxEngine().contentPaths(learner);
+      engine.extract(url, html);
+      Article actual = engine.extract(url, html);
+      assertEquals(testFile, 1, learner.hitCount());
+      assertEquals(testFile, expected.document.outerHtml(), actual.document.outerHtml());
+    }
+  }
+
+  @Test
+  public void testPathsMatchTagsClassesAndPosition() {
+    Element body = Jsoup.parse("<div class=\"b a\"></div><div class=\"a b\"><section><p id=x>text</p></section></div>").body();
+    ContentPathLearner.ContentPath path = ContentPathLearner.ContentPath.of(body.getElementById("x"), true);
+
+    Element sameTemplate = Jsoup.parse("<div class=\"a  b\"></div><span></span><div class=\"b a\"><section>" +
+        "<p id=y>other</p></section></div>").body();
+    Preprocessor preprocessor = new Preprocessor();
+    assertSame(sameTemplate.getElementById("y"), path.find(sameTemplate, preprocessor));
+    assertNull(path.find(Jsoup.parse("<div class=\"a b\"><section><p>text</p></section></div>").body(), preprocessor));
+    assertNull(path.find(Jsoup.parse("<div class=a></div><div class=a><section><p>text</p></section></div>").body(), preprocessor));
+  }
+
+  @Test
+  public void testHostsAreNormalized() {
+    assertEquals("example.com", ContentPathLearner.hostOf("https://Example.COM/a/b?c"));
+    assertEquals("example.com:8080", ContentPathLearner.hostOf("http://user@example.com:8080#top"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedHostsAreForgotten() {
+    ContentPathLearner learner = new ContentPathLearner(2);
+    CruxEngine engine = new CruxEngine().contentPaths(learner);
+    engine.extract("http://a.example.com/", page("A", 5));
+    engine.extract("http://b.example.com/", page("B", 5));
+    engine.extract("http://a.example.com/2", page("A2", 5));
+    engine.extract("http://c.example.com/", page("C", 5));
+    assertEquals(2, learner.size());
+    engine.extract("http://b.example.com/2", page("B2", 5));
+    assertEquals(4, learner.missCount());
+  }
+
+  private static CruxEngine engine(boolean singlePass) {
+    CruxEngine engine = new CruxEngine();
+    return singlePass ? engine.singlePass() : engine;
+  }
+
+  private static String page(String title, int paragraphs) {
+    return "<html><head><title>" + title + "</title></head><body><div class=\"nav\">Home</div>" +
+        "<div class=\"story content\"><h1>" + title + "</h1>" + repeat(PARAGRAPH, paragraphs) + "</div>" +
+        "<div class=\"footer\">Copyright</div></body></html>";
+  }
+
+  private static String repeat(String str, int times) {
+    StringBuilder repeated = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      repeated.append(str);
+    }
+    return repeated.toString();
+  }
+}
@@ -0,0 +1,237 @@
+package com.chimbori.crux.articles;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CruxBatchTest {
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsAreReturnedInInputOrder() throws Exception {
+    List<PageInput> pages = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      pages.add(PageInput.fromHtml("http://example.com/" + i, page("Title " + i)));
+    }
+    List<PageResult> results = new CruxBatch().maxInFlight(8).extractAll(pages, executor);
+    assertEquals(50, results.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals(i, results.get(i).index);
+      assertEquals("http://example.com/" + i, results.get(i).url);
+      assertEquals("Title " + i, results.get(i).article.title);
+    }
+  }
+
+  @Test
+  public void testOrderedListenerReceivesResultsInInputOrder() throws Exception {
+    List<PageInput> pages = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      pages.add(PageInput.fromHtml("http://example.com/" + i, page("Title " + i)));
+    }
+    final List<Integer> indices = new ArrayList<>();
+    new CruxBatch().ordered().extractAll(pages, executor, new CruxBatch.Listener() {
+      @Override
+      public void onResult(PageResult result) {
+        indices.add(result.index);
+      }
+    });
+    for (int i = 0; i < 50; i++) {
+      assertEquals(Integer.valueOf(i), indices.get(i));
+    }
+  }
+
+  @Test
+  public void testFailuresAreIsolated() throws Exception {
+    InputStream failingStream = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("Connection reset");
+      }
+    };
+    List<PageResult> results = new CruxBatch().extractAll(Arrays.asList(
+        PageInput.fromHtml("http://example.com/0", page("Good")),
+        PageInput.fromHtml("http://example.com/1", ""),
+        PageInput.fromStream("http://example.com/2", failingStream),
+        PageInput.fromStream("http://example.com/3",
+            new ByteArrayInputStream(page("Also good").getBytes(StandardCharsets.UTF_8)))
+    ), executor);
+
+    assertTrue(results.get(0).isSuccess());
+    assertEquals("Good", results.get(0).article.title);
+    assertFalse(results.get(1).isSuccess());
+    assertTrue(results.get(1).error instanceof IllegalArgumentException);
+    assertFalse(results.get(2).isSuccess());
+    assertTrue(results.get(2).error instanceof IOException);
+    assertTrue(results.get(3).isSuccess());
+    assertEquals("Also good", results.get(3).article.title);
+  }
+
+  @Test
+  public void testInFlightWorkIsBounded() throws Exception {
+    final AtomicInteger submitted = new AtomicInteger();
+    final AtomicInteger maxPending = new AtomicInteger();
+    final AtomicInteger delivered = new AtomicInteger();
+    Executor countingExecutor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        int pending = submitted.incrementAndGet() - delivered.get();
+        maxPending.set(Math.max(maxPending.get(), pending));
+        executor.execute(command);
+      }
+    };
+    List<PageInput> pages = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      pages.add(PageInput.fromHtml("http://example.com/" + i, page("Title " + i)));
+    }
+    new CruxBatch().maxInFlight(3).extractAll(pages, countingExecutor, new CruxBatch.Listener() {
+      @Override
+      public void onResult(PageResult result) {
+        delivered.incrementAndGet();
+      }
+    });
+    assertEquals(100, delivered.get());
+    assertTrue(String.valueOf(maxPending.get()), maxPending.get() <= 3);
+  }
+
+  @Test
+  public void testSlowPagesTimeOut() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    InputStream stalledStream = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return -1;
+      }
+    };
+    try {
+      List<PageResult> results = new CruxBatch().timeout(200, TimeUnit.MILLISECONDS).extractAll(Arrays.asList(
+          PageInput.fromStream("http://example.com/0", stalledStream),
+          PageInput.fromHtml("http://example.com/1", page("Fast"))
+      ), executor);
+      assertTrue(results.get(0).timedOut);
+      assertFalse(results.get(0).isSuccess());
+      assertTrue(results.get(1).isSuccess());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testAbandonedWorkersCountTowardsInFlightLimit() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final ExecutorService unboundedExecutor = Executors.newCachedThreadPool();
+    Executor countingExecutor = new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        unboundedExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+            try {
+              command.run();
+            } finally {
+              running.decrementAndGet();
+            }
+          }
+        });
+      }
+    };
+    List<PageInput> pages = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      pages.add(PageInput.fromStream("http://example.com/" + i, new InputStream() {
+        @Override
+        public int read() throws IOException {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          return -1;
+        }
+      }));
+    }
+    new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(500);
+        } catch (InterruptedException ignored) {
+        }
+        release.countDown();
+      }
+    }.start();
+
+    try {
+      List<PageResult> results = new CruxBatch().maxInFlight(2).timeout(50, TimeUnit.MILLISECONDS)
+          .extractAll(pages, countingExecutor);
+      assertEquals(6, results.size());
+      assertTrue(results.get(0).timedOut);
+      assertTrue(String.valueOf(maxRunning.get()), maxRunning.get() <= 2);
+    } finally {
+      release.countDown();
+      unboundedExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRejectedPagesAreReportedAsFailures() throws Exception {
+    Executor rejectingExecutor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    };
+    final AtomicInteger closed = new AtomicInteger();
+    InputStream stream = new ByteArrayInputStream(page("Stream").getBytes(StandardCharsets.UTF_8)) {
+      @Override
+      public void close() throws IOException {
+        closed.incrementAndGet();
+      }
+    };
+    List<PageResult> results = new CruxBatch().extractAll(Arrays.asList(
+        PageInput.fromHtml("http://example.com/0", page("Title")),
+        PageInput.fromStream("http://example.com/1", stream)), rejectingExecutor);
+    assertTrue(results.get(0).error instanceof RejectedExecutionException);
+    assertTrue(results.get(1).error instanceof RejectedExecutionException);
+    assertEquals(1, closed.get());
+  }
+
+  private static String page(String title) {
+    return "<html><head><title>" + title + "</title></head><body><p>" + title + "</p></body></html>";
+  }
+}
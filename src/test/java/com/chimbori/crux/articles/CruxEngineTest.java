@@ -0,0 +1,84 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.CharsetConverter;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class CruxEngineTest {
+  private static final String[][] PAGES = {
+      {"npr.html", "http://www.npr.org/blogs/money/2010/10/04/130329523/how-fake-money-saved-brazil"},
+      {"benjaminstein.html", "http://benjaminste.in/post/1223476561/hey-guys-whatcha-doing"},
+      {"ycombinator.html", "http://paulgraham.com/seesv.html"},
+      {"traindom.html", "http://blog.traindom.com/places-where-to-submit-your-startup-for-coverage/"},
+  };
+
+  @Test
+  public void testSameResultAsArticleExtractor() {
+    CruxEngine engine = new CruxEngine();
+    for (String[] page : PAGES) {
+      String html = readTestFile(page[0]);
+      Article expected = ArticleExtractor.with(page[1], html).extractMetadata().extractContent().article();
+      Article actual = engine.extract(page[1], html);
+      assertEquals(expected.title, actual.title);
+      assertEquals(expected.imageUrl, actual.imageUrl);
+      assertEquals(expected.document.outerHtml(), actual.document.outerHtml());
+    }
+  }
+
+  @Test
+  public void testSinglePassEngine() {
+    CruxEngine engine = new CruxEngine().singlePass();
+    for (String[] page : PAGES) {
+      String html = readTestFile(page[0]);
+      Article expected = ArticleExtractor.with(page[1], html).extractMetadata().extractContent().article();
+      assertEquals(expected.document.outerHtml(), engine.extract(page[1], html).document.outerHtml());
+    }
+  }
+
+  @Test
+  public void testSharedAcrossThreads() throws Exception {
+    final CruxEngine engine = new CruxEngine();
+    List<String> expected = new ArrayList<>();
+    for (String[] page : PAGES) {
+      expected.add(engine.extract(page[1], readTestFile(page[0])).document.outerHtml());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 8 * PAGES.length; i++) {
+        final String[] page = PAGES[i % PAGES.length];
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            return engine.extract(page[1], readTestFile(page[0])).document.outerHtml();
+          }
+        }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(expected.get(i % PAGES.length), results.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static String readTestFile(String testFile) {
+    try {
+      return CharsetConverter.readStream(new FileInputStream(new File("test_data/" + testFile))).content;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
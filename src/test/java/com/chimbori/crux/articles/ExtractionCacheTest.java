@@ -0,0 +1,132 @@
+package com.chimbori.crux.articles;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ExtractionCacheTest {
+  private static final String URL = "http://example.com/story";
+  private static final String HTML = "<html><head><title>Story</title></head><body><p>Some text.</p></body></html>";
+
+  @Test
+  public void testUnchangedPageIsNotExtractedAgain() {
+    ExtractionCache cache = new ExtractionCache(10, 1 << 20);
+    CruxEngine engine = new CruxEngine().cache(cache);
+
+    Article first = engine.extract(URL, HTML);
+    assertEquals("Story", first.title);
+    assertEquals(0, cache.hitCount());
+    assertEquals(1, cache.missCount());
+
+    assertSame(first, engine.extract(URL, HTML));
+    assertSame(first, engine.extract("HTTP://Example.COM/story#comments", HTML));
+    assertEquals(2, cache.hitCount());
+
+    assertNotSame(first, engine.extract(URL, HTML.replace("Some", "Other")));
+    assertNotSame(first, engine.extract("http://example.com/Story", HTML));
+    assertEquals(3, cache.missCount());
+    assertEquals(3, cache.size());
+  }
+
+  @Test
+  public void testRawBytesAreNotDecodedAgain() {
+    ExtractionCache cache = new ExtractionCache(10, 1 << 20);
+    CruxEngine engine = new CruxEngine().cache(cache);
+    ByteBuffer bytes = ByteBuffer.wrap(HTML.getBytes(Charset.forName("UTF-8")));
+
+    Article first = engine.extract(URL, bytes, "text/html");
+    assertEquals("Story", first.title);
+    assertEquals(0, bytes.position());
+    assertSame(first, engine.extract(URL, ByteBuffer.wrap(HTML.getBytes(Charset.forName("UTF-8"))), null));
+    assertEquals(1, cache.hitCount());
+    assertEquals(HTML.length(), cache.weight());
+  }
+
+  @Test
+  public void testFrequentlyRequestedEntriesSurviveOneTimeScans() {
+    ExtractionCache cache = new ExtractionCache(2, 1 << 20);
+    ExtractionCache.Key popular = ExtractionCache.key("http://example.com/popular", 1, 10);
+    Article article = new Article("http://example.com/popular");
+    cache.get(popular);
+    cache.put(popular, article);
+    for (int i = 0; i < 5; i++) {
+      cache.get(popular);
+    }
+
+    for (int i = 0; i < 20; i++) {
+      assertSame(article, cache.get(popular));
+      ExtractionCache.Key once = ExtractionCache.key("http://example.com/" + i, i, 10);
+      assertNull(cache.get(once));
+      cache.put(once, new Article("http://example.com/" + i));
+    }
+    assertSame(article, cache.get(popular));
+    assertEquals(2, cache.size());
+    assertEquals(19, cache.evictionCount());
+    assertEquals(0, cache.rejectionCount());
+  }
+
+  @Test
+  public void testPutForStoredKeyReplacesEntry() {
+    ExtractionCache cache = new ExtractionCache(2, 20);
+    ExtractionCache.Key popular = ExtractionCache.key("http://example.com/popular", 1, 10);
+    ExtractionCache.Key rare = ExtractionCache.key("http://example.com/rare", 2, 10);
+    for (int i = 0; i < 5; i++) {
+      cache.get(popular);
+    }
+    cache.put(popular, new Article("http://example.com/popular"));
+    cache.put(rare, new Article("http://example.com/rare"));
+
+    Article replacement = new Article("http://example.com/rare");
+    cache.put(rare, replacement);
+    assertSame(replacement, cache.get(rare));
+    assertEquals(2, cache.size());
+    assertEquals(20, cache.weight());
+    assertEquals(0, cache.evictionCount());
+    assertEquals(0, cache.rejectionCount());
+  }
+
+  @Test
+  public void testWeightIsBounded() {
+    ExtractionCache cache = new ExtractionCache(100, 25);
+    for (int i = 0; i < 5; i++) {
+      ExtractionCache.Key key = ExtractionCache.key("http://example.com/" + i, i, 10);
+      cache.get(key);
+      cache.put(key, new Article("http://example.com/" + i));
+    }
+    assertEquals(2, cache.size());
+    assertEquals(20, cache.weight());
+    assertEquals(3, cache.evictionCount());
+
+    cache.put(ExtractionCache.key("http://example.com/huge", 0, 26), new Article("http://example.com/huge"));
+    assertEquals(1, cache.rejectionCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testRarelyRequestedEntriesAreRejected() {
+    ExtractionCache cache = new ExtractionCache(1, 1 << 20);
+    ExtractionCache.Key popular = ExtractionCache.key("http://example.com/popular", 1, 10);
+    for (int i = 0; i < 3; i++) {
+      cache.get(popular);
+    }
+    cache.put(popular, new Article("http://example.com/popular"));
+
+    // Stored without having been looked up, so it is less popular than the current entry.
+    cache.put(ExtractionCache.key("http://example.com/rare", 2, 10), new Article("http://example.com/rare"));
+    assertEquals(1, cache.rejectionCount());
+    assertEquals(0, cache.evictionCount());
+  }
+
+  @Test
+  public void testUrlsAreCanonicalized() {
+    assertEquals("http://example.com/A?b=C", ExtractionCache.canonicalize("HTTP://EXAMPLE.com/A?b=C#D"));
+    assertEquals("https://example.com?Q", ExtractionCache.canonicalize("https://Example.com?Q"));
+    assertEquals("example.com/A", ExtractionCache.canonicalize("example.com/A"));
+  }
+}
@@ -14,6 +14,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -21,6 +25,23 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class GoldenFilesTest {
+  /** Shared by all tests, so that its scratch state is reused across every page in the corpus. */
+  private static final CruxEngine ENGINE = new CruxEngine();
+
+  /** The pages listed in {@code test_data/golden-pages.txt}, which the benchmarks also run against. */
+  private static final Map<String, String> GOLDEN_PAGES = readGoldenPages();
+
+  @Test
+  public void testManifestListsEveryGoldenFile() {
+    Set<String> expectedFiles = new TreeSet<>();
+    for (String file : new File("test_data").list()) {
+      if (file.endsWith("-expected.txt")) {
+        expectedFiles.add(file.replace("-expected.txt", ".html"));
+      }
+    }
+    assertEquals(expectedFiles, new TreeSet<>(GOLDEN_PAGES.keySet()));
+  }
+
   @Test
   public void testNPR() {
     Article article = extractFromTestFile("http://www.npr.org/blogs/money/2010/10/04/130329523/how-fake-money-saved-brazil", "npr.html");
@@ -470,7 +491,7 @@ public class GoldenFilesTest {
 
   @Test
   public void testWikipediaAustralien() {
-    Article article = extractFromTestFile("hhttps://de.wikipedia.org/wiki/Australien", "wikipedia_australien.html");
+    Article article = extractFromTestFile("https://de.wikipedia.org/wiki/Australien", "wikipedia_australien.html");
     assertStartsWith("Der Titel dieses Artikels ist mehrdeutig. Weitere Bedeutungen sind unter Australien (Begriffsklärung) aufgeführt. Commonwealth of Australia", article.document.text());
   }
 
@@ -732,12 +753,21 @@ public class GoldenFilesTest {
 
 
   private Article extractFromTestFile(String baseUri, String testFile) {
+    assertEquals("URL of " + testFile + " in test_data/golden-pages.txt", GOLDEN_PAGES.get(testFile), baseUri);
     try {
-      Article article = ArticleExtractor.with(baseUri,
-          CharsetConverter.readStream(new FileInputStream(new File("test_data/" + testFile))).content)
+      String html = CharsetConverter.readStream(new FileInputStream(new File("test_data/" + testFile))).content;
+      Article article = ArticleExtractor.with(baseUri, html)
           .extractMetadata().extractContent().article();
       Log.i("%s", article.document.childNodes().toString());
 
+      Article singlePassArticle = ArticleExtractor.with(baseUri, html)
+          .singlePass().extractMetadata().extractContent().article();
+      assertEquals("Single-pass extraction differs", article.document.outerHtml(), singlePassArticle.document.outerHtml());
+      assertEquals(article.imageUrl, singlePassArticle.imageUrl);
+
+      Article engineArticle = ENGINE.extract(baseUri, html);
+      assertEquals("Engine extraction differs", article.document.outerHtml(), engineArticle.document.outerHtml());
+
       String extractedText = article.document.text();
 
       String expectedText = new String(Files.readAllBytes(Paths.get("test_data/" + testFile.replace(".html", "-expected.txt"))), StandardCharsets.UTF_8);
@@ -758,6 +788,22 @@ public class GoldenFilesTest {
     }
   }
 
+  private static Map<String, String> readGoldenPages() {
+    Map<String, String> pages = new LinkedHashMap<>();
+    try {
+      for (String line : Files.readAllLines(Paths.get("test_data/golden-pages.txt"), StandardCharsets.UTF_8)) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          String[] page = line.split("\\s+");
+          pages.put(page[0], page[1]);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return pages;
+  }
+
   private void writeExtractionResultToFile(String testFile, Article article) throws IOException {
     String extractedText = article.document.text();
     BufferedWriter writer = new BufferedWriter(new FileWriter(new File("test_data", testFile.replace(".html", "-expected.txt"))));
@@ -0,0 +1,70 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Tag;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GravityScoresTest {
+  @Test
+  public void testUnscoredElementsHaveNoScore() {
+    GravityScores scores = new GravityScores();
+    Element p = newElement();
+    assertFalse(scores.contains(p));
+    assertEquals(0, scores.get(p));
+  }
+
+  @Test
+  public void testZeroScoreIsStillAScore() {
+    GravityScores scores = new GravityScores();
+    Element p = newElement();
+    scores.set(p, 0);
+    assertTrue(scores.contains(p));
+    assertEquals(1, scores.size());
+  }
+
+  @Test
+  public void testScoresAreAddedUp() {
+    GravityScores scores = new GravityScores();
+    Element p = newElement();
+    scores.add(p, 30);
+    scores.add(p, -50);
+    assertEquals(-20, scores.get(p));
+    assertEquals(1, scores.size());
+  }
+
+  @Test
+  public void testElementsAreComparedByIdentity() {
+    GravityScores scores = new GravityScores();
+    Element first = newElement();
+    Element second = newElement();
+    scores.set(first, 100);
+    assertFalse(scores.contains(second));
+    assertEquals(0, scores.get(second));
+  }
+
+  @Test
+  public void testScoresSurviveGrowingTheTable() {
+    GravityScores scores = new GravityScores();
+    List<Element> elements = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Element element = newElement();
+      elements.add(element);
+      scores.set(element, i);
+    }
+    assertEquals(1000, scores.size());
+    for (int i = 0; i < elements.size(); i++) {
+      assertEquals(i, scores.get(elements.get(i)));
+    }
+  }
+
+  private static Element newElement() {
+    return new Element(Tag.valueOf("p"), "");
+  }
+}
@@ -0,0 +1,49 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeadIndexTest {
+  private static final String HTML = "<html><head>" +
+      "<title>Head Title</title>" +
+      "<meta name=\" Description \" content=\"first\">" +
+      "<meta name=\"description\" content=\"second\">" +
+      "<meta property=\"OG:TITLE\" content=\"og\">" +
+      "<link rel=\"Canonical\" href=\"/canonical\">" +
+      "<link rel=\"alternate\" type=\"application/atom+xml\" href=\"/atom\">" +
+      "<link rel=\"alternate\" type=\" Application/RSS+XML\" href=\"/rss\">" +
+      "<link rel=\"apple-touch-icon-precomposed\" href=\"/apple\">" +
+      "</head><body>" +
+      "<meta name=\"theme-color\" content=\"red\">" +
+      "<meta name=\"keywords\" content=\"in body\">" +
+      "<link rel=\"image_src\" href=\"/image\">" +
+      "<link rel=\"shortcut icon\" href=\"/favicon\">" +
+      "</body></html>";
+
+  @Test
+  public void testMatchesSelectors() {
+    Document doc = Jsoup.parse(HTML, "http://example.com/");
+    HeadIndex index = new HeadIndex(doc);
+
+    assertEquals(doc.select("head meta[name=description]").attr("content"), index.headMetaWithName("description"));
+    assertEquals("first", index.headMetaWithName("description"));
+    assertEquals("og", index.headMetaWithProperty("og:title"));
+    assertEquals("/canonical", index.headLinkWithRel("canonical"));
+    assertEquals("/rss", index.linkWithRelAndType("alternate", "application/rss+xml"));
+    assertEquals("/apple", index.headLinksWithRelStarting("apple-touch-icon").attr("href"));
+    assertEquals("Head Title", index.title());
+  }
+
+  @Test
+  public void testDistinguishesHeadFromBody() {
+    HeadIndex index = new HeadIndex(Jsoup.parse(HTML, "http://example.com/"));
+    assertEquals("", index.headMetaWithName("keywords"));
+    assertEquals("red", index.metaWithName("theme-color"));
+    assertEquals("", index.headLinkWithRel("image_src"));
+    assertEquals("/image", index.linkWithRel("image_src"));
+    assertEquals("/favicon", index.headLinkWithRelStartingOrLinkWithRelEnding("shortcut", "icon"));
+  }
+}
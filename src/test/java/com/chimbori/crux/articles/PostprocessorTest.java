@@ -0,0 +1,56 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PostprocessorTest {
+  private static final String PARAGRAPH = "This paragraph is long enough to be kept by the postprocessor, as it has plenty of letters.";
+
+  @Test
+  public void testNodesAreMovedIntoResult() {
+    Element topNode = Jsoup.parse("<p id=first>" + PARAGRAPH + "</p><p id=second>" + PARAGRAPH + "</p>").body();
+    Element first = topNode.getElementById("first");
+    Element second = topNode.getElementById("second");
+
+    Document result = new Postprocessor().postprocess(topNode);
+
+    assertEquals(0, topNode.childNodeSize());
+    assertEquals(2, result.children().size());
+    assertSame(first, result.child(0));
+    assertSame(second, result.child(1));
+    assertSame(result, first.parent());
+    assertEquals(PARAGRAPH + " " + PARAGRAPH, result.text());
+  }
+
+  @Test
+  public void testScoresCandidatesOfTopNode() {
+    // The <div>’s leaked stylesheet gives it a negative score.
+    Element topNode = Jsoup.parse("<div id=top><p>" + PARAGRAPH + "</p>"
+        + "<div>width: 10px; height: 10px; margin: 4px; padding: 2px; top: 3px; left: 5px</div></div>")
+        .getElementById("top");
+
+    Document result = new Postprocessor().postprocess(topNode);
+
+    assertEquals(PARAGRAPH, result.text());
+  }
+
+  @Test
+  public void testWordsEndWhereBlocksStart() {
+    String first = "<p>" + PARAGRAPH + " Its last word is</p>";
+    String second = "<p>followed by another paragraph, which has plenty of letters too</p>";
+    assertArrayEquals(paragraphSimHashes("<blockquote>" + first + " " + second + "</blockquote>"),
+        paragraphSimHashes("<blockquote>" + first + second + "</blockquote>"));
+  }
+
+  private static long[] paragraphSimHashes(String html) {
+    TextFingerprinter fingerprinter = new TextFingerprinter();
+    new Postprocessor().postprocess(Jsoup.parse(html).body(), new GravityScores(), fingerprinter);
+    return fingerprinter.paragraphSimHashes();
+  }
+}
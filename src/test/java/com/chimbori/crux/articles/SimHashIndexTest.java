@@ -0,0 +1,111 @@
+package com.chimbori.crux.articles;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimHashIndexTest {
+  private static final String STORY = "<p>The harbour town of Port Ellis has spent the last decade rebuilding its waterfront, " +
+      "and the results are finally visible to anyone who walks along the old quay on a Saturday morning.</p>" +
+      "<p>Where warehouses once stood empty, there is now a covered market, a ferry terminal, and a row of " +
+      "small workshops that repair boats, bicycles, and the occasional espresso machine.</p>" +
+      "<p>Local officials say the project was financed mostly by a regional development fund, with the rest " +
+      "coming from a levy on cruise ships that dock in the deep-water berth during the summer.</p>";
+
+  @Test
+  public void testFindsSimHashesWithinDistance() {
+    SimHashIndex index = new SimHashIndex(3);
+    long simHash = 0x0123456789ABCDEFL;
+    assertTrue(index.addIfNotNear(simHash));
+    assertTrue(index.containsNear(simHash));
+    assertTrue(index.containsNear(simHash ^ 1L ^ (1L << 20) ^ (1L << 63)));
+    assertFalse(index.containsNear(simHash ^ 1L ^ (1L << 20) ^ (1L << 40) ^ (1L << 63)));
+    assertFalse(index.addIfNotNear(simHash ^ (1L << 33)));
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  public void testAgreesWithLinearScan() {
+    Random random = new Random(42);
+    for (int maxDistance : new int[]{0, 2, 5}) {
+      SimHashIndex index = new SimHashIndex(maxDistance);
+      List<Long> added = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        long simHash = random.nextLong();
+        if (!added.isEmpty() && random.nextBoolean()) {
+          simHash = added.get(random.nextInt(added.size()));
+          for (int flips = random.nextInt(2 * maxDistance + 2); flips > 0; flips--) {
+            simHash ^= 1L << random.nextInt(64);
+          }
+        }
+
+        boolean expected = false;
+        for (long other : added) {
+          expected |= SimHashIndex.distance(simHash, other) <= maxDistance;
+        }
+        assertEquals(expected, index.containsNear(simHash));
+        if (random.nextBoolean()) {
+          index.add(simHash);
+          added.add(simHash);
+        }
+      }
+      assertEquals(added.size(), index.size());
+    }
+  }
+
+  @Test
+  public void testSyndicatedCopiesAreNear() {
+    CruxEngine engine = new CruxEngine();
+    Article original = engine.extract("http://example.com/a", "<html><body><article>" + STORY + "</article></body></html>");
+    Article copy = engine.extract("http://example.org/b", "<html><body><div class=nav>Home</div><article>" +
+        STORY.replace("Saturday", "Sunday") + "<p>This story was originally published by Example News and is " +
+        "republished here with permission.</p></article></body></html>");
+    Article other = engine.extract("http://example.com/c", "<html><body><article>" +
+        "<p>Researchers have found that the migratory birds wintering in the southern wetlands arrive almost " +
+        "two weeks earlier than they did thirty years ago, according to a study published this week.</p>" +
+        "<p>The authors tracked more than four thousand individual birds using lightweight radio tags, and " +
+        "compared their arrival dates with records kept by volunteers since the nineteen-eighties.</p>" +
+        "</article></body></html>");
+
+    assertEquals(3, original.paragraphSimHashes.length);
+    assertEquals(4, copy.paragraphSimHashes.length);
+    assertEquals(original.paragraphSimHashes[1], copy.paragraphSimHashes[1]);
+    assertNotEquals(original.paragraphSimHashes[0], copy.paragraphSimHashes[0]);
+
+    SimHashIndex seen = new SimHashIndex(8);
+    assertTrue(SimHashIndex.distance(original.simHash, copy.simHash) <= 8);
+    assertTrue(SimHashIndex.distance(original.simHash, other.simHash) > 8);
+    assertTrue(seen.addIfNotNear(original.simHash));
+    assertFalse(seen.addIfNotNear(copy.simHash));
+    assertTrue(seen.addIfNotNear(other.simHash));
+  }
+
+  @Test
+  public void testWordsAreCaseInsensitiveAndSpanInlineTags() {
+    TextFingerprinter fingerprinter = new TextFingerprinter();
+    fingerprinter.append("Hello, ");
+    fingerprinter.append("wor");
+    fingerprinter.append("ld");
+    fingerprinter.endParagraph();
+    fingerprinter.append("   ");
+    fingerprinter.endParagraph();
+    fingerprinter.append("hello WORLD");
+    fingerprinter.endParagraph();
+
+    long[] paragraphs = fingerprinter.paragraphSimHashes();
+    assertEquals(2, paragraphs.length);
+    assertEquals(paragraphs[0], paragraphs[1]);
+    assertEquals(paragraphs[0], fingerprinter.articleSimHash());
+
+    fingerprinter.reset();
+    assertEquals(0, fingerprinter.articleSimHash());
+    assertEquals(0, fingerprinter.paragraphSimHashes().length);
+  }
+}
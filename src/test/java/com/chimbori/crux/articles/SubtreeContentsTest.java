@@ -0,0 +1,83 @@
+package com.chimbori.crux.articles;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubtreeContentsTest {
+  @Test
+  public void testHeadings() {
+    Document doc = Jsoup.parse("<div id=outer><div id=inner><h3>Heading</h3></div><p id=p>Text</p></div>");
+    SubtreeContents contents = new SubtreeContents(new Postprocessor(), doc.body());
+    assertTrue(contents.containsHeading(doc.getElementById("outer")));
+    assertTrue(contents.containsHeading(doc.getElementById("inner")));
+    assertTrue(contents.containsHeading(doc.select("h3").first()));
+    assertFalse(contents.containsHeading(doc.getElementById("p")));
+  }
+
+  @Test
+  public void testOnlyFirstImageCounts() {
+    Document doc = Jsoup.parse("<div id=small><img src=a.png width=16><img src=b.png></div>" +
+        "<div id=large><img src=c.png width=640 height=480><img src=d.png height=1></div>" +
+        "<div id=invalid><img src=e.png width=wide height=1></div><p id=none>Text</p>");
+    SubtreeContents contents = new SubtreeContents(new Postprocessor(), doc.body());
+    assertFalse(contents.containsImage(doc.getElementById("small")));
+    assertTrue(contents.containsImage(doc.getElementById("large")));
+    assertTrue(contents.containsImage(doc.getElementById("invalid")));
+    assertFalse(contents.containsImage(doc.getElementById("none")));
+    assertFalse(contents.containsImage(doc.body()));
+  }
+
+  @Test
+  public void testMatchesSelectorsOnGoldenFile() throws Exception {
+    Document doc = Jsoup.parse(new File("test_data/wikipedia_galileo.html"), "UTF-8");
+    Postprocessor processor = new Postprocessor();
+    SubtreeContents contents = new SubtreeContents(processor, doc);
+    for (Element element : doc.getAllElements()) {
+      assertEquals(processor.containsHeading(element), contents.containsHeading(element));
+      assertEquals(processor.containsImage(element), contents.containsImage(element));
+    }
+  }
+
+  @Test
+  public void testElementsOutsideOfTreeFallBackToSelectors() {
+    Document doc = Jsoup.parse("<div id=a><h1>Title</h1></div><div id=b><img src=x.png></div>");
+    SubtreeContents contents = new SubtreeContents(new Postprocessor(), doc.getElementById("a"));
+    assertTrue(contents.containsImage(doc.getElementById("b")));
+    assertFalse(contents.containsHeading(doc.getElementById("b")));
+  }
+
+  @Test
+  public void testImagesAreMeasuredByTheProcessor() {
+    Document doc = Jsoup.parse("<div id=a><img src=a.png width=640></div>");
+    Postprocessor processor = new Postprocessor() {
+      @Override
+      protected boolean isSmallImage(Element image) {
+        return true;
+      }
+    };
+    SubtreeContents contents = new SubtreeContents(processor, doc.body());
+    assertFalse(contents.containsImage(doc.getElementById("a")));
+  }
+
+  @Test
+  public void testOverriddenChecksAreNotBypassed() {
+    Document doc = Jsoup.parse("<p id=a>Text</p>");
+    Postprocessor processor = new Postprocessor() {
+      @Override
+      protected boolean containsHeading(Element element) {
+        return true;
+      }
+    };
+    SubtreeContents contents = new SubtreeContents(processor, doc.body());
+    assertTrue(processor.shouldKeepElement(doc.getElementById("a"), contents));
+    assertFalse(new Postprocessor().shouldKeepElement(doc.getElementById("a"), contents));
+  }
+}
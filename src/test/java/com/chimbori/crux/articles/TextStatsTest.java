@@ -0,0 +1,44 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.StringUtils;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextStatsTest {
+  @Test
+  public void testMatchesJsoupText() {
+    Element body = Jsoup.parse("<div>  Leading <b> bold </b>text<p>Block\tparagraph </p>" +
+        "<span>inline</span><br>after break<pre>\n  pre  formatted \n</pre> <i> </i></div>" +
+        "<p>\u0001 control characters \u000b</p><p> </p><div><div><p>Nested</p> tail</div></div>").body();
+    TextStats textStats = new TextStats(body);
+    for (Element element : body.getAllElements()) {
+      String text = element.text();
+      assertEquals(text, text.length(), textStats.textLength(element));
+      assertEquals(text, StringUtils.countLetters(text), textStats.letterCount(element));
+      assertEquals(element.ownText(), element.ownText().length(), textStats.ownTextLength(element));
+    }
+  }
+
+  @Test
+  public void testMatchesStrippedView() {
+    Element body = Jsoup.parse("<div id=\"content\"><p>First paragraph</p><div class=\"comment\">Comment " +
+        "<br>text</div>tail<br><span>inline</span></div>").body();
+    Set<Element> stripped = Collections.singleton(body.select(".comment").first());
+    StrippedView view = new StrippedView(stripped, new StringBuilder());
+    TextStats textStats = new TextStats(body, view);
+    for (Element element : body.getAllElements()) {
+      if (view.contains(element)) {
+        assertEquals(view.text(element).length(), textStats.textLength(element));
+        assertEquals(view.ownText(element).length(), textStats.ownTextLength(element));
+      }
+    }
+    assertEquals("First paragraphtail inline".length(), textStats.textLength(body.select("#content").first()));
+  }
+}
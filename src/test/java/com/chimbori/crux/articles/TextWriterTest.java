@@ -0,0 +1,113 @@
+package com.chimbori.crux.articles;
+
+import com.chimbori.crux.common.CharsetConverter;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TextWriterTest {
+  private static final String PARAGRAPH = "This paragraph is long enough to be kept by the postprocessor, as it has plenty of letters.";
+
+  private static final String HTML = "<h2>A <em>short</em> heading</h2>" +
+      "<p>" + PARAGRAPH + " It links <a href=\"/more\">to <b>more</b></a> and has <b> </b>an empty run.</p>" +
+      "<blockquote>" + PARAGRAPH + "<br><br>And a second line with * and _ in it.</blockquote>" +
+      "<div># Not a heading, but " + PARAGRAPH + "<img src=\"a.png\" alt=\"An [image]\"></div>";
+
+  @Test
+  public void testWritesParagraphsWithMarkers() throws Exception {
+    assertEquals("## A short heading\n" +
+        "\n" +
+        PARAGRAPH + " It links to more and has an empty run.\n" +
+        "\n" +
+        "> " + PARAGRAPH + "\n" +
+        "> And a second line with * and _ in it.\n" +
+        "\n" +
+        "# Not a heading, but " + PARAGRAPH + "\n", write(TextFormat.PARAGRAPHS));
+  }
+
+  @Test
+  public void testWritesMarkdown() throws Exception {
+    assertEquals("## A *short* heading\n" +
+        "\n" +
+        PARAGRAPH + " It links [to **more**](http://example.com/more) and has an empty run.\n" +
+        "\n" +
+        "> " + PARAGRAPH + "  \n" +
+        "> And a second line with \\* and \\_ in it.\n" +
+        "\n" +
+        "\\# Not a heading, but " + PARAGRAPH + "![An \\[image\\]](http://example.com/a/a.png)\n", write(TextFormat.MARKDOWN));
+  }
+
+  @Test
+  public void testSameTextAsDocument() throws Exception {
+    for (String testFile : new String[]{"npr.html", "nyt.html", "thedailybeast.html", "wikipedia_galileo.html"}) {
+      String html = CharsetConverter.readStream(new FileInputStream(new File("test_data/" + testFile))).content;
+      String url = "http://example.com/" + testFile;
+      Article expected = new CruxEngine().singlePass().extract(url, html);
+      StringBuilder expectedText = new StringBuilder();
+      for (Node node : expected.document.childNodes()) {
+        String text = node instanceof Element ? ((Element) node).text() : ((TextNode) node).text().trim();
+        if (!text.isEmpty()) {
+          expectedText.append(expectedText.length() > 0 ? "\n\n" : "").append(text);
+        }
+      }
+
+      StringBuilder text = new StringBuilder();
+      Article actual = new CruxEngine().extractText(url, html, text, TextFormat.PARAGRAPHS);
+      assertNull(actual.document);
+      // Markers aside, and with line breaks as spaces, each paragraph has the same text as its node.
+      String actualText = text.toString().trim().replaceAll("(?m)^(#+|>) ", "").replace('\n', ' ');
+      assertEquals(testFile, expectedText.toString().replace('\n', ' '), actualText);
+      assertEquals(testFile, expected.simHash, actual.simHash);
+      assertArrayEquals(testFile, expected.paragraphSimHashes, actual.paragraphSimHashes);
+      assertEquals(testFile, expected.title, actual.title);
+      assertEquals(testFile, expected.imageUrl, actual.imageUrl);
+    }
+  }
+
+  @Test
+  public void testKeepsWhitespaceOfPreformattedText() throws Exception {
+    String html = "<blockquote>" + PARAGRAPH + " For example:<pre>  if (a) {\n    b(`c`);\n  }\n</pre>" +
+        "That is <b>all</b>.</blockquote>";
+    assertEquals("> " + PARAGRAPH + " For example:   if (a) {\n" +
+        ">     b(`c`);\n" +
+        ">   }\n" +
+        "> That is all.\n", write(html, TextFormat.PARAGRAPHS));
+    assertEquals("> " + PARAGRAPH + " For example:\n" +
+        "> ```\n" +
+        ">   if (a) {\n" +
+        ">     b(`c`);\n" +
+        ">   }\n" +
+        "> ```\n" +
+        "> That is **all**.\n", write(html, TextFormat.MARKDOWN));
+  }
+
+  @Test
+  public void testEscapesOrderedListMarkers() throws Exception {
+    assertEquals("1986\\. A great season, and " + PARAGRAPH + "\n" +
+            "\n" +
+            "2\\) Then 3. And " + PARAGRAPH + "\n",
+        write("<p>1986. A great season, and " + PARAGRAPH + "</p><p>2) Then 3. And " + PARAGRAPH + "</p>",
+            TextFormat.MARKDOWN));
+  }
+
+  private static String write(TextFormat format) throws Exception {
+    return write(HTML, format);
+  }
+
+  private static String write(String html, TextFormat format) throws Exception {
+    Element topNode = Jsoup.parse(html, "http://example.com/a/").body();
+    StringBuilder out = new StringBuilder();
+    new Postprocessor().postprocess(topNode, new GravityScores(), new TextFingerprinter(), new TextWriter(out, format));
+    return out.toString();
+  }
+}
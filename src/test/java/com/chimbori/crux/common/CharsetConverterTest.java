@@ -3,9 +3,13 @@ package com.chimbori.crux.common;
 import org.jsoup.Jsoup;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -32,6 +36,89 @@ public class CharsetConverterTest {
     assertEquals("Baby born on Mediterranean rescue ship - BBC News BBC News", Jsoup.parse(parsed.content).select("title").text());
   }
 
+  @Test
+  public void testConverterCanBeReusedForMultiplePages() throws Exception {
+    CharsetConverter converter = new CharsetConverter();
+    assertEquals("Baby born on Mediterranean rescue ship - BBC News BBC News",
+        Jsoup.parse(converter.decode(new FileInputStream(new File("test_data/bbc.html"))).toString()).select("title").text());
+    assertEquals("utf-8", converter.encoding());
+
+    converter.decode(new FileInputStream(new File("test_data/yomiuri.html")));
+    assertEquals("shift_jis", converter.encoding());
+  }
+
+  @Test
+  public void testMaxBytesIsConfigurable() throws Exception {
+    CharsetConverter.StringWithEncoding parsed = CharsetConverter.readStream(
+        new FileInputStream(new File("test_data/bbc.html")), 100);
+    assertEquals(100, parsed.content.length());
+  }
+
+  @Test
+  public void testCharactersSplitAcrossChunksAreDecoded() throws Exception {
+    StringBuilder html = new StringBuilder("<html><head><meta charset=\"utf-8\"></head><body>");
+    for (int i = 0; i < 5000; i++) {
+      html.append("äöü€");
+    }
+    html.append("</body></html>");
+    byte[] bytes = html.toString().getBytes("UTF-8");
+
+    CharsetConverter.StringWithEncoding parsed = CharsetConverter.readStream(new TrickleInputStream(bytes));
+    assertEquals("utf-8", parsed.encoding);
+    assertEquals(html.toString(), parsed.content);
+  }
+
+  @Test
+  public void testChannelsAndBuffersDecodeLikeStreams() throws Exception {
+    CharsetConverter converter = new CharsetConverter();
+    for (String testFile : new String[]{"bbc.html", "yomiuri.html", "spiegel.html", "br-online.html"}) {
+      File file = new File("test_data/" + testFile);
+      CharsetConverter.StringWithEncoding expected = CharsetConverter.readStream(new FileInputStream(file));
+
+      FileChannel channel = new FileInputStream(file).getChannel();
+      try {
+        assertEquals(expected.content, converter.decode(channel).toString());
+        assertEquals(expected.encoding, converter.encoding());
+
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        assertEquals(expected.content, converter.decode(mapped).toString());
+        assertEquals(expected.encoding, converter.encoding());
+        assertEquals(0, mapped.position());
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  @Test
+  public void testBufferSlicesAreDecoded() throws Exception {
+    byte[] page = "<html><head><meta charset=\"iso-8859-1\"></head><body>caf\u00e9</body></html>".getBytes("ISO-8859-1");
+    ByteBuffer record = ByteBuffer.allocateDirect(page.length + 20);
+    record.put(new byte[10]).put(page).put(new byte[10]);
+    record.position(10);
+    record.limit(10 + page.length);
+
+    CharsetConverter converter = new CharsetConverter();
+    assertEquals(new String(page, "ISO-8859-1"), converter.decode(record.slice()).toString());
+    assertEquals("iso-8859-1", converter.encoding());
+
+    assertEquals(20, new CharsetConverter(20).decode(ByteBuffer.wrap(page)).length());
+  }
+
+  /**
+   * Returns at most a few bytes per read, like a slow network connection might.
+   */
+  private static class TrickleInputStream extends ByteArrayInputStream {
+    TrickleInputStream(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      return super.read(b, off, Math.min(len, 7));
+    }
+  }
+
   private void assertEncodingEquals(String encoding, String testFile) {
     try {
       assertEquals(encoding, CharsetConverter.readStream(new FileInputStream(new File("test_data/" + testFile))).encoding);
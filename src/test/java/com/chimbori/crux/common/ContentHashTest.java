@@ -0,0 +1,47 @@
+package com.chimbori.crux.common;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ContentHashTest {
+  @Test
+  public void testHashDependsOnlyOnRemainingBytes() {
+    byte[] page = "<html><body>Hello, world</body></html>".getBytes();
+    ByteBuffer padded = ByteBuffer.allocateDirect(page.length + 6);
+    padded.put(new byte[3]).put(page).put(new byte[3]);
+    padded.position(3);
+    padded.limit(3 + page.length);
+
+    assertEquals(ContentHash.of(ByteBuffer.wrap(page)), ContentHash.of(padded));
+    assertEquals(3, padded.position());
+  }
+
+  @Test
+  public void testEveryByteAndLengthMatters() {
+    Set<Long> hashes = new HashSet<>();
+    for (int length = 0; length < 20; length++) {
+      byte[] bytes = new byte[length];
+      hashes.add(ContentHash.of(ByteBuffer.wrap(bytes)));
+      for (int i = 0; i < length; i++) {
+        bytes[i] = 1;
+        hashes.add(ContentHash.of(ByteBuffer.wrap(bytes)));
+        bytes[i] = 0;
+      }
+    }
+    assertEquals(20 + 19 * 20 / 2, hashes.size());
+  }
+
+  @Test
+  public void testCharsAreHashed() {
+    assertEquals(ContentHash.of("café"), ContentHash.of(new StringBuilder("café")));
+    assertNotEquals(ContentHash.of("café"), ContentHash.of("cafe"));
+    assertNotEquals(ContentHash.of("abcd"), ContentHash.of("abcd\u0000"));
+    assertNotEquals(ContentHash.of(""), ContentHash.of("\u0000"));
+  }
+}
@@ -0,0 +1,85 @@
+package com.chimbori.crux.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FirstNonEmptyTest {
+  @Test
+  public void testFirstNonEmptyCandidateIsPicked() {
+    assertEquals("original", new FirstNonEmpty().or("original").or("changed").toString());
+    assertEquals("changed", new FirstNonEmpty().or((String) null).or("changed").toString());
+    assertEquals("changed", new FirstNonEmpty().or("").or("changed").toString());
+    assertEquals("original", new FirstNonEmpty().or("original").or((String) null).toString());
+    assertEquals("original", new FirstNonEmpty().or("original").or("").toString());
+  }
+
+  @Test
+  public void testResultWhenNoCandidateIsNonEmpty() {
+    assertNull(new FirstNonEmpty().toString());
+    assertNull(new FirstNonEmpty().or((String) null).or((String) null).toString());
+    assertEquals("", new FirstNonEmpty().or("").or((String) null).toString());
+    assertEquals("", new FirstNonEmpty().or((String) null).or("").toString());
+  }
+
+  @Test
+  public void testMatchesHeuristicString() {
+    String[][] chains = {
+        {null, null}, {null, ""}, {"", null}, {"", ""}, {"a", null}, {null, "b"}, {"", "b"}, {"a", "b"},
+        {null, null, "c"}, {"", null, ""}, {null, "b", "c"},
+    };
+    for (String[] chain : chains) {
+      FirstNonEmpty firstNonEmpty = new FirstNonEmpty();
+      for (String candidate : chain) {
+        firstNonEmpty.or(candidate);
+      }
+      assertEquals(heuristicString(chain), firstNonEmpty.toString());
+    }
+  }
+
+  @Test
+  public void testThatLazyCandidatesAreNotEvaluatedIfOneCandidateHasAlreadyBeenFound() {
+    FirstNonEmpty firstNonEmpty = new FirstNonEmpty()
+        .or("original")
+        .or(new FirstNonEmpty.Candidate() {
+          @Override
+          public String get() {
+            fail("If an existing candidate is available, subsequent candidates should not be evaluated.");
+            return "changed";
+          }
+        });
+    assertTrue(firstNonEmpty.isFound());
+    assertEquals("original", firstNonEmpty.toString());
+  }
+
+  @Test
+  public void testThatLazyCandidatesAreEvaluatedOtherwise() {
+    FirstNonEmpty firstNonEmpty = new FirstNonEmpty()
+        .or("")
+        .or(new FirstNonEmpty.Candidate() {
+          @Override
+          public String get() {
+            return "changed";
+          }
+        });
+    assertEquals("changed", firstNonEmpty.toString());
+    assertFalse(new FirstNonEmpty().or("").isFound());
+  }
+
+  @SuppressWarnings("deprecation")
+  private static String heuristicString(String[] chain) {
+    try {
+      HeuristicString heuristicString = new HeuristicString(chain[0]);
+      for (int i = 1; i < chain.length; i++) {
+        heuristicString.or(chain[i]);
+      }
+      return heuristicString.toString();
+    } catch (HeuristicString.CandidateFound candidateFound) {
+      return candidateFound.candidate;
+    }
+  }
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+@SuppressWarnings("deprecation")  // Tests the deprecated class itself.
 public class HeuristicStringTest {
   @Test
   public void testOriginalStringIsRetained() {
@@ -4,7 +4,9 @@ import org.junit.Test;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -26,6 +28,19 @@ public class StringUtilsTest {
     assertEquals(2, StringUtils.countMatches("&test;&test;", "&test;"));
     assertEquals(2, StringUtils.countMatches("&test; &test;", "&test;"));
     assertEquals(3, StringUtils.countMatches("&test; test; &test; plu &test;", "&test;"));
+    assertEquals(2, StringUtils.countMatches("aaaaa", "aa"));
+    assertEquals(0, StringUtils.countMatches("test", ""));
+  }
+
+  @Test
+  public void testCountSeveral() {
+    String[] markers = {"&quot;", "&lt;", "&gt;", "px"};
+    assertEquals(0, StringUtils.countMatches("", markers));
+    assertEquals(0, StringUtils.countMatches("no markup here", markers));
+    assertEquals(5, StringUtils.countMatches("&lt;div style=&quot;width: 10px&quot;&gt;", markers));
+    assertEquals(2, StringUtils.countMatches("aaaaa", new String[]{"aa"}));
+    assertEquals(4, StringUtils.countMatches("aaa", new String[]{"aa", "a", ""}));
+    assertEquals(13, StringUtils.countMatches("abab ab", new String[]{"a", "b", "ab", "ba", "x", "ab"}));
   }
 
   @Test
@@ -35,6 +50,69 @@ public class StringUtilsTest {
     assertEquals(" people if ", StringUtils.getLongestSubstring("x now if people if todo?", "I know people if you"));
     assertEquals("", StringUtils.getLongestSubstring("?", "people"));
     assertEquals("people", StringUtils.getLongestSubstring(" people ", "people"));
+    assertEquals("ab", StringUtils.getLongestSubstring("xab yab", "abcab"));
+    assertEquals("ab", StringUtils.getLongestSubstring("abcab", "xab yab"));
+  }
+
+  @Test
+  public void longestSubstringOfLongInputs() {
+    StringBuilder body = new StringBuilder();
+    StringBuilder other = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      body.append("word").append(i).append(' ');
+      other.append("other text ");
+    }
+    String str1 = body + "Breaking News | Example Site";
+    String str2 = "Example Site | " + other;
+    assertEquals("Example Site", StringUtils.getLongestSubstring(str1, str2));
+    assertEquals("word1999 Breaking", StringUtils.getLongestSubstring(str1, "word1999 Breaking"));
+  }
+
+  @Test
+  public void longestSubstringAlgorithmsAgree() {
+    Random random = new Random(42);
+    for (int n = 0; n < 2000; n++) {
+      String str1 = randomString(random, 1 + random.nextInt(40));
+      String str2 = randomString(random, 1 + random.nextInt(40));
+      int[] expected = longestSubstringByMatrix(str1, str2);
+      assertArrayEquals(expected, StringUtils.longestSubstringByRows(str1, str2));
+      assertArrayEquals(expected, new SuffixAutomaton(str2).longestCommonSubstring(str1));
+    }
+  }
+
+  private static String randomString(Random random, int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = "abc d\u00e9".charAt(random.nextInt(6));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * The original implementation, which keeps the whole dynamic programming table.
+   */
+  private static int[] longestSubstringByMatrix(String str1, String str2) {
+    int[][] num = new int[str1.length()][str2.length()];
+    int maxlen = 0;
+    int lastSubstrBegin = 0;
+    int endIndex = 0;
+    for (int i = 0; i < str1.length(); i++) {
+      for (int j = 0; j < str2.length(); j++) {
+        if (str1.charAt(i) == str2.charAt(j)) {
+          if ((i == 0) || (j == 0))
+            num[i][j] = 1;
+          else
+            num[i][j] = 1 + num[i - 1][j - 1];
+
+          if (num[i][j] > maxlen) {
+            maxlen = num[i][j];
+            lastSubstrBegin = i - num[i][j] + 1;
+            endIndex = i + 1;
+          }
+        }
+      }
+    }
+    return new int[]{lastSubstrBegin, endIndex};
   }
 
   @Test
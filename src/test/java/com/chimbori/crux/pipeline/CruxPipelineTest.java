@@ -0,0 +1,181 @@
+package com.chimbori.crux.pipeline;
+
+import com.chimbori.crux.articles.PageInput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CruxPipelineTest {
+  private HttpServer server;
+  private String baseUrl;
+  private final AtomicInteger concurrentRequests = new AtomicInteger();
+  private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        int concurrent = concurrentRequests.incrementAndGet();
+        synchronized (maxConcurrentRequests) {
+          maxConcurrentRequests.set(Math.max(maxConcurrentRequests.get(), concurrent));
+        }
+        try {
+          Thread.sleep(20);  // Gives requests a chance to overlap.
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        } finally {
+          // Before responding, since a client may send its next request as soon as it has read the
+          // response, before this handler returns.
+          concurrentRequests.decrementAndGet();
+        }
+        try {
+          String path = exchange.getRequestURI().getPath();
+          if (path.startsWith("/moved")) {
+            exchange.getResponseHeaders().add("Location", baseUrl + "/article-moved");
+            exchange.sendResponseHeaders(302, -1);
+          } else if (path.startsWith("/missing")) {
+            exchange.sendResponseHeaders(404, -1);
+          } else if (path.startsWith("/header-latin1")) {
+            respond(exchange, "<html><head><title>Crème brûlée</title></head><body></body></html>",
+                StandardCharsets.ISO_8859_1, "text/html; charset=ISO-8859-1");
+          } else if (path.startsWith("/latin1")) {
+            respond(exchange, "<html><head><meta charset=\"iso-8859-1\"><title>Café</title></head><body></body></html>",
+                StandardCharsets.ISO_8859_1);
+          } else {
+            respond(exchange, "<html><head><title>" + path + "</title></head><body><p>" + path + "</p></body></html>",
+                StandardCharsets.UTF_8);
+          }
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testFetchesAndExtractsArticles() throws Exception {
+    Map<String, PipelineResult> results = run(new CruxPipeline(), Arrays.asList(
+        baseUrl + "/article-1",
+        baseUrl + "/moved",
+        baseUrl + "/missing",
+        baseUrl + "/latin1",
+        baseUrl + "/header-latin1",
+        baseUrl + "/photo.jpg",
+        "ftp://example.com/article"));
+
+    assertEquals(PipelineResult.Status.EXTRACTED, results.get(baseUrl + "/article-1").status);
+    assertEquals("/article-1", results.get(baseUrl + "/article-1").article.title);
+
+    PipelineResult moved = results.get(baseUrl + "/moved");
+    assertEquals(PipelineResult.Status.EXTRACTED, moved.status);
+    assertEquals(baseUrl + "/article-moved", moved.url);
+    assertEquals("/article-moved", moved.article.title);
+
+    assertEquals(PipelineResult.Status.FAILED, results.get(baseUrl + "/missing").status);
+    assertTrue(results.get(baseUrl + "/missing").error instanceof IOException);
+
+    assertEquals("Café", results.get(baseUrl + "/latin1").article.title);
+    assertEquals("Crème brûlée", results.get(baseUrl + "/header-latin1").article.title);
+
+    assertEquals(PipelineResult.Status.SKIPPED, results.get(baseUrl + "/photo.jpg").status);
+    assertEquals(PipelineResult.Status.SKIPPED, results.get("ftp://example.com/article").status);
+  }
+
+  @Test
+  public void testConnectionsPerHostAreLimited() throws Exception {
+    List<String> urls = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      urls.add(baseUrl + "/article-" + i);
+    }
+    Map<String, PipelineResult> results = run(new CruxPipeline().maxConnectionsPerHost(2), urls);
+    assertEquals(40, results.size());
+    for (PipelineResult result : results.values()) {
+      assertEquals(result.toString(), PipelineResult.Status.EXTRACTED, result.status);
+    }
+    assertTrue(String.valueOf(maxConcurrentRequests.get()), maxConcurrentRequests.get() <= 2);
+  }
+
+  @Test
+  public void testHostPermitsAreForgottenOnceReleased() throws Exception {
+    HostPermits permits = new HostPermits(2);
+    permits.acquire("a.example.com");
+    permits.acquire("a.example.com");
+    permits.acquire("b.example.com");
+    assertEquals(2, permits.size());
+    permits.release("a.example.com");
+    permits.release("b.example.com");
+    assertEquals(1, permits.size());
+    permits.release("a.example.com");
+    assertEquals(0, permits.size());
+  }
+
+  @Test
+  public void testPluggableFetcher() throws Exception {
+    PageFetcher fetcher = new PageFetcher() {
+      @Override
+      public PageInput fetch(URL url) {
+        return PageInput.fromStream(url.toString(), new ByteArrayInputStream(
+            "<html><head><title>Stubbed</title></head></html>".getBytes(Charset.forName("UTF-8"))));
+      }
+    };
+    Map<String, PipelineResult> results = run(new CruxPipeline(fetcher), Arrays.asList("http://example.com/a"));
+    assertEquals("Stubbed", results.get("http://example.com/a").article.title);
+  }
+
+  private static Map<String, PipelineResult> run(CruxPipeline pipeline, List<String> urls) throws InterruptedException {
+    final Map<String, PipelineResult> results = new HashMap<>();
+    pipeline.run(urls, new CruxPipeline.Listener() {
+      @Override
+      public void onResult(PipelineResult result) {
+        results.put(result.inputUrl, result);
+      }
+    });
+    return results;
+  }
+
+  private static void respond(HttpExchange exchange, String body, Charset charset) throws IOException {
+    respond(exchange, body, charset, "text/html");
+  }
+
+  private static void respond(HttpExchange exchange, String body, Charset charset, String contentType)
+      throws IOException {
+    byte[] bytes = body.getBytes(charset);
+    exchange.getResponseHeaders().add("Content-Type", contentType);
+    exchange.sendResponseHeaders(200, bytes.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(bytes);
+    out.close();
+  }
+}
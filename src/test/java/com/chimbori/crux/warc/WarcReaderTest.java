@@ -0,0 +1,248 @@
+package com.chimbori.crux.warc;
+
+import com.chimbori.crux.articles.CruxBatch;
+import com.chimbori.crux.articles.PageResult;
+import com.chimbori.crux.common.CharsetConverter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WarcReaderTest {
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @Test
+  public void testReadsPlainFile() throws IOException {
+    assertSampleRecords(new File("test_data/sample.warc"));
+  }
+
+  @Test
+  public void testReadsGzippedFile() throws IOException {
+    assertSampleRecords(new File("test_data/sample.warc.gz"));
+  }
+
+  @Test
+  public void testPlainAndGzippedFilesHaveTheSameRecords() throws IOException {
+    List<WarcRecord> plain = readAll(WarcReader.open(new File("test_data/sample.warc")));
+    List<WarcRecord> gzipped = readAll(WarcReader.open(new File("test_data/sample.warc.gz")));
+    assertEquals(plain.size(), gzipped.size());
+    for (int i = 0; i < plain.size(); i++) {
+      assertEquals(plain.get(i).type, gzipped.get(i).type);
+      assertEquals(plain.get(i).block, gzipped.get(i).block);
+      assertEquals(plain.get(i).payload, gzipped.get(i).payload);
+    }
+  }
+
+  @Test
+  public void testRecordsSpanningWindowsAndMembers() throws IOException {
+    byte[] warc = readBytes(new File("test_data/sample.warc"));
+    List<WarcRecord> expected = readAll(WarcReader.open(new File("test_data/sample.warc")));
+
+    // Small windows force records to be remapped, and some to straddle two windows.
+    File plain = File.createTempFile("crux", ".warc");
+    plain.deleteOnExit();
+    write(plain, warc);
+    assertSameRecords(expected, readAll(new WarcReader(new FileInputStream(plain).getChannel(), 2048)));
+
+    // Gzip members that cut records at arbitrary points, and windows smaller than a member.
+    ByteArrayOutputStream members = new ByteArrayOutputStream();
+    for (int start = 0; start < warc.length; start += 1000) {
+      GZIPOutputStream member = new GZIPOutputStream(members);
+      member.write(warc, start, Math.min(1000, warc.length - start));
+      member.finish();
+    }
+    File gzipped = File.createTempFile("crux", ".warc.gz");
+    gzipped.deleteOnExit();
+    write(gzipped, members.toByteArray());
+    assertSameRecords(expected, readAll(new WarcReader(new FileInputStream(gzipped).getChannel(), 512)));
+  }
+
+  @Test
+  public void testRecordLargerThanWindowIsRejected() throws IOException {
+    File plain = File.createTempFile("crux", ".warc");
+    plain.deleteOnExit();
+    write(plain, readBytes(new File("test_data/sample.warc")));
+    WarcReader reader = new WarcReader(new FileInputStream(plain).getChannel(), 256);
+    try {
+      readAll(reader);
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testTruncatedFileIsRejected() throws IOException {
+    byte[] warc = readBytes(new File("test_data/sample.warc"));
+    File truncated = File.createTempFile("crux", ".warc");
+    truncated.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(truncated);
+    out.write(warc, 0, warc.length - 100);
+    out.close();
+    try {
+      readAll(WarcReader.open(truncated));
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testEmptyFileHasNoRecords() throws IOException {
+    File empty = File.createTempFile("crux", ".warc");
+    empty.deleteOnExit();
+    WarcReader reader = WarcReader.open(empty);
+    assertNull(reader.next());
+    reader.close();
+  }
+
+  @Test
+  public void testCharsetIsTakenFromHttpHeaderBeforeHtml() throws IOException {
+    List<WarcRecord> records = readAll(WarcReader.open(new File("test_data/sample.warc")));
+    CharsetConverter converter = new CharsetConverter();
+
+    // Declared only by the HTTP header.
+    assertTrue(converter.decode(records.get(2).payload, records.get(2).httpContentType).toString().contains("café"));
+    assertEquals("iso-8859-1", converter.encoding());
+
+    // Declared only by a meta tag.
+    assertTrue(converter.decode(records.get(3).payload, records.get(3).httpContentType).toString().contains("café"));
+    assertEquals("utf-8", converter.encoding());
+
+    // The header wins over a conflicting meta tag.
+    ByteBuffer page = ByteBuffer.wrap("<meta charset=\"utf-8\"><p>café</p>".getBytes("ISO-8859-1"));
+    assertTrue(converter.decode(page, "text/html; charset=\"iso-8859-1\"").toString().contains("café"));
+    assertEquals("iso-8859-1", converter.encoding());
+
+    // An unsupported header charset falls back to sniffing.
+    converter.decode(page, "text/html; charset=x-unknown");
+    assertEquals("utf-8", converter.encoding());
+  }
+
+  @Test
+  public void testHtmlPagesAreExtractedInBatch() throws Exception {
+    WarcReader reader = WarcReader.open(new File("test_data/sample.warc.gz"));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<PageResult> results = new CruxBatch().ordered().extractAll(reader.htmlPages(), executor);
+      assertEquals(3, results.size());
+      assertEquals("http://example.com/harbour", results.get(0).url);
+      assertEquals("Harbour town rebuilds its waterfront", results.get(0).article.title);
+      assertTrue(results.get(0).article.document.text().contains("café espresso machine"));
+      assertEquals("Chunked harbour café story", results.get(1).article.title);
+      assertEquals("Gzipped harbour café story", results.get(2).article.title);
+    } finally {
+      executor.shutdown();
+      reader.close();
+    }
+  }
+
+  private static void assertSampleRecords(File file) throws IOException {
+    WarcReader reader = WarcReader.open(file);
+    List<WarcRecord> records = readAll(reader);
+    assertEquals(8, records.size());
+
+    WarcRecord info = records.get(0);
+    assertEquals("warcinfo", info.type);
+    assertNull(info.targetUri);
+    assertEquals(-1, info.httpStatus);
+    assertEquals("software: crux-test\r\nformat: WARC File Format 1.0\r\n", string(info.block));
+    assertEquals("application/warc-fields", info.header("content-type"));
+    assertFalse(info.isHtmlResponse());
+
+    assertEquals("request", records.get(1).type);
+    assertFalse(records.get(1).isHtmlResponse());
+
+    WarcRecord harbour = records.get(2);
+    assertEquals("response", harbour.type);
+    assertEquals("http://example.com/harbour", harbour.targetUri);
+    assertEquals(200, harbour.httpStatus);
+    assertEquals("text/html; charset=ISO-8859-1", harbour.httpContentType);
+    assertTrue(string(harbour.payload).startsWith("<!DOCTYPE html>"));
+    assertTrue(harbour.isHtmlResponse());
+
+    WarcRecord chunked = records.get(3);
+    assertTrue(string(chunked.payload).startsWith("<!DOCTYPE html>"));
+    assertTrue(string(chunked.payload).endsWith("</html>"));
+    assertTrue(chunked.isHtmlResponse());
+
+    WarcRecord gzipped = records.get(4);
+    assertTrue(string(gzipped.payload).contains("Gzipped harbour café story"));
+
+    assertEquals(200, records.get(5).httpStatus);
+    assertFalse(records.get(5).isHtmlResponse());  // An image.
+    assertEquals(404, records.get(6).httpStatus);
+    assertFalse(records.get(6).isHtmlResponse());
+    assertEquals("metadata", records.get(7).type);
+
+    assertNull(reader.next());
+    reader.close();
+  }
+
+  private static void assertSameRecords(List<WarcRecord> expected, List<WarcRecord> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).header("WARC-Record-ID"), actual.get(i).header("WARC-Record-ID"));
+      assertEquals(expected.get(i).block, actual.get(i).block);
+      assertEquals(expected.get(i).payload, actual.get(i).payload);
+    }
+  }
+
+  private static List<WarcRecord> readAll(WarcReader reader) throws IOException {
+    List<WarcRecord> records = new ArrayList<>();
+    try {
+      for (WarcRecord record = reader.next(); record != null; record = reader.next()) {
+        records.add(record);
+      }
+    } finally {
+      reader.close();
+    }
+    return records;
+  }
+
+  private static String string(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  private static byte[] readBytes(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      int offset = 0;
+      while (offset < bytes.length) {
+        offset += in.read(bytes, offset, bytes.length - offset);
+      }
+      return bytes;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void write(File file, byte[] bytes) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+}